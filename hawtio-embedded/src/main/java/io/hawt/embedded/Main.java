@@ -19,19 +19,39 @@ package io.hawt.embedded;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.HandlerCollection;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Slf4jLog;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.eclipse.jetty.webapp.WebAppContext;
 
 /**
  * A simple way to run hawtio embedded inside a JVM by booting up a Jetty server
  */
 public class Main {
+
+    /**
+     * The content types worth compressing, i.e. the console's markup, scripts and stylesheets and the Jolokia responses
+     */
+    private static final String COMPRESSED_MIME_TYPES = "text/html,text/plain,text/css,text/xml,text/javascript,"
+            + "application/javascript,application/x-javascript,application/json,application/xml,image/svg+xml";
+
+    private static final String DEFAULT_SERVLET_PARAMETER_PREFIX = "org.eclipse.jetty.servlet.Default.";
+
+    /**
+     * The gzip handler moved to jetty-servlets in Jetty 9 (the jetty9 profile)
+     */
+    private static final String[] GZIP_HANDLER_CLASSES = {
+            "org.eclipse.jetty.server.handler.GzipHandler", "org.eclipse.jetty.servlets.gzip.GzipHandler"};
+
     private Options options;
     private boolean welcome = true;
 
@@ -78,10 +98,11 @@ public class Main {
         Log.setLog(log);
 
         Server server = new Server(new InetSocketAddress(InetAddress.getByName(options.getHost()), options.getPort()));
+        configureThreadPool(server);
 
         HandlerCollection handlers = new HandlerCollection();
         handlers.setServer(server);
-        server.setHandler(handlers);
+        server.setHandler(options.isCompress() ? compress(handlers, log) : handlers);
 
         WebAppContext webapp = new WebAppContext();
         webapp.setServer(server);
@@ -93,10 +114,10 @@ public class Main {
         if (war == null) {
             throw new IllegalArgumentException("No war or warLocation options set!");
         }
-        webapp.setWar(war);
         webapp.setParentLoaderPriority(true);
         webapp.setLogUrlOnStart(true);
         webapp.setExtraClasspath(options.getExtraClassPath());
+        configureResourceCache(webapp);
 
         // lets set a temporary directory so jetty doesn't bork if some process zaps /tmp/*
         String homeDir = System.getProperty("user.home", ".") + System.getProperty("hawtio.dirname", "/.hawtio");
@@ -106,8 +127,13 @@ public class Main {
         log.info("using temp directory for jetty: " + tempDir.getPath());
         webapp.setTempDirectory(tempDir);
 
+        // extract the wars once and reuse them on subsequent runs for as long as they don't change
+        WarCache warCache = new WarCache(new File(tempDir, "wars"), log);
+        webapp.setWar(warCache.extract(war));
+
         // check for 3rd party plugins before we add hawtio, so they are initialized before hawtio
-        findThirdPartyPlugins(log, handlers, tempDir);
+        findThirdPartyPlugins(log, handlers, tempDir, warCache);
+        warCache.removeUnused();
 
         // add hawtio
         handlers.addHandler(webapp);
@@ -138,7 +164,79 @@ public class Main {
         }
     }
 
+    /**
+     * Sizes the pool of threads serving requests, which only keeps a few threads around while the console is idle.
+     * Only uses the thread pool API common to Jetty 8 and Jetty 9.
+     */
+    protected void configureThreadPool(Server server) throws Exception {
+        ThreadPool threadPool = server.getThreadPool();
+        if (threadPool == null) {
+            // Jetty 8 only creates its pool on start, Jetty 9 creates it with the server
+            threadPool = new QueuedThreadPool();
+            Server.class.getMethod("setThreadPool", ThreadPool.class).invoke(server, threadPool);
+        }
+        if (threadPool instanceof QueuedThreadPool) {
+            int maxThreads = options.getMaxThreads() != null ? options.getMaxThreads() : 200;
+            QueuedThreadPool queuedThreadPool = (QueuedThreadPool) threadPool;
+            queuedThreadPool.setMaxThreads(maxThreads);
+            queuedThreadPool.setMinThreads(Math.min(8, maxThreads));
+            queuedThreadPool.setName("hawtio-jetty");
+        }
+    }
+
+    /**
+     * Wraps the handler so that text responses the client accepts gzip for are compressed, using whichever gzip
+     * handler the Jetty version provides
+     */
+    protected Handler compress(Handler handler, Slf4jLog log) throws Exception {
+        for (String className : GZIP_HANDLER_CLASSES) {
+            Class<?> type;
+            try {
+                type = Main.class.getClassLoader().loadClass(className);
+            } catch (ClassNotFoundException e) {
+                continue;
+            }
+            HandlerWrapper gzip = (HandlerWrapper) type.newInstance();
+            invoke(gzip, "setMimeTypes", String.class, COMPRESSED_MIME_TYPES);
+            invoke(gzip, "setMinGzipSize", int.class, 1024);
+            invoke(gzip, "setVary", String.class, "Accept-Encoding");
+            gzip.setHandler(handler);
+            return gzip;
+        }
+        log.warn("No gzip handler available so responses will not be compressed");
+        return handler;
+    }
+
+    private static void invoke(Object target, String name, Class<?> type, Object value) throws Exception {
+        Method method;
+        try {
+            method = target.getClass().getMethod(name, type);
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        method.invoke(target, value);
+    }
+
+    /**
+     * Configures the default servlet of the web application to cache its static resources in memory, to serve
+     * precompressed <code>.gz</code> variants when there are any and to answer conditional requests using etags
+     */
+    protected void configureResourceCache(WebAppContext context) {
+        if (!options.isResourceCache()) {
+            return;
+        }
+        context.setInitParameter(DEFAULT_SERVLET_PARAMETER_PREFIX + "maxCacheSize", String.valueOf(64 * 1024 * 1024));
+        context.setInitParameter(DEFAULT_SERVLET_PARAMETER_PREFIX + "maxCachedFileSize", String.valueOf(4 * 1024 * 1024));
+        context.setInitParameter(DEFAULT_SERVLET_PARAMETER_PREFIX + "maxCachedFiles", "4096");
+        context.setInitParameter(DEFAULT_SERVLET_PARAMETER_PREFIX + "gzip", "true");
+        context.setInitParameter(DEFAULT_SERVLET_PARAMETER_PREFIX + "etags", "true");
+    }
+
     protected void findThirdPartyPlugins(Slf4jLog log, HandlerCollection handlers, File tempDir) {
+        findThirdPartyPlugins(log, handlers, tempDir, new WarCache(new File(tempDir, "wars"), log));
+    }
+
+    protected void findThirdPartyPlugins(Slf4jLog log, HandlerCollection handlers, File tempDir, WarCache warCache) {
         File dir = new File(options.getPlugins());
         if (dir.exists() && dir.isDirectory()) {
 
@@ -166,7 +264,7 @@ public class Main {
                     WebAppContext plugin = new WebAppContext();
                     plugin.setServer(handlers.getServer());
                     plugin.setContextPath(contextPath);
-                    plugin.setWar(war.getAbsolutePath());
+                    plugin.setWar(warCache.extract(war.getAbsolutePath()));
                     // plugin.setParentLoaderPriority(true);
                     plugin.setLogUrlOnStart(true);
 
@@ -176,6 +274,7 @@ public class Main {
 
                     plugin.setTempDirectory(pluginTempDir);
                     plugin.setThrowUnavailableOnStartupException(true);
+                    configureResourceCache(plugin);
 
                     try {
                         plugin.start();
@@ -287,6 +386,30 @@ public class Main {
         options.setOpenUrl(openUrl);
     }
 
+    public boolean isCompress() {
+        return options.isCompress();
+    }
+
+    public void setCompress(boolean compress) {
+        options.setCompress(compress);
+    }
+
+    public boolean isResourceCache() {
+        return options.isResourceCache();
+    }
+
+    public void setResourceCache(boolean resourceCache) {
+        options.setResourceCache(resourceCache);
+    }
+
+    public Integer getMaxThreads() {
+        return options.getMaxThreads();
+    }
+
+    public void setMaxThreads(Integer maxThreads) {
+        options.setMaxThreads(maxThreads);
+    }
+
     public boolean isHelp() {
         return options.isHelp();
     }
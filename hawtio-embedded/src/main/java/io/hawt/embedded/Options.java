@@ -35,6 +35,9 @@ public class Options {
     private boolean help;
     private boolean jointServerThread;
     private boolean openUrl = true;
+    private boolean compress = true;
+    private boolean resourceCache = true;
+    private Integer maxThreads = 200;
 
     private abstract class Option {
         private String abbreviation;
@@ -167,6 +170,28 @@ public class Options {
             }
         });
 
+        addOption(new ParameterOption("cmp", "compress", "Gzip compress text responses (default true)") {
+            protected void doProcess(String arg, String parameter, LinkedList<String> remainingArgs) {
+                compress = Boolean.valueOf(parameter);
+            }
+        });
+
+        addOption(new ParameterOption("rc", "resourceCache", "Cache static resources in memory and support conditional requests (default true)") {
+            protected void doProcess(String arg, String parameter, LinkedList<String> remainingArgs) {
+                resourceCache = Boolean.valueOf(parameter);
+            }
+        });
+
+        addOption(new ParameterOption("mt", "maxThreads", "Maximum number of server threads (default 200)") {
+            protected void doProcess(String arg, String parameter, LinkedList<String> remainingArgs) {
+                try {
+                    maxThreads = Integer.parseInt(parameter);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number of threads " + parameter + " due " + e.getMessage());
+                }
+            }
+        });
+
     }
 
     private void addOption(Option option) {
@@ -208,6 +233,11 @@ public class Options {
             sb.append("\n\tplugins=").append(plugins);
         }
         sb.append("\n\topenUrl=").append(openUrl);
+        sb.append("\n\tcompress=").append(compress);
+        sb.append("\n\tresourceCache=").append(resourceCache);
+        if (maxThreads != null) {
+            sb.append("\n\tmaxThreads=").append(maxThreads);
+        }
         sb.append("\n\tjointServerThread=").append(jointServerThread);
         sb.append("\n\thelp=").append(help);
         sb.append("]");
@@ -309,6 +339,30 @@ public class Options {
         this.openUrl = openUrl;
     }
 
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public boolean isResourceCache() {
+        return resourceCache;
+    }
+
+    public void setResourceCache(boolean resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
+    public Integer getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(Integer maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
     public boolean isHelp() {
         return help;
     }
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2013 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawt.embedded;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * Extracts wars into directories named after the checksum of the war, so that a war which has already been
+ * extracted, by this or a previous run, is served from its directory rather than extracted again on every startup.
+ * As the directories are named after the content of the wars only, copies of a war under different names, such as
+ * the temporary copy hawtio-app makes on every start, share the same directory.
+ * <p/>
+ * The cache directory may be shared by several instances, possibly of different versions, so the directories are
+ * only removed once they look abandoned: extracted wars which no instance has started from for a while, and
+ * staging directories old enough for their extraction to have been interrupted.
+ */
+public class WarCache {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHECKSUM_LENGTH = 16;
+    private static final String STAGING_PREFIX = ".extract-";
+    private static final long UNUSED_WAR_AGE = 30L * 24 * 60 * 60 * 1000;
+    private static final long INTERRUPTED_EXTRACTION_AGE = 60L * 60 * 1000;
+
+    private final File directory;
+    private final Logger log;
+    private final Set<File> used = new HashSet<File>();
+
+    public WarCache(File directory, Logger log) {
+        this.directory = directory;
+        this.log = log;
+    }
+
+    /**
+     * Returns the path of the directory the war has been extracted to, or the war itself if it is a directory
+     * already or can't be extracted
+     */
+    public String extract(String war) {
+        File file = new File(war);
+        if (!file.isFile()) {
+            return war;
+        }
+        try {
+            File extracted = new File(directory, checksum(file));
+            used.add(extracted);
+            if (extracted.isDirectory()) {
+                // lets other instances sharing the cache know the war is still in use
+                extracted.setLastModified(System.currentTimeMillis());
+                log.info("Using extracted war: " + extracted.getPath());
+                return extracted.getPath();
+            }
+            directory.mkdirs();
+            File staging = Files.createTempDirectory(directory.toPath(), STAGING_PREFIX).toFile();
+            try {
+                unzip(file, staging);
+                move(staging.toPath(), extracted.toPath());
+            } finally {
+                if (staging.exists()) {
+                    IO.delete(staging);
+                }
+            }
+            log.info("Extracted war " + war + " to: " + extracted.getPath());
+            return extracted.getPath();
+        } catch (IOException e) {
+            log.warn("Failed to extract war " + war + " due " + e.getMessage() + ", using the war as is", e);
+            return war;
+        }
+    }
+
+    /**
+     * Removes the directories of the wars which no instance has started from for a while, i.e. earlier versions of
+     * the wars, and whatever is left over from interrupted extractions
+     */
+    public void removeUnused() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (!file.isDirectory() || used.contains(file)) {
+                continue;
+            }
+            long age = now - file.lastModified();
+            String name = file.getName();
+            if (name.startsWith(STAGING_PREFIX) && age > INTERRUPTED_EXTRACTION_AGE) {
+                log.info("Removing interrupted war extraction: " + file.getPath());
+                IO.delete(file);
+            } else if (isChecksum(name) && age > UNUSED_WAR_AGE) {
+                log.info("Removing unused extracted war: " + file.getPath());
+                IO.delete(file);
+            }
+        }
+    }
+
+    private static boolean isChecksum(String name) {
+        return name.length() == CHECKSUM_LENGTH && name.matches("[0-9a-f]+");
+    }
+
+    static String checksum(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // reading is enough to update the digest
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.substring(0, CHECKSUM_LENGTH);
+    }
+    private static void unzip(File war, File target) throws IOException {
+        String targetPath = target.getCanonicalPath() + File.separator;
+        try (ZipFile zip = new ZipFile(war)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File file = new File(target, entry.getName());
+                if (!file.getCanonicalPath().startsWith(targetPath)) {
+                    throw new IOException("War entry " + entry.getName() + " is outside of the war");
+                }
+                if (entry.isDirectory()) {
+                    file.mkdirs();
+                    continue;
+                }
+                file.getParentFile().mkdirs();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, file.toPath());
+                }
+                if (entry.getTime() != -1) {
+                    file.setLastModified(entry.getTime());
+                }
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source, target);
+            }
+        } catch (IOException e) {
+            // fine if the war has been extracted concurrently by another instance
+            if (!Files.isDirectory(target)) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.hawt.embedded;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.log.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WarCacheTest {
+
+    private File dir;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("war-cache-test").toFile();
+        cacheDir = new File(dir, "wars");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        IO.delete(dir);
+    }
+
+    @Test
+    public void testSharesDirectoryOfCopiesOfTheSameWar() throws Exception {
+        File first = createWar("hawtio-123.war", "hawtio");
+        File second = createWar("hawtio-456.war", "hawtio");
+
+        String extracted = new WarCache(cacheDir, Log.getLogger(WarCacheTest.class)).extract(first.getPath());
+        assertEquals("hawtio", new String(Files.readAllBytes(new File(extracted, "index.html").toPath()), StandardCharsets.UTF_8));
+
+        WarCache restarted = new WarCache(cacheDir, Log.getLogger(WarCacheTest.class));
+        assertEquals(extracted, restarted.extract(second.getPath()));
+        restarted.removeUnused();
+        assertEquals(1, cacheDir.list().length);
+    }
+
+    @Test
+    public void testRemovesAbandonedDirectories() throws Exception {
+        File old = createWar("hawtio-123.war", "old");
+        File current = createWar("hawtio-456.war", "current");
+        File oldExtracted = new File(new WarCache(cacheDir, Log.getLogger(WarCacheTest.class)).extract(old.getPath()));
+        File interrupted = new File(cacheDir, ".extract-interrupted");
+        assertTrue(interrupted.mkdirs());
+        assertTrue(new File(cacheDir, "unrelated").mkdirs());
+        long longAgo = System.currentTimeMillis() - 31L * 24 * 60 * 60 * 1000;
+        assertTrue(oldExtracted.setLastModified(longAgo));
+        assertTrue(interrupted.setLastModified(longAgo));
+
+        WarCache restarted = new WarCache(cacheDir, Log.getLogger(WarCacheTest.class));
+        String extracted = restarted.extract(current.getPath());
+        assertNotEquals(oldExtracted.getPath(), extracted);
+        restarted.removeUnused();
+
+        assertFalse(oldExtracted.exists());
+        assertFalse(interrupted.exists());
+        assertTrue(new File(extracted).isDirectory());
+        assertTrue(new File(cacheDir, "unrelated").isDirectory());
+    }
+
+    @Test
+    public void testKeepsDirectoriesOfOtherInstances() throws Exception {
+        File other = createWar("hawtio-123.war", "other version");
+        File current = createWar("hawtio-456.war", "current");
+        String otherExtracted = new WarCache(cacheDir, Log.getLogger(WarCacheTest.class)).extract(other.getPath());
+        // another instance in the middle of extracting a war
+        File staging = new File(cacheDir, ".extract-123456");
+        assertTrue(staging.mkdirs());
+
+        WarCache cache = new WarCache(cacheDir, Log.getLogger(WarCacheTest.class));
+        cache.extract(current.getPath());
+        cache.removeUnused();
+
+        assertTrue(new File(otherExtracted).isDirectory());
+        assertTrue(staging.isDirectory());
+    }
+
+    private File createWar(String name, String content) throws IOException {
+        File war = new File(dir, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(war))) {
+            // fixed entry times so that wars with the same content have the same checksum
+            ZipEntry webInf = new ZipEntry("WEB-INF/");
+            webInf.setTime(0);
+            out.putNextEntry(webInf);
+            ZipEntry index = new ZipEntry("index.html");
+            index.setTime(0);
+            out.putNextEntry(index);
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return war;
+    }
+}
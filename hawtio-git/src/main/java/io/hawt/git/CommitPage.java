@@ -0,0 +1,36 @@
+package io.hawt.git;
+
+import java.util.List;
+
+/**
+ * A page of the commit history along with the cursor to pass in to retrieve the next page
+ */
+public class CommitPage {
+    private final List<CommitInfo> commits;
+    private final String nextCursor;
+
+    public CommitPage(List<CommitInfo> commits, String nextCursor) {
+        this.commits = commits;
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "CommitPage(" + commits.size() + " commits, next " + nextCursor + ")";
+    }
+
+    public List<CommitInfo> getCommits() {
+        return commits;
+    }
+
+    /**
+     * Returns the opaque cursor to pass in to retrieve the next page or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isLast() {
+        return nextCursor == null;
+    }
+}
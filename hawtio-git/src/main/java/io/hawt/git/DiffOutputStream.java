@@ -0,0 +1,95 @@
+package io.hawt.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Collects the output of a diff while bounding the size of each file's diff and of the whole diff,
+ * so that large binary-like or generated files cannot blow up the response.
+ * <p/>
+ * Call {@link #startFile(String)} before formatting each file; once a file exceeds its limit the rest of
+ * its diff is discarded and replaced by a single truncation marker line.
+ */
+public class DiffOutputStream extends OutputStream {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final long maxFileBytes;
+    private final long maxTotalBytes;
+    private String currentPath;
+    private long fileBytes;
+    private long discardedBytes;
+    private boolean truncated;
+
+    public DiffOutputStream(long maxFileBytes, long maxTotalBytes) {
+        this.maxFileBytes = maxFileBytes;
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * Starts the diff of a new file, reporting if the previous file was truncated
+     *
+     * @return false if the total limit has been reached so no more files should be formatted
+     */
+    public boolean startFile(String path) {
+        finishFile();
+        currentPath = path;
+        fileBytes = 0;
+        discardedBytes = 0;
+        if (maxTotalBytes > 0 && buffer.size() >= maxTotalBytes) {
+            truncated = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (accept(1)) {
+            buffer.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (accept(length)) {
+            buffer.write(bytes, offset, length);
+        }
+    }
+
+    protected boolean accept(int length) {
+        if (discardedBytes > 0 || (maxFileBytes > 0 && fileBytes + length > maxFileBytes)
+                || (maxTotalBytes > 0 && buffer.size() + length > maxTotalBytes)) {
+            discardedBytes += length;
+            truncated = true;
+            return false;
+        }
+        fileBytes += length;
+        return true;
+    }
+
+    protected void finishFile() {
+        if (discardedBytes > 0) {
+            String marker = "\n... diff of " + (currentPath != null ? currentPath : "file")
+                    + " truncated, " + discardedBytes + " more bytes\n";
+            byte[] bytes = marker.getBytes(UTF8);
+            buffer.write(bytes, 0, bytes.length);
+            discardedBytes = 0;
+        }
+    }
+
+    /**
+     * Returns true if any of the diff has been left out
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        finishFile();
+        return new String(buffer.toByteArray(), UTF8);
+    }
+}
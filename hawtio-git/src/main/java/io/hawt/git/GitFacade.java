@@ -9,6 +9,7 @@ import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,6 +24,9 @@ import io.hawt.util.IOHelper;
 import io.hawt.util.Objects;
 import io.hawt.util.Strings;
 import io.hawt.util.Zips;
+import io.hawt.util.metrics.Metrics;
+import io.hawt.util.metrics.MetricsFacade;
+import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.CommitCommand;
@@ -31,7 +35,7 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.InitCommand;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
@@ -40,6 +44,7 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.util.Base64;
 import org.slf4j.Logger;
@@ -70,8 +75,11 @@ public class GitFacade extends GitFacadeSupport {
     private boolean pushOnCommit = false;
     private boolean pullBeforeOperation = false;
     private long pullTimePeriod;
+    private GitReplicator replicator;
+    private final MetricsFacade metrics = new MetricsFacade("git");
     private Timer timer;
     private TimerTask task;
+    private RefCache refCache;
     private PersonIdent stashPersonIdent;
     private String defaultBranch;
     private boolean firstPull = true;
@@ -108,13 +116,30 @@ public class GitFacade extends GitFacadeSupport {
         // lets check if we have a config directory if not lets create one...
         initialiseGitRepo();
 
+        replicator = new GitReplicator(new GitReplicator.Pusher() {
+            @Override
+            public void push(Set<String> branches) throws Exception {
+                long start = Metrics.start();
+                List<RefSpec> refSpecs;
+                // only read the branch tips under the git lock, so a slow remote doesn't hold up the git operations
+                synchronized (lock) {
+                    refSpecs = getBranchTips(git, branches);
+                }
+                if (refSpecs.isEmpty()) {
+                    return;
+                }
+                Iterable<PushResult> results = doPush(git, refSpecs);
+                Metrics.stop("git.push", start);
+                for (PushResult result : results) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Pushed " + result.getMessages() + " " + result.getURI() + " branches: " + branches + " updates: " + GitFacade.this.toString(result.getRemoteUpdates()));
+                    }
+                }
+            }
+        });
+
         long timePeriod = getPullTimePeriod();
         if (timePeriod > 0 && isPullBeforeOperation()) {
-            Timer t = getTimer();
-            if (t == null) {
-                t = new Timer();
-                setTimer(t);
-            }
             final Callable<Object> emptyCallable = new Callable<Object>() {
                 @Override
                 public String toString() {
@@ -129,19 +154,32 @@ public class GitFacade extends GitFacadeSupport {
                     return null;
                 }
             };
-            task = new TimerTask() {
-                @Override
-                public void run() {
-                    try {
+            Timer t = getTimer();
+            if (t != null) {
+                // an explicitly configured timer still runs the pulls
+                task = new TimerTask() {
+                    @Override
+                    public void run() {
+                        try {
+                            gitOperation(getStashPersonIdent(), emptyCallable);
+                        } catch (Exception e) {
+                            LOG.warn("Failed to pull from remote repo due " + e.getMessage() + ". This exception is ignored.", e);
+                        }
+                    }
+                };
+                t.schedule(task, timePeriod, timePeriod);
+            } else {
+                replicator.schedulePull(new Runnable() {
+                    @Override
+                    public void run() {
                         gitOperation(getStashPersonIdent(), emptyCallable);
-                    } catch (Exception e) {
-                        LOG.warn("Failed to pull from remote repo due " + e.getMessage() + ". This exception is ignored.", e);
                     }
-                }
-            };
-            t.schedule(task, timePeriod, timePeriod);
+                }, timePeriod);
+            }
         }
         super.init();
+        metrics.setMBeanServer(getMBeanServer());
+        metrics.init();
         singleton = this;
     }
 
@@ -150,6 +188,16 @@ public class GitFacade extends GitFacadeSupport {
         if (task != null) {
             task.cancel();
         }
+        if (replicator != null) {
+            replicator.stop();
+        }
+        synchronized (this) {
+            if (refCache != null) {
+                refCache.stop();
+                refCache = null;
+            }
+        }
+        metrics.destroy();
         super.destroy();
     }
 
@@ -270,10 +318,18 @@ public class GitFacade extends GitFacadeSupport {
         this.pullTimePeriod = pullTimePeriod;
     }
 
+    /**
+     * @deprecated periodic pulls run on the background replicator thread unless a timer is set explicitly
+     */
+    @Deprecated
     public Timer getTimer() {
         return timer;
     }
 
+    /**
+     * @deprecated periodic pulls run on the background replicator thread unless a timer is set explicitly
+     */
+    @Deprecated
     public void setTimer(Timer timer) {
         this.timer = timer;
     }
@@ -421,6 +477,35 @@ public class GitFacade extends GitFacadeSupport {
         });
     }
 
+    @Override
+    public CommitInfo writeFiles(final String branch, Map<String, String> contents, final String commitMessage,
+                                 String authorName, String authorEmail) {
+        final Map<String, byte[]> data = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : contents.entrySet()) {
+            data.put(entry.getKey(), entry.getValue().getBytes());
+        }
+        return writeFileBytes(branch, data, commitMessage, authorName, authorEmail);
+    }
+
+    /**
+     * Writes all the given files, keyed by their path, in a single commit
+     */
+    public CommitInfo writeFileBytes(final String branch, final Map<String, byte[]> data, final String commitMessage,
+                                     String authorName, String authorEmail) {
+        final PersonIdent personIdent = new PersonIdent(authorName, authorEmail);
+        return gitOperation(personIdent, new Callable<CommitInfo>() {
+            @Override
+            public String toString() {
+                return "doWriteFiles(" + branch + ", " + data.size() + " files)";
+            }
+
+            public CommitInfo call() throws Exception {
+                File rootDir = getRootGitDirectory();
+                return doWriteFiles(git, rootDir, branch, data, personIdent, commitMessage);
+            }
+        });
+    }
+
     @Override
     public CommitInfo createDirectory(final String branch, final String path, final String commitMessage,
                                      final String authorName, final String authorEmail) {
@@ -556,11 +641,60 @@ public class GitFacade extends GitFacadeSupport {
         return this.git.push().setCredentialsProvider(getCredentials()).setRemote(getRemote()).call();
     }
 
+    /**
+     * Returns the ref specs pushing the current commits of the given local branches; callers must hold the git
+     * operation lock so the branches aren't read in the middle of a stash, pull or checkout
+     */
+    protected List<RefSpec> getBranchTips(Git git, Set<String> branches) throws IOException {
+        List<RefSpec> answer = new ArrayList<RefSpec>();
+        for (String branch : branches) {
+            Ref ref = git.getRepository().exactRef(Constants.R_HEADS + branch);
+            if (ref != null && ref.getObjectId() != null) {
+                answer.add(new RefSpec(ref.getObjectId().name() + ":" + Constants.R_HEADS + branch));
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Pushes the given commits; as commits never change this doesn't need the git operation lock
+     */
+    protected Iterable<PushResult> doPush(Git git, List<RefSpec> refSpecs) throws Exception {
+        return git.push().setCredentialsProvider(getCredentials()).setRemote(getRemote()).setRefSpecs(refSpecs).call();
+    }
+
+    /**
+     * Hands the push over to the background {@link GitReplicator} so the write returns once the local commit is done
+     */
+    @Override
+    protected void pushAfterCommit(Git git, String branch) throws Exception {
+        if (replicator == null) {
+            super.pushAfterCommit(git, branch);
+            return;
+        }
+        if (Strings.isBlank(branch)) {
+            branch = git.getRepository().getBranch();
+        }
+        replicator.requestPush(branch);
+    }
+
     @Override
     public String getHEAD() {
         return doGetHead(git);
     }
 
+    @Override
+    public String getReplicationStatus() {
+        if (!isPushOnCommit() && (getPullTimePeriod() <= 0 || !isPullBeforeOperation())) {
+            return "disabled";
+        }
+        return replicator != null ? replicator.getStatus() : "not started";
+    }
+
+    public GitReplicator getReplicator() {
+        return replicator;
+    }
+
     public String getDefaultGitAttributes() {
         return defaultGitAttributes;
     }
@@ -578,6 +712,22 @@ public class GitFacade extends GitFacadeSupport {
         }
     }
 
+    @Override
+    public CommitPage historyPage(final String branch, final String cursor, final String path, final int pageSize) {
+        return gitOperation(getStashPersonIdent(), new Callable<CommitPage>() {
+            @Override
+            public String toString() {
+                return "doHistoryPage(" + branch + ", " + cursor + ", " + path + ", " + pageSize + ")";
+            }
+
+            @Override
+            public CommitPage call() throws Exception {
+                checkoutBranch(git, branch);
+                return doHistoryPage(git, branch, cursor, path, pageSize);
+            }
+        });
+    }
+
     /**
      * Retrieves a Java Date from a Git commit.
      *
@@ -769,20 +919,30 @@ public class GitFacade extends GitFacadeSupport {
             }
         }
 
-        // now lets add any expanded stuff to git
+        // now lets add any expanded stuff to git with a single git add
         int count = 0;
         File[] files = rootFolder.listFiles();
         if (files != null) {
+            AddCommand add = git.add();
             for (File file : files) {
                 String name = file.getName();
                 if (!Objects.equals(".git", name) && !Objects.equals(".gitattributes", name)) {
                     try {
-                        count += addFiles(git, rootFolder, file);
+                        add.addFilepattern(getFilePattern(rootFolder, file));
+                        count++;
                     } catch (Throwable e) {
                         LOG.warn("Failed to add file " + name + ". " + e, e);
                     }
                 }
             }
+            if (count > 0) {
+                try {
+                    add.call();
+                } catch (Throwable e) {
+                    LOG.warn("Failed to add the initial import of " + initialImportURLs + ". " + e, e);
+                    count = 0;
+                }
+            }
         }
 
         // commit any changes
@@ -796,16 +956,6 @@ public class GitFacade extends GitFacadeSupport {
         }
     }
 
-    private int addFiles(Git git, File rootDir, File... files) throws GitAPIException, IOException {
-        int counter = 0;
-        for (File file : files) {
-            String relativePath = getFilePattern(rootDir, file);
-            git.add().addFilepattern(relativePath).call();
-            counter++;
-        }
-        return counter;
-    }
-
     private String getFilePattern(File rootDir, File file) throws IOException {
         String relativePath = Files.getRelativePath(rootDir, file);
         if (relativePath.startsWith(File.separator)) {
@@ -871,16 +1021,13 @@ public class GitFacade extends GitFacadeSupport {
         if (debug) {
             start = System.currentTimeMillis();
         }
+        long lockStart = Metrics.start();
         synchronized (lock) {
+            Metrics.stop("git.lockWait", lockStart);
+            long operationStart = Metrics.start();
             try {
                 // lets check if we have done a commit yet...
-                boolean hasHead = true;
-                try {
-                    git.log().all().call();
-                    hasHead = git.getRepository().getAllRefs().containsKey("HEAD");
-                } catch (NoHeadException e) {
-                    hasHead = false;
-                }
+                boolean hasHead = getRefCache().hasHead();
 
                 if (hasHead) {
                     // lets stash any local changes just in case..
@@ -896,7 +1043,10 @@ public class GitFacade extends GitFacadeSupport {
                 }
                 return answer;
             } catch (Exception e) {
+                Metrics.increment("git.operation.failed");
                 throw new RuntimeIOException(e);
+            } finally {
+                Metrics.stop("git.operation", operationStart);
             }
         }
     }
@@ -954,16 +1104,23 @@ public class GitFacade extends GitFacadeSupport {
     }
 
     protected boolean localBranchExists(String branch) throws GitAPIException {
-        List<Ref> list = git.branchList().call();
-        String fullName = "refs/heads/" + branch;
-        boolean localBranchExists = false;
-        for (Ref ref : list) {
-            String name = ref.getName();
-            if (Objects.equals(name, fullName)) {
-                localBranchExists = true;
+        return getRefCache().localBranchExists(branch);
+    }
+
+    /**
+     * Returns the cache of the branches and head commits of the current repository
+     */
+    @Override
+    protected synchronized RefCache getRefCache() {
+        Repository repository = git.getRepository();
+        if (refCache == null || refCache.getRepository() != repository) {
+            if (refCache != null) {
+                refCache.stop();
             }
+            refCache = new RefCache(repository);
+            refCache.start();
         }
-        return localBranchExists;
+        return refCache;
     }
 
 }
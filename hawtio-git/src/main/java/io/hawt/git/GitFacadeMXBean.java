@@ -4,6 +4,7 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The JMX MBean interface for working with git configuration files
@@ -32,6 +33,13 @@ public interface GitFacadeMXBean {
 
     CommitInfo writeBase64(String branch, String path, String commitMessage,
                      String authorName, String authorEmail, String contentsBase64);
+
+    /**
+     * Writes all the given files, keyed by their path, in a single commit using the commit message if specified
+     */
+    CommitInfo writeFiles(String branch, Map<String, String> contents, String commitMessage,
+                     String authorName, String authorEmail);
+
     /**
      * Creates a new file if it doesn't already exist
      *
@@ -56,11 +64,22 @@ public interface GitFacadeMXBean {
 
     String getHEAD();
 
+    /**
+     * Returns the state of the background replication with the remote repository
+     */
+    String getReplicationStatus();
+
     /**
      * Return the history of the repository or a specific directory or file path
      */
     List<CommitInfo> history(String branch, String objectId, String path, int limit);
 
+    /**
+     * Returns a page of the history of the repository or a specific directory or file path; pass in the next cursor
+     * of the returned page to retrieve the following page, or null to start from the head of the branch
+     */
+    CommitPage historyPage(String branch, String cursor, String path, int pageSize);
+
     /**
      * Returns the commit tree for the given commit id
      */
@@ -18,11 +18,12 @@
 package io.hawt.git;
 
 import io.hawt.util.*;
-import io.hawt.util.Objects;
+import io.hawt.util.metrics.Metrics;
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CommitCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
+import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
@@ -38,17 +39,15 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.RemoteRefUpdate;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.gitective.core.BlobUtils;
-import org.gitective.core.CommitFinder;
 import org.gitective.core.CommitUtils;
-import org.gitective.core.PathFilterUtils;
-import org.gitective.core.filter.commit.CommitLimitFilter;
-import org.gitective.core.filter.commit.CommitListFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
@@ -61,9 +60,14 @@ import static io.hawt.git.GitFacade.trimLeadingSlash;
  */
 public abstract class GitFacadeSupport extends MBeanSupport implements GitFacadeMXBean, GitFileManager {
     private static final transient Logger LOG = LoggerFactory.getLogger(GitFacadeSupport.class);
+    private static final String CURSOR_SEPARATOR = "@";
 
     private int shortCommitIdLength = 6;
     private String repositoryLabel = "Wiki";
+    private final JsonContentIndex jsonContentIndex = new JsonContentIndex();
+    private long maxDiffFileBytes = 256 * 1024;
+    private int defaultHistoryPageSize = 50;
+    private long maxDiffBytes = 4 * 1024 * 1024;
 
     public void setRepositoryLabel(String repositoryLabel) {
         this.repositoryLabel = repositoryLabel;
@@ -105,16 +109,16 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
 
         RevCommit commit;
         if (Strings.isNotBlank(objectId)) {
-            commit = CommitUtils.getCommit(r, objectId);
+            commit = getCommit(git, objectId);
         } else {
-            commit = CommitUtils.getHead(r);
+            commit = getHeadCommit(git);
         }
         RevCommit baseCommit = null;
         if (Strings.isNotBlank(baseObjectId)) {
-            baseCommit = CommitUtils.getCommit(r, baseObjectId);
+            baseCommit = getCommit(git, baseObjectId);
         }
 
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DiffOutputStream buffer = new DiffOutputStream(maxDiffFileBytes, maxDiffBytes);
 
         RawTextComparator cmp = RawTextComparator.DEFAULT;
         DiffFormatter formatter = new DiffFormatter(buffer);
@@ -127,9 +131,7 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
         try {
             if (baseCommit == null) {
                 if (commit.getParentCount() > 0) {
-                    final RevWalk rw = new RevWalk(r);
-                    RevCommit parent = rw.parseCommit(commit.getParent(0).getId());
-                    rw.dispose();
+                    RevCommit parent = getRefCache().getCommit(commit.getParent(0));
                     baseTree = parent.getTree();
                 } else {
                     // FIXME initial commit. no parent?!
@@ -140,27 +142,78 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
             }
 
             List<DiffEntry> diffEntries = formatter.scan(baseTree, commitTree);
-            if (blobPath != null && blobPath.length() > 0) {
-                for (DiffEntry diffEntry : diffEntries) {
-                    if (diffEntry.getNewPath().equalsIgnoreCase(blobPath)) {
-                        formatter.format(diffEntry);
+            for (DiffEntry diffEntry : diffEntries) {
+                boolean matches = blobPath == null || blobPath.length() == 0 || diffEntry.getNewPath().equalsIgnoreCase(blobPath);
+                if (matches) {
+                    // format each file on its own so that a huge file only truncates its own diff
+                    if (!buffer.startFile(diffEntry.getNewPath())) {
+                        break;
+                    }
+                    formatter.format(diffEntry);
+                    formatter.flush();
+                    if (blobPath != null && blobPath.length() > 0) {
                         break;
                     }
                 }
-            } else {
-                formatter.format(diffEntries);
             }
-            formatter.flush();
+            if (buffer.isTruncated() && LOG.isDebugEnabled()) {
+                LOG.debug("Truncated the diff of " + commit.getName() + " to at most " + maxDiffFileBytes + " bytes per file and " + maxDiffBytes + " bytes in total");
+            }
             return buffer.toString();
         } catch (IOException e) {
             throw new RuntimeIOException(e);
+        } finally {
+            formatter.close();
         }
     }
 
+    public long getMaxDiffFileBytes() {
+        return maxDiffFileBytes;
+    }
+
+    /**
+     * Sets the maximum size of the diff of a single file returned by {@link #diff(String, String, String)}; 0 means no limit
+     */
+    public void setMaxDiffFileBytes(long maxDiffFileBytes) {
+        this.maxDiffFileBytes = maxDiffFileBytes;
+    }
+
+    public long getMaxDiffBytes() {
+        return maxDiffBytes;
+    }
+
+    /**
+     * Sets the maximum total size of a diff returned by {@link #diff(String, String, String)}; 0 means no limit
+     */
+    public void setMaxDiffBytes(long maxDiffBytes) {
+        this.maxDiffBytes = maxDiffBytes;
+    }
+
     protected abstract void checkoutBranch(Git git, String branch) throws GitAPIException;
 
     protected abstract boolean isPushOnCommit();
 
+    protected abstract RefCache getRefCache();
+
+    /**
+     * Returns the commit for the given revision, reusing the parsed commit if it is a full object id we have seen before
+     */
+    protected RevCommit getCommit(Git git, String revision) {
+        if (ObjectId.isId(revision)) {
+            return getRefCache().getCommit(ObjectId.fromString(revision));
+        }
+        return CommitUtils.getCommit(git.getRepository(), revision);
+    }
+
+    protected RevCommit getHeadCommit(Git git) {
+        RevCommit commit = getRefCache().getHead();
+        if (commit == null) {
+            // lets report the missing HEAD in the usual way
+            commit = CommitUtils.getHead(git.getRepository());
+        }
+        return commit;
+    }
+
     protected void doCreateBranch(Git git, String fromBranch, String newBranch) throws GitAPIException {
         checkoutBranch(git, fromBranch);
         git.branchCreate().setName(newBranch).call();
@@ -173,9 +226,8 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
     protected List<CommitTreeInfo> doGetCommitTree(Git git, String commitId) {
         Repository repository = git.getRepository();
         List<CommitTreeInfo> list = new ArrayList<CommitTreeInfo>();
-        RevCommit commit = CommitUtils.getCommit(repository, commitId);
+        RevCommit commit = getCommit(git, commitId);
         if (commit != null) {
-            RevWalk rw = new RevWalk(repository);
             try {
                 if (commit.getParentCount() == 0) {
                     TreeWalk treeWalk = new TreeWalk(repository);
@@ -191,7 +243,7 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
                     }
                     treeWalk.close();
                 } else {
-                    RevCommit parent = rw.parseCommit(commit.getParent(0).getId());
+                    RevCommit parent = getRefCache().getCommit(commit.getParent(0));
                     DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE);
                     df.setRepository(repository);
                     df.setDiffComparator(RawTextComparator.DEFAULT);
@@ -216,8 +268,6 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
                 }
             } catch (Throwable e) {
                 LOG.warn("Failed to walk tree for commit " + commitId + ". " + e, e);
-            } finally {
-                rw.dispose();
             }
         }
         return list;
@@ -226,7 +276,7 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
 
     protected CommitInfo doGetCommitInfo(Git git, String commitId) {
         Repository repository = git.getRepository();
-        RevCommit commit = CommitUtils.getCommit(repository, commitId);
+        RevCommit commit = getCommit(git, commitId);
         if (commit == null){
             return null;
         } else {
@@ -310,77 +360,123 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
     }
 
     protected String doGetHead(Git git) {
-        RevCommit commit = CommitUtils.getHead(git.getRepository());
+        RevCommit commit = getHeadCommit(git);
         return commit.getName();
     }
 
     protected List<CommitInfo> doHistory(Git git, String branch, String objectId, String pathOrBlobPath, int limit) {
         List<CommitInfo> results = new ArrayList<CommitInfo>();
-        Repository r = git.getRepository();
-
         try {
             String head = getHEAD();
         } catch (Exception e) {
             LOG.error("Cannot find HEAD of this git repository! " + e, e);
             return results;
         }
+        return walkHistory(git, branch, objectId, pathOrBlobPath, limit).getCommits();
+    }
 
-        String path = trimLeadingSlash(pathOrBlobPath);
-
-        CommitFinder finder = new CommitFinder(r);
-        CommitListFilter filter = new CommitListFilter();
-        if (Strings.isNotBlank(path)) {
-            finder.setFilter(PathFilterUtils.and(path));
+    protected CommitPage doHistoryPage(Git git, String branch, String cursor, String pathOrBlobPath, int pageSize) {
+        if (!getRefCache().hasHead()) {
+            return new CommitPage(new ArrayList<CommitInfo>(), null);
         }
-        finder.setFilter(filter);
-
-        if (limit > 0) {
-            finder.setFilter(new CommitLimitFilter(limit).setStop(true));
+        int limit = pageSize > 0 ? pageSize : defaultHistoryPageSize;
+        if (Strings.isBlank(cursor)) {
+            return walkHistory(git, branch, null, pathOrBlobPath, 0, limit);
         }
-        if (Strings.isNotBlank(objectId)) {
-            finder.findFrom(objectId);
-        } else {
-            if (Strings.isNotBlank(branch)) {
+        // the cursor is the number of commits already returned followed by the commits the walk started from
+        int separator = cursor.indexOf(CURSOR_SEPARATOR);
+        if (separator < 0) {
+            return walkHistory(git, branch, cursor, pathOrBlobPath, 0, limit);
+        }
+        int skip;
+        try {
+            skip = Integer.parseInt(cursor.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid history cursor: " + cursor);
+        }
+        return walkHistory(git, branch, cursor.substring(separator + 1), pathOrBlobPath, skip, limit);
+    }
+
+    protected CommitPage walkHistory(Git git, String branch, String objectId, String pathOrBlobPath, int limit) {
+        return walkHistory(git, branch, objectId, pathOrBlobPath, 0, limit);
+    }
+
+    /**
+     * Walks the history lazily from the given comma separated commits, the head of the given branch, all local
+     * branches if the branch does not exist or otherwise HEAD; skipping the given number of commits and stopping as
+     * soon as the limit is reached so that only the requested commits are parsed.
+     * <p/>
+     * The cursor of the next page holds the number of commits walked so far along with the commits the walk started
+     * from, so that the next page walks the same history; restarting from the first commit which did not fit would
+     * lose the commits of the other branches still pending in the walk, such as the other parents of a merge.
+     */
+    protected CommitPage walkHistory(Git git, String branch, String objectIds, String pathOrBlobPath, int skip, int limit) {
+        Repository r = git.getRepository();
+        String path = trimLeadingSlash(pathOrBlobPath);
+        List<CommitInfo> results = new ArrayList<CommitInfo>();
+        List<String> starts = new ArrayList<String>();
+        String nextCursor = null;
+        RevWalk walk = new RevWalk(r);
+        try {
+            if (Strings.isNotBlank(path)) {
+                walk.setTreeFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(path), TreeFilter.ANY_DIFF));
+            }
+            if (Strings.isNotBlank(objectIds)) {
+                for (String objectId : objectIds.split(",")) {
+                    markStart(walk, getCommit(git, objectId.trim()), starts);
+                }
+            } else if (Strings.isNotBlank(branch)) {
                 ObjectId branchObjectId = getBranchObjectId(git, branch);
                 if (branchObjectId != null) {
-                    finder = finder.findFrom(branchObjectId);
+                    markStart(walk, branchObjectId, starts);
                 } else {
-                    finder = finder.findInBranches();
+                    for (Ref ref : getRefCache().getLocalBranches().values()) {
+                        markStart(walk, ref.getObjectId(), starts);
+                    }
                 }
-
             } else {
-                finder.find();
+                markStart(walk, getHeadCommit(git), starts);
             }
+            int skipped = 0;
+            for (RevCommit entry : walk) {
+                if (skipped < skip) {
+                    skipped++;
+                    continue;
+                }
+                if (limit > 0 && results.size() >= limit) {
+                    nextCursor = (skip + results.size()) + CURSOR_SEPARATOR + String.join(",", starts);
+                    break;
+                }
+                results.add(createCommitInfo(entry));
+            }
+        } catch (IOException e) {
+            throw new RuntimeIOException(e);
+        } finally {
+            walk.dispose();
         }
-        List<RevCommit> commits = filter.getCommits();
-        for (RevCommit entry : commits) {
-            CommitInfo commitInfo = createCommitInfo(entry);
-            results.add(commitInfo);
-        }
-        return results;
+        return new CommitPage(results, nextCursor);
+    }
+
+    private static void markStart(RevWalk walk, ObjectId objectId, List<String> starts) throws IOException {
+        walk.markStart(walk.parseCommit(objectId));
+        starts.add(objectId.getName());
+    }
+
+    public int getDefaultHistoryPageSize() {
+        return defaultHistoryPageSize;
+    }
+
+    public void setDefaultHistoryPageSize(int defaultHistoryPageSize) {
+        this.defaultHistoryPageSize = defaultHistoryPageSize;
     }
 
     protected ObjectId getBranchObjectId(Git git, String branch) {
-        Ref branchRef = null;
         try {
-            String branchRevName = "refs/heads/" + branch;
-            List<Ref> branches = git.branchList().call();
-            for (Ref ref : branches) {
-                String revName = ref.getName();
-                if (Objects.equals(branchRevName, revName)) {
-                    branchRef = ref;
-                    break;
-                }
-            }
-        } catch (GitAPIException e) {
+            return getRefCache().getBranchObjectId(branch);
+        } catch (RuntimeIOException e) {
             LOG.warn("Failed to find branches " + e, e);
+            return null;
         }
-
-        ObjectId branchObjectId = null;
-        if (branchRef != null) {
-            branchObjectId = branchRef.getObjectId();
-        }
-        return branchObjectId;
     }
 
 
@@ -398,7 +494,7 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
 
     protected String defaultObjectId(Git git, String objectId) {
         if (objectId == null || objectId.trim().length() == 0) {
-            RevCommit commit = CommitUtils.getHead(git.getRepository());
+            RevCommit commit = getHeadCommit(git);
             objectId = commit.getName();
         }
         return objectId;
@@ -449,6 +545,7 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
         WriteContext context = new WriteContext(git, rootDir, file);
         T results = (T) callback.apply(context);
         if (context.isRequiresCommit()) {
+            context.stageFiles();
             PersonIdent author = context.getAuthor();
             String message = context.getMessage();
             if (Strings.isBlank(message)) {
@@ -534,37 +631,17 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
         return answer;
     }
 
+    /**
+     * Reads the JSON child content from the committed tree of the branch; as git operations stash any local
+     * changes first this is the same content as the checked out files but lets us answer from the {@link JsonContentIndex}
+     */
     protected String doReadJsonChildContent(Git git, File rootDir, String branch, String path, String fileNameWildcard, String search) throws GitAPIException, IOException {
         checkoutBranch(git, branch);
-        File file = getFile(rootDir, path);
-        FileFilter filter = FileFilters.createFileFilter(fileNameWildcard);
-        boolean first = true;
-        StringBuilder buffer = new StringBuilder("{\n");
-        List<FileInfo> children = new ArrayList<FileInfo>();
-        if (file.isDirectory()) {
-            if (file.exists()) {
-                File[] files = file.listFiles();
-                for (File child : files) {
-                    if (!isIgnoreFile(child) && child.isFile()) {
-                        String text = IOHelper.readFully(child);
-                        if (!Strings.isNotBlank(search) || text.contains(search)) {
-                            if (first) {
-                                first = false;
-                            } else {
-                                buffer.append(",\n");
-                            }
-                            buffer.append("\"");
-                            buffer.append(child.getName());
-                            buffer.append("\": ");
-                            buffer.append(text);
-                            children.add(FileInfo.createFileInfo(rootDir, child, branch));
-                        }
-                    }
-                }
-            }
+        RevCommit head = getRefCache().getHead();
+        if (head == null) {
+            return "{\n\n}";
         }
-        buffer.append("\n}");
-        return buffer.toString();
+        return jsonContentIndex.query(git.getRepository(), head.getTree(), path, fileNameWildcard, search);
     }
 
     protected CommitInfo doWrite(Git git, File rootDir, String branch, String path, byte[] contents, PersonIdent personIdent, String commitMessage) throws Exception {
@@ -582,6 +659,56 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
         return createCommitInfo(revCommit);
     }
 
+    /**
+     * Writes all the given files and commits them together; if anything fails before the commit the working tree
+     * is put back the way it was so that no partial batch is left behind. Once committed the batch stays, so a
+     * failing push is only logged and pushed along with the next commit
+     */
+    protected CommitInfo doWriteFiles(Git git, File rootDir, String branch, Map<String, byte[]> contents, PersonIdent personIdent, String commitMessage) throws Exception {
+        checkoutBranch(git, branch);
+        List<File> createdFiles = new ArrayList<File>();
+        boolean committed = false;
+        try {
+            AddCommand add = git.add();
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                String path = entry.getKey();
+                File file = getFile(rootDir, path);
+                if (!file.exists()) {
+                    createdFiles.add(file);
+                }
+                file.getParentFile().mkdirs();
+                IOHelper.write(file, entry.getValue());
+                add.addFilepattern(getFilePattern(path));
+            }
+            add.call();
+
+            if (Strings.isBlank(commitMessage)) {
+                commitMessage = "Updated " + contents.size() + " files";
+            }
+            RevCommit revCommit = commit(git.commit().setAll(true).setAuthor(personIdent).setMessage(commitMessage));
+            committed = true;
+            if (isPushOnCommit()) {
+                try {
+                    pushAfterCommit(git, branch);
+                } catch (Exception e) {
+                    LOG.warn("Committed " + contents.size() + " files as " + revCommit.getId() + " but failed to push them. " + e, e);
+                }
+            }
+            return createCommitInfo(revCommit);
+        } catch (Exception e) {
+            if (!committed) {
+                LOG.warn("Failed to write " + contents.size() + " files so reverting the working tree. " + e, e);
+                if (getRefCache().hasHead()) {
+                    git.reset().setMode(ResetCommand.ResetType.HARD).call();
+                }
+                for (File file : createdFiles) {
+                    file.delete();
+                }
+            }
+            throw e;
+        }
+    }
+
     protected static String getFilePattern(String path) {
         String filePattern = path;
         if (filePattern.startsWith("/")) filePattern = filePattern.substring(1);
@@ -589,19 +716,36 @@ public abstract class GitFacadeSupport extends MBeanSupport implements GitFacade
     }
 
     protected RevCommit commitThenPush(Git git, String branch, CommitCommand commit) throws Exception {
+        RevCommit answer = commit(commit);
+        if (isPushOnCommit()) {
+            pushAfterCommit(git, branch);
+        }
+        return answer;
+    }
+
+    protected RevCommit commit(CommitCommand commit) throws Exception {
+        long start = Metrics.start();
         RevCommit answer = commit.call();
+        Metrics.stop("git.commit", start);
         if (LOG.isDebugEnabled()) {
             LOG.debug("Committed " + answer.getId() + " " + answer.getFullMessage());
         }
-        if (isPushOnCommit()) {
-            Iterable<PushResult> results = doPush(git);
-            for (PushResult result : results) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Pushed " + result.getMessages() + " " + result.getURI() + " branch: " + branch  +  " updates: " + toString(result.getRemoteUpdates()));
-                }
+        return answer;
+    }
+
+    /**
+     * Pushes the commit just made on the given branch to the remote repository; by default the push
+     * is performed synchronously
+     */
+    protected void pushAfterCommit(Git git, String branch) throws Exception {
+        long start = Metrics.start();
+        Iterable<PushResult> results = doPush(git);
+        Metrics.stop("git.push", start);
+        for (PushResult result : results) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Pushed " + result.getMessages() + " " + result.getURI() + " branch: " + branch  +  " updates: " + toString(result.getRemoteUpdates()));
             }
         }
-        return answer;
     }
 
     protected String toString(Collection<RemoteRefUpdate> updates) {
@@ -0,0 +1,224 @@
+package io.hawt.git;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replicates a local git repository with its remote in the background so that user writes only
+ * have to wait for the local commit.
+ * <p/>
+ * Push requests are coalesced: while a push is running or waiting to be retried, further requests just
+ * add their branch to the pending set so that many commits end up in a single push. Failed pushes are
+ * retried with an exponential backoff. Periodic pulls run on the same background thread and failures
+ * are logged without cancelling the schedule.
+ */
+public class GitReplicator {
+    private static final transient Logger LOG = LoggerFactory.getLogger(GitReplicator.class);
+
+    /**
+     * Pushes the given local branches to the remote repository
+     */
+    public interface Pusher {
+        void push(Set<String> branches) throws Exception;
+    }
+
+    private final Pusher pusher;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Set<String> pendingBranches = new LinkedHashSet<String>();
+    private final Runnable pushTask = new Runnable() {
+        @Override
+        public void run() {
+            push();
+        }
+    };
+    private boolean pushScheduled;
+    private int attempts;
+    private long nextRetry;
+    private ScheduledFuture<?> pullFuture;
+
+    private long initialBackoff = 1000;
+    private long maxBackoff = TimeUnit.MINUTES.toMillis(5);
+
+    private final AtomicLong pushCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private volatile long lastPushTime;
+    private volatile String lastError;
+
+    public GitReplicator(Pusher pusher) {
+        this.pusher = pusher;
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "hawtio-git-replicator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Requests the given branch to be pushed to the remote repository as soon as possible
+     */
+    public synchronized void requestPush(String branch) {
+        pendingBranches.add(branch);
+        if (!pushScheduled) {
+            pushScheduled = submit(pushTask, 0);
+        }
+    }
+
+    /**
+     * Runs the given pull periodically with the given delay in milliseconds between runs
+     */
+    public synchronized void schedulePull(final Runnable pull, long period) {
+        if (pullFuture != null) {
+            pullFuture.cancel(false);
+        }
+        pullFuture = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pull.run();
+                } catch (Throwable e) {
+                    LOG.warn("Failed to pull from remote repo due " + e.getMessage() + ". This exception is ignored.", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background thread, waiting for a running push to complete, then makes one last attempt
+     * to push any branches still pending (such as ones waiting for a retry) on the calling thread
+     */
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+        Set<String> branches;
+        synchronized (this) {
+            branches = new LinkedHashSet<String>(pendingBranches);
+            pendingBranches.clear();
+            pushScheduled = false;
+        }
+        if (branches.isEmpty()) {
+            return;
+        }
+        try {
+            pusher.push(branches);
+            pushCount.incrementAndGet();
+            lastPushTime = System.currentTimeMillis();
+        } catch (Throwable e) {
+            failureCount.incrementAndGet();
+            lastError = e.getMessage() != null ? e.getMessage() : e.toString();
+            synchronized (this) {
+                pendingBranches.addAll(branches);
+            }
+            LOG.warn("Stopped with branches " + branches + " not yet pushed to the remote repository due " + lastError
+                    + ". They will be pushed with the next commit on these branches.", e);
+        }
+    }
+
+    protected void push() {
+        Set<String> branches;
+        synchronized (this) {
+            branches = new LinkedHashSet<String>(pendingBranches);
+            pendingBranches.clear();
+        }
+        try {
+            pusher.push(branches);
+            pushCount.incrementAndGet();
+            lastPushTime = System.currentTimeMillis();
+            lastError = null;
+        } catch (Throwable e) {
+            failureCount.incrementAndGet();
+            lastError = e.getMessage() != null ? e.getMessage() : e.toString();
+            synchronized (this) {
+                pendingBranches.addAll(branches);
+                long delay = Math.min(maxBackoff, initialBackoff << Math.min(attempts, 20));
+                attempts++;
+                nextRetry = System.currentTimeMillis() + delay;
+                LOG.warn("Failed to push branches " + branches + " to the remote repo due " + lastError + ". Retrying in " + delay + " ms.", e);
+                pushScheduled = submit(pushTask, delay);
+            }
+            return;
+        }
+        synchronized (this) {
+            attempts = 0;
+            nextRetry = 0;
+            // any commits made while we were pushing are coalesced into one more push
+            pushScheduled = !pendingBranches.isEmpty() && submit(pushTask, 0);
+        }
+    }
+
+    private boolean submit(Runnable task, long delay) {
+        try {
+            executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Replicator has been stopped so cannot schedule a push");
+            return false;
+        }
+    }
+
+    /**
+     * Returns a human readable summary of the replication state
+     */
+    public synchronized String getStatus() {
+        StringBuilder builder = new StringBuilder();
+        if (pendingBranches.isEmpty()) {
+            builder.append(pushScheduled ? "pushing" : "idle");
+        } else if (nextRetry > 0) {
+            builder.append("retrying ").append(pendingBranches).append(" at ").append(new Date(nextRetry));
+        } else {
+            builder.append("pending ").append(pendingBranches);
+        }
+        builder.append(", pushes: ").append(pushCount.get());
+        builder.append(", failures: ").append(failureCount.get());
+        if (lastPushTime > 0) {
+            builder.append(", last push: ").append(new Date(lastPushTime));
+        }
+        if (lastError != null) {
+            builder.append(", last error: ").append(lastError);
+        }
+        return builder.toString();
+    }
+
+    public long getPushCount() {
+        return pushCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public synchronized boolean isIdle() {
+        return !pushScheduled && pendingBranches.isEmpty();
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+}
@@ -0,0 +1,204 @@
+package io.hawt.git;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.hawt.util.FileFilters;
+import io.hawt.util.Strings;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * An index of the JSON documents of the directories of a git repository used to answer
+ * {@link GitFacadeMXBean#readJsonChildContent(String, String, String, String)} queries.
+ * <p/>
+ * Everything is keyed by git object ids, which are content addressed: a directory listing is keyed by the id
+ * of its tree and a document by the id of its blob. So an unchanged directory is answered from memory without
+ * reading any blobs, and after a commit only the documents which actually changed are read again. The rendered
+ * results of the most recent queries are kept too as the dashboards ask the same question over and over, up to
+ * a total number of characters as each of them can be as large as a whole directory of documents.
+ */
+public class JsonContentIndex {
+    private static final int MAX_DIRECTORIES = 128;
+    private static final int MAX_RESULTS = 64;
+    private static final long DEFAULT_MAX_DOCUMENT_CHARS = 8 * 1024 * 1024;
+    private static final long DEFAULT_MAX_RESULT_CHARS = 4 * 1024 * 1024;
+
+    private final Map<ObjectId, List<Entry>> directories = lruMap(MAX_DIRECTORIES);
+    private final Map<String, String> results = new LinkedHashMap<String, String>(16, 0.75f, true);
+    private final Map<ObjectId, String> documents;
+    private final long maxResultChars;
+    private long documentChars;
+    private long resultChars;
+
+    public JsonContentIndex() {
+        this(DEFAULT_MAX_DOCUMENT_CHARS, DEFAULT_MAX_RESULT_CHARS);
+    }
+
+    public JsonContentIndex(final long maxDocumentChars, long maxResultChars) {
+        this.maxResultChars = maxResultChars;
+        this.documents = new LinkedHashMap<ObjectId, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, String> eldest) {
+                if (documentChars > maxDocumentChars && size() > 1) {
+                    documentChars -= eldest.getValue().length();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the JSON object whose properties are the names and contents of the files of the given directory tree
+     * which match the file name wildcard and contain the search text (if specified)
+     */
+    public synchronized String query(Repository repository, RevTree rootTree, String path, String fileNameWildcard, String search) throws IOException {
+        ObjectId treeId = findTree(repository, rootTree, path);
+        if (treeId == null) {
+            return "{\n\n}";
+        }
+        String key = treeId.name() + "/" + fileNameWildcard + "/" + (search != null ? search : "");
+        String answer = results.get(key);
+        if (answer == null) {
+            answer = render(repository, getDirectory(repository, treeId), fileNameWildcard, search);
+            cacheResult(key, answer);
+        }
+        return answer;
+    }
+
+    public synchronized void clear() {
+        directories.clear();
+        results.clear();
+        documents.clear();
+        documentChars = 0;
+        resultChars = 0;
+    }
+
+    /**
+     * Keeps the result unless it is larger than all the results may be, evicting the least recently used results
+     * to stay within the number of results and characters
+     */
+    protected void cacheResult(String key, String result) {
+        if (result.length() > maxResultChars) {
+            return;
+        }
+        results.put(key, result);
+        resultChars += result.length();
+        for (Iterator<String> iter = results.values().iterator(); iter.hasNext() && (resultChars > maxResultChars || results.size() > MAX_RESULTS); ) {
+            resultChars -= iter.next().length();
+            iter.remove();
+        }
+    }
+
+    protected String render(Repository repository, List<Entry> entries, String fileNameWildcard, String search) throws IOException {
+        FileFilter filter = FileFilters.createFileFilter(fileNameWildcard);
+        boolean first = true;
+        StringBuilder buffer = new StringBuilder("{\n");
+        for (Entry entry : entries) {
+            if (!filter.accept(new File(entry.name))) {
+                continue;
+            }
+            String text = getDocument(repository, entry.blobId);
+            if (!Strings.isNotBlank(search) || text.contains(search)) {
+                if (first) {
+                    first = false;
+                } else {
+                    buffer.append(",\n");
+                }
+                buffer.append("\"");
+                buffer.append(entry.name);
+                buffer.append("\": ");
+                buffer.append(text);
+            }
+        }
+        buffer.append("\n}");
+        return buffer.toString();
+    }
+
+    protected List<Entry> getDirectory(Repository repository, ObjectId treeId) throws IOException {
+        List<Entry> answer = directories.get(treeId);
+        if (answer == null) {
+            answer = new ArrayList<Entry>();
+            TreeWalk walk = new TreeWalk(repository);
+            try {
+                walk.addTree(treeId);
+                walk.setRecursive(false);
+                while (walk.next()) {
+                    if (FileMode.REGULAR_FILE.equals(walk.getRawMode(0)) || FileMode.EXECUTABLE_FILE.equals(walk.getRawMode(0))) {
+                        String name = walk.getNameString();
+                        if (!name.startsWith(".")) {
+                            answer.add(new Entry(name, walk.getObjectId(0)));
+                        }
+                    }
+                }
+            } finally {
+                walk.close();
+            }
+            answer = Collections.unmodifiableList(answer);
+            directories.put(treeId, answer);
+        }
+        return answer;
+    }
+
+    protected String getDocument(Repository repository, ObjectId blobId) throws IOException {
+        String answer = documents.get(blobId);
+        if (answer == null) {
+            byte[] bytes = repository.open(blobId, Constants.OBJ_BLOB).getBytes();
+            answer = RawParseUtils.decode(bytes);
+            documentChars += answer.length();
+            documents.put(blobId, answer);
+        }
+        return answer;
+    }
+
+    protected static ObjectId findTree(Repository repository, RevTree rootTree, String path) throws IOException {
+        String treePath = GitFacade.trimLeadingSlash(path);
+        while (treePath != null && treePath.endsWith("/")) {
+            treePath = treePath.substring(0, treePath.length() - 1);
+        }
+        if (Strings.isBlank(treePath)) {
+            return rootTree;
+        }
+        TreeWalk walk = TreeWalk.forPath(repository, treePath, rootTree);
+        if (walk == null) {
+            return null;
+        }
+        try {
+            return FileMode.TREE.equals(walk.getRawMode(0)) ? walk.getObjectId(0) : null;
+        } finally {
+            walk.close();
+        }
+    }
+
+    private static <K, V> Map<K, V> lruMap(final int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    protected static class Entry {
+        private final String name;
+        private final ObjectId blobId;
+
+        public Entry(String name, ObjectId blobId) {
+            this.name = name;
+            this.blobId = blobId;
+        }
+    }
+}
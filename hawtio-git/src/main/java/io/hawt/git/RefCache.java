@@ -0,0 +1,196 @@
+package io.hawt.git;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the local branches and HEAD of a repository so that resolving a branch does not have to
+ * list every ref on each request.
+ * <p/>
+ * The cached refs are dropped whenever JGit fires a {@link RefsChangedEvent}, which it does for every
+ * ref update made through the repository (commits, checkouts, pulls, branch creation). Parsed commits
+ * are immutable so they are memoized by id in a small LRU cache, which lets repeated reads against the
+ * same branch head reuse the parsed commit and its tree.
+ */
+public class RefCache implements RefsChangedListener {
+    private static final transient Logger LOG = LoggerFactory.getLogger(RefCache.class);
+
+    private static final int DEFAULT_MAX_COMMITS = 64;
+
+    private final Repository repository;
+    private final Map<ObjectId, RevCommit> commits;
+    private volatile Snapshot snapshot;
+    private long generation;
+    private ListenerHandle handle;
+
+    public RefCache(Repository repository) {
+        this(repository, DEFAULT_MAX_COMMITS);
+    }
+
+    public RefCache(Repository repository, final int maxCommits) {
+        this.repository = repository;
+        this.commits = Collections.synchronizedMap(new LinkedHashMap<ObjectId, RevCommit>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, RevCommit> eldest) {
+                return size() > maxCommits;
+            }
+        });
+    }
+
+    public synchronized void start() {
+        if (handle == null) {
+            handle = repository.getListenerList().addRefsChangedListener(this);
+        }
+    }
+
+    public synchronized void stop() {
+        if (handle != null) {
+            handle.remove();
+            handle = null;
+        }
+        invalidate();
+        commits.clear();
+    }
+
+    @Override
+    public void onRefsChanged(RefsChangedEvent event) {
+        invalidate();
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Returns the local branch ref for the given short branch name or null if there is no such branch
+     */
+    public Ref getLocalBranch(String branch) {
+        return getSnapshot().branches.get(branch);
+    }
+
+    /**
+     * Returns the local branch refs keyed by their short branch name
+     */
+    public Map<String, Ref> getLocalBranches() {
+        return getSnapshot().branches;
+    }
+
+    public boolean localBranchExists(String branch) {
+        return getLocalBranch(branch) != null;
+    }
+
+    /**
+     * Returns the object id of the given local branch or null if there is no such branch
+     */
+    public ObjectId getBranchObjectId(String branch) {
+        Ref ref = getLocalBranch(branch);
+        return ref != null ? ref.getObjectId() : null;
+    }
+
+    /**
+     * Returns true if HEAD points at a commit; i.e. the repository has at least one commit on the current branch
+     */
+    public boolean hasHead() {
+        return getSnapshot().head != null;
+    }
+
+    /**
+     * Returns the commit HEAD points at or null if there has been no commit yet
+     */
+    public RevCommit getHead() {
+        ObjectId head = getSnapshot().head;
+        return head != null ? getCommit(head) : null;
+    }
+
+    /**
+     * Returns the head commit of the given local branch or null if there is no such branch
+     */
+    public RevCommit getBranchHead(String branch) {
+        ObjectId id = getBranchObjectId(branch);
+        return id != null ? getCommit(id) : null;
+    }
+
+    /**
+     * Returns the parsed commit for the given id, reusing a previously parsed instance if possible
+     */
+    public RevCommit getCommit(AnyObjectId id) {
+        ObjectId key = id.copy();
+        RevCommit answer = commits.get(key);
+        if (answer == null) {
+            RevWalk walk = new RevWalk(repository);
+            try {
+                answer = walk.parseCommit(key);
+                // parse the tree too so that callers can walk it without another lookup
+                walk.parseHeaders(answer.getTree());
+            } catch (IOException e) {
+                throw new RuntimeIOException(e);
+            } finally {
+                walk.dispose();
+            }
+            commits.put(key, answer);
+        }
+        return answer;
+    }
+
+    protected Snapshot getSnapshot() {
+        Snapshot answer = snapshot;
+        if (answer == null) {
+            long loadedGeneration;
+            synchronized (this) {
+                loadedGeneration = generation;
+            }
+            answer = loadSnapshot();
+            synchronized (this) {
+                // don't keep the snapshot if the refs changed while we were loading it
+                if (loadedGeneration == generation) {
+                    snapshot = answer;
+                }
+            }
+        }
+        return answer;
+    }
+
+    protected Snapshot loadSnapshot() {
+        try {
+            Map<String, Ref> branches = repository.getRefDatabase().getRefs(Constants.R_HEADS);
+            Ref head = repository.getRefDatabase().getRef(Constants.HEAD);
+            ObjectId headId = head != null ? head.getObjectId() : null;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Loaded " + branches.size() + " local branches with HEAD " + headId);
+            }
+            return new Snapshot(branches, headId);
+        } catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    protected static class Snapshot {
+        private final Map<String, Ref> branches;
+        private final ObjectId head;
+
+        public Snapshot(Map<String, Ref> branches, ObjectId head) {
+            this.branches = branches;
+            this.head = head;
+        }
+    }
+}
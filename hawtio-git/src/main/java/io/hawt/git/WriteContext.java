@@ -25,6 +25,8 @@ import org.eclipse.jgit.lib.PersonIdent;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import static io.hawt.git.GitFacadeSupport.getFilePattern;
 
@@ -38,6 +40,7 @@ public class WriteContext {
     private boolean requiresCommit;
     private PersonIdent author;
     private String message;
+    private final Set<String> filePatterns = new LinkedHashSet<String>();
 
     public WriteContext(Git git, File rootDir, File file) {
         this.git = git;
@@ -47,16 +50,29 @@ public class WriteContext {
 
 
     /**
-     * Adds the given file to git
+     * Adds the given file to git; the files are staged together by {@link #stageFiles()} before the commit
      */
     public void addFile(File file) throws IOException, GitAPIException {
         String path = Files.getRelativePath(rootDir, file);
-        String filePattern = getFilePattern(path);
-        AddCommand add = git.add().addFilepattern(filePattern).addFilepattern(".");
-        add.call();
+        filePatterns.add(getFilePattern(path));
         requiresCommit = true;
     }
 
+    /**
+     * Stages all the files added so far using a single git add, so that the index is only read and
+     * written once however many files were added
+     */
+    public void stageFiles() throws GitAPIException {
+        if (!filePatterns.isEmpty()) {
+            AddCommand add = git.add();
+            for (String filePattern : filePatterns) {
+                add.addFilepattern(filePattern);
+            }
+            add.addFilepattern(".").call();
+            filePatterns.clear();
+        }
+    }
+
     // Properties
     //-------------------------------------------------------------------------
 
@@ -0,0 +1,138 @@
+package io.hawt.git;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.hawt.git.GitFacadeTest.createTestGitFacade;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests paging through the history and bounding the size of diffs
+ */
+public class GitHistoryTest {
+    GitFacade git = createTestGitFacade("git-history-test");
+
+    String branch = "master";
+    String authorName = "jstrachan";
+    String authorEmail = "james.strachan@gmail.com";
+
+    @Before
+    public void init() throws Exception {
+        git.setCloneRemoteRepoOnStartup(false);
+        git.init();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        git.destroy();
+    }
+
+    @Test
+    public void pagesThroughHistory() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            git.write(branch, "paged.txt", "Change " + i, authorName, authorEmail, "version " + i);
+        }
+        List<CommitInfo> all = git.history(branch, null, "paged.txt", 0);
+        assertEquals(5, all.size());
+        assertEquals(2, git.history(branch, null, "paged.txt", 2).size());
+
+        List<String> paged = new ArrayList<String>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CommitPage page = git.historyPage(branch, cursor, "paged.txt", 2);
+            assertTrue("page should not be larger than the page size", page.getCommits().size() <= 2);
+            for (CommitInfo info : page.getCommits()) {
+                paged.add(info.getName());
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        List<String> expected = new ArrayList<String>();
+        for (CommitInfo info : all) {
+            expected.add(info.getName());
+        }
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    public void pagesThroughMergedHistory() throws Exception {
+        git.write(branch, "base.txt", "Base", authorName, authorEmail, "base");
+        git.createBranch(branch, "feature");
+        for (int i = 0; i < 3; i++) {
+            git.write("feature", "feature.txt", "Feature " + i, authorName, authorEmail, "feature " + i);
+            git.write(branch, "master.txt", "Master " + i, authorName, authorEmail, "master " + i);
+        }
+        Git jgit = Git.open(git.getRootGitDirectory());
+        try {
+            jgit.checkout().setName(branch).call();
+            MergeResult result = jgit.merge()
+                    .include(jgit.getRepository().findRef("feature"))
+                    .setCommit(true)
+                    .setMessage("Merge feature")
+                    .call();
+            assertTrue("merge failed: " + result, result.getMergeStatus().isSuccessful());
+        } finally {
+            jgit.close();
+        }
+        git.getRefCache().invalidate();
+
+        Set<String> expected = new HashSet<String>();
+        for (CommitInfo info : git.history(branch, null, null, 0)) {
+            expected.add(info.getName());
+        }
+        assertTrue("history should include both sides of the merge", expected.size() >= 8);
+
+        List<String> paged = new ArrayList<String>();
+        String cursor = null;
+        do {
+            CommitPage page = git.historyPage(branch, cursor, null, 2);
+            for (CommitInfo info : page.getCommits()) {
+                paged.add(info.getName());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected.size(), paged.size());
+        assertEquals(expected, new HashSet<String>(paged));
+    }
+
+    @Test
+    public void truncatesLargeDiffs() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            large.append("line ").append(i).append("\n");
+        }
+        git.write(branch, "large.txt", "Add large file", authorName, authorEmail, "start\n");
+        git.write(branch, "large.txt", "Grow large file", authorName, authorEmail, large.toString());
+
+        git.setMaxDiffFileBytes(1024);
+        String diff = git.diff(null, null, "large.txt");
+        assertTrue("diff should be truncated but was: " + diff, diff.contains("... diff of large.txt truncated"));
+        assertTrue("diff should be bounded but was " + diff.length() + " chars", diff.length() < 2048);
+
+        git.setMaxDiffFileBytes(0);
+        diff = git.diff(null, null, "large.txt");
+        assertFalse("diff should not be truncated", diff.contains("truncated"));
+        assertTrue(diff.contains("+line 1999"));
+    }
+
+    @Test
+    public void emptyHistoryPage() throws Exception {
+        CommitPage page = git.historyPage(branch, null, "missing.txt", 10);
+        assertNull(page.getNextCursor());
+    }
+}
@@ -0,0 +1,152 @@
+package io.hawt.git;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.hawt.util.Files;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Test;
+
+import static io.hawt.git.GitFacadeTest.createTestGitFacade;
+import static io.hawt.git.GitFacadeTest.targetDir;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that pushes are coalesced and retried in the background
+ */
+public class GitReplicatorTest {
+    private GitReplicator replicator;
+
+    @After
+    public void destroy() throws Exception {
+        if (replicator != null) {
+            replicator.stop();
+        }
+    }
+
+    @Test
+    public void coalescesPushesRequestedWhilePushing() throws Exception {
+        final CountDownLatch firstPushStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstPush = new CountDownLatch(1);
+        final CountDownLatch secondPushDone = new CountDownLatch(1);
+        final List<Set<String>> pushes = new ArrayList<Set<String>>();
+
+        replicator = new GitReplicator(new GitReplicator.Pusher() {
+            @Override
+            public void push(Set<String> branches) throws Exception {
+                synchronized (pushes) {
+                    pushes.add(branches);
+                }
+                if (pushes.size() == 1) {
+                    firstPushStarted.countDown();
+                    releaseFirstPush.await(10, TimeUnit.SECONDS);
+                } else {
+                    secondPushDone.countDown();
+                }
+            }
+        });
+
+        replicator.requestPush("a");
+        assertTrue("first push should start", firstPushStarted.await(10, TimeUnit.SECONDS));
+        replicator.requestPush("b");
+        replicator.requestPush("c");
+        replicator.requestPush("b");
+        releaseFirstPush.countDown();
+
+        assertTrue("second push should run", secondPushDone.await(10, TimeUnit.SECONDS));
+        assertEquals(2, pushes.size());
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("a")), pushes.get(0));
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("b", "c")), pushes.get(1));
+    }
+
+    @Test
+    public void retriesFailedPushes() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch pushed = new CountDownLatch(1);
+
+        replicator = new GitReplicator(new GitReplicator.Pusher() {
+            @Override
+            public void push(Set<String> branches) throws Exception {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new Exception("remote not reachable");
+                }
+                pushed.countDown();
+            }
+        });
+        replicator.setInitialBackoff(10);
+
+        replicator.requestPush("master");
+        assertTrue("push should be retried", pushed.await(10, TimeUnit.SECONDS));
+        assertEquals(1, replicator.getFailureCount());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void flushesPendingBranchesOnStop() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final List<Set<String>> pushes = new ArrayList<Set<String>>();
+
+        replicator = new GitReplicator(new GitReplicator.Pusher() {
+            @Override
+            public void push(Set<String> branches) throws Exception {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new Exception("remote not reachable");
+                }
+                synchronized (pushes) {
+                    pushes.add(branches);
+                }
+            }
+        });
+        // the retry is far in the future so only stop() can push the branch
+        replicator.setInitialBackoff(TimeUnit.HOURS.toMillis(1));
+
+        replicator.requestPush("master");
+        for (int i = 0; i < 1000 && attempts.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, attempts.get());
+
+        replicator.stop();
+        replicator = null;
+        assertEquals(1, pushes.size());
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("master")), pushes.get(0));
+    }
+
+    @Test
+    public void pushesTheCommittedBranchTips() throws Exception {
+        File remoteDir = new File(targetDir(), "git-replicator-remote");
+        if (remoteDir.exists()) {
+            Files.recursiveDelete(remoteDir);
+        }
+        Git.init().setBare(true).setDirectory(remoteDir).call().close();
+
+        GitFacade git = createTestGitFacade("git-replicator-test");
+        git.setCloneRemoteRepoOnStartup(false);
+        git.setPushOnCommit(true);
+        git.init();
+        CommitInfo commit;
+        try {
+            git.setRemoteRepository(remoteDir.toURI().toString());
+            commit = git.write("master", "/replicated.txt", "Replicated", "jstrachan", "james.strachan@gmail.com", "content");
+        } finally {
+            // flushes the pending push
+            git.destroy();
+        }
+
+        Git remote = Git.open(remoteDir);
+        try {
+            assertEquals(commit.getName(), remote.getRepository().exactRef("refs/heads/master").getObjectId().name());
+        } finally {
+            remote.close();
+        }
+    }
+}
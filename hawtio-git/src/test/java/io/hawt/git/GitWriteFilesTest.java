@@ -0,0 +1,93 @@
+package io.hawt.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.hawt.util.IOHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.eclipse.jgit.api.Git;
+import org.junit.Test;
+
+import static io.hawt.git.GitFacadeTest.createTestGitFacade;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests writing many files in a single commit
+ */
+public class GitWriteFilesTest {
+    GitFacade git = createTestGitFacade("git-write-files-test");
+
+    String branch = "master";
+    String authorName = "jstrachan";
+    String authorEmail = "james.strachan@gmail.com";
+
+    @Before
+    public void init() throws Exception {
+        git.setCloneRemoteRepoOnStartup(false);
+        git.init();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        git.destroy();
+    }
+
+    @Test
+    public void writesFilesInOneCommit() throws Exception {
+        int before = git.history(branch, null, null, 0).size();
+
+        Map<String, String> contents = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 50; i++) {
+            contents.put("/batch/dir" + (i % 5) + "/file" + i + ".txt", "content " + i);
+        }
+        CommitInfo commit = git.writeFiles(branch, contents, "Imported a batch", authorName, authorEmail);
+        assertNotNull("should have committed", commit);
+        assertEquals("Imported a batch", commit.getShortMessage());
+
+        List<CommitInfo> history = git.history(branch, null, null, 0);
+        assertEquals(before + 1, history.size());
+        assertEquals(50, git.getCommitTree(commit.getName()).size());
+        assertEquals("content 42", IOHelper.readFully(new File(git.getRootGitDirectory(), "batch/dir2/file42.txt")));
+        assertTrue(git.status().isClean());
+    }
+
+    @Test
+    public void keepsCommittedFilesWhenThePushFails() throws Exception {
+        git.destroy();
+        final AtomicBoolean remoteDown = new AtomicBoolean(true);
+        git = new GitFacade() {
+            @Override
+            protected void pushAfterCommit(Git git, String branch) throws Exception {
+                if (remoteDown.get()) {
+                    throw new IOException("The remote repository is not available");
+                }
+            }
+        };
+        git.setConfigDirectory(createTestGitFacade("git-write-files-push-test").getRootGitDirectory());
+        git.setCloneRemoteRepoOnStartup(false);
+        git.setPushOnCommit(true);
+        git.init();
+
+        Map<String, String> contents = new LinkedHashMap<String, String>();
+        contents.put("/batch/file1.txt", "content 1");
+        contents.put("/batch/file2.txt", "content 2");
+        CommitInfo commit = git.writeFiles(branch, contents, "Imported a batch", authorName, authorEmail);
+        assertNotNull("should have committed", commit);
+        assertEquals(2, git.getCommitTree(commit.getName()).size());
+        assertTrue(new File(git.getRootGitDirectory(), "batch/file1.txt").exists());
+        assertTrue(git.status().isClean());
+
+        // the next write must not commit the deletion of the batch
+        remoteDown.set(false);
+        CommitInfo other = git.write(branch, "/other.txt", "Added another file", authorName, authorEmail, "other");
+        assertEquals(1, git.getCommitTree(other.getName()).size());
+        assertTrue(new File(git.getRootGitDirectory(), "batch/file2.txt").exists());
+    }
+}
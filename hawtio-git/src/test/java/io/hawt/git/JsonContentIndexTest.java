@@ -0,0 +1,94 @@
+package io.hawt.git;
+
+import java.io.File;
+
+import io.hawt.util.Files;
+import io.hawt.util.IOHelper;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests querying the JSON documents of a directory tree
+ */
+public class JsonContentIndexTest {
+    private File dir = new File(GitFacadeTest.targetDir(), "git-json-index-test");
+    private Git git;
+    private JsonContentIndex index = new JsonContentIndex();
+
+    @Before
+    public void init() throws Exception {
+        Files.recursiveDelete(dir);
+        git = Git.init().setDirectory(dir).call();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        git.close();
+    }
+
+    @Test
+    public void queriesDirectoryTree() throws Exception {
+        write("dashboards/1.json", "{ key: 1, name: 'James'}");
+        write("dashboards/2.json", "{ key: 2, name: 'Stan'}");
+        write("dashboards/readme.md", "James");
+        RevCommit commit = commit();
+
+        String json = index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", null);
+        assertEquals("{\n\"1.json\": { key: 1, name: 'James'},\n\"2.json\": { key: 2, name: 'Stan'}\n}", json);
+        assertSame(json, index.query(git.getRepository(), commit.getTree(), "dashboards/", "*.json", null));
+
+        json = index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", "Stan");
+        assertEquals("{\n\"2.json\": { key: 2, name: 'Stan'}\n}", json);
+
+        write("dashboards/2.json", "{ key: 2, name: 'Claus'}");
+        commit = commit();
+        json = index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", null);
+        assertTrue("JSON should include the new content but was: " + json, json.contains("Claus"));
+        assertFalse("JSON should not include the old content but was: " + json, json.contains("Stan"));
+
+        assertEquals("{\n\n}", index.query(git.getRepository(), commit.getTree(), "/missing", "*.json", null));
+    }
+
+    @Test
+    public void keepsResultsWithinCharacterBudget() throws Exception {
+        index = new JsonContentIndex(1024 * 1024, 100);
+        write("dashboards/1.json", "{ key: 1, name: 'James'}");
+        write("dashboards/2.json", "{ key: 2, name: 'Stan'}");
+        write("large/1.json", "{ key: 1, description: '" + new String(new char[200]).replace('\0', 'x') + "'}");
+        RevCommit commit = commit();
+
+        // too large to be kept at all
+        String large = index.query(git.getRepository(), commit.getTree(), "/large", "*.json", null);
+        assertNotSame(large, index.query(git.getRepository(), commit.getTree(), "/large", "*.json", null));
+
+        String james = index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", "James");
+        assertSame(james, index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", "James"));
+        String stan = index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", "Stan");
+        String both = index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", null);
+
+        // the results for James and Stan had to make room for the result with both
+        assertSame(both, index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", null));
+        assertNotSame(james, index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", "James"));
+        assertEquals(stan, index.query(git.getRepository(), commit.getTree(), "/dashboards", "*.json", "Stan"));
+    }
+
+    protected void write(String path, String text) throws Exception {
+        File file = new File(dir, path);
+        file.getParentFile().mkdirs();
+        IOHelper.write(file, text);
+        git.add().addFilepattern(path).call();
+    }
+
+    protected RevCommit commit() throws Exception {
+        return git.commit().setMessage("Updated").call();
+    }
+}
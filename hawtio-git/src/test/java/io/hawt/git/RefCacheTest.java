@@ -0,0 +1,66 @@
+package io.hawt.git;
+
+import java.io.File;
+
+import io.hawt.util.Files;
+import io.hawt.util.IOHelper;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the cached refs are refreshed when the repository changes
+ */
+public class RefCacheTest {
+    private File dir = new File(GitFacadeTest.targetDir(), "git-ref-cache-test");
+    private Git git;
+    private RefCache cache;
+
+    @Before
+    public void init() throws Exception {
+        Files.recursiveDelete(dir);
+        git = Git.init().setDirectory(dir).call();
+        cache = new RefCache(git.getRepository());
+        cache.start();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        cache.stop();
+        git.close();
+    }
+
+    @Test
+    public void refreshesRefsOnCommitAndBranch() throws Exception {
+        assertFalse(cache.hasHead());
+        assertNull(cache.getBranchObjectId("master"));
+
+        RevCommit first = commit("a.txt", "first");
+        assertTrue(cache.hasHead());
+        assertEquals(first.getId(), cache.getBranchObjectId("master"));
+        assertEquals(first.getId(), cache.getHead().getId());
+        assertSame(cache.getHead(), cache.getBranchHead("master"));
+
+        assertFalse(cache.localBranchExists("1.0"));
+        git.branchCreate().setName("1.0").call();
+        assertTrue(cache.localBranchExists("1.0"));
+
+        RevCommit second = commit("b.txt", "second");
+        assertEquals(second.getId(), cache.getBranchObjectId("master"));
+        assertEquals(first.getId(), cache.getBranchObjectId("1.0"));
+    }
+
+    protected RevCommit commit(String path, String message) throws Exception {
+        IOHelper.write(new File(dir, path), message);
+        git.add().addFilepattern(path).call();
+        return git.commit().setMessage(message).call();
+    }
+}
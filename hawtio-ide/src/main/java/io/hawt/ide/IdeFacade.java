@@ -3,6 +3,7 @@ package io.hawt.ide;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
@@ -24,6 +25,9 @@ public class IdeFacade extends MBeanSupport implements IdeFacadeMBean {
     private static IdeFacade singleton;
     private File baseDir;
     private Boolean restApiSupported;
+    private SourceIndex sourceIndex;
+    private int connectTimeout = 2000;
+    private int readTimeout = 10000;
 
     public static IdeFacade getSingleton() {
         if (singleton == null) {
@@ -39,6 +43,17 @@ public class IdeFacade extends MBeanSupport implements IdeFacadeMBean {
         super.init();
     }
 
+    @Override
+    public void destroy() throws Exception {
+        synchronized (this) {
+            if (sourceIndex != null) {
+                sourceIndex.close();
+                sourceIndex = null;
+            }
+        }
+        super.destroy();
+    }
+
     @Override
     protected String getDefaultObjectName() {
         return "hawtio:type=IdeFacade";
@@ -54,8 +69,44 @@ public class IdeFacade extends MBeanSupport implements IdeFacadeMBean {
         return baseDir;
     }
 
-    public void setBaseDir(File baseDir) {
+    public synchronized void setBaseDir(File baseDir) {
         this.baseDir = baseDir;
+        if (sourceIndex != null) {
+            sourceIndex.close();
+            sourceIndex = null;
+        }
+    }
+
+    /**
+     * Returns the index of the source folders of the base directory, which is built on the first lookup
+     */
+    synchronized SourceIndex getSourceIndex() {
+        if (sourceIndex == null) {
+            sourceIndex = new SourceIndex(getBaseDir());
+        }
+        return sourceIndex;
+    }
+
+    String findClassAbsoluteFileName(String fileName, String className) {
+        String relativeName = SourceLocator.toRelativeFileName(fileName, className);
+        String answer = getSourceIndex().findClassAbsoluteFileName(fileName, className);
+        return answer != null ? answer : SourceLocator.defaultFileName(relativeName);
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
     }
 
     /**
@@ -65,7 +116,7 @@ public class IdeFacade extends MBeanSupport implements IdeFacadeMBean {
      *  - fall back to Intellij's XmlRPC mechanism to open and navigate to a file
      */
     String ideaOpen(final SourceReference sourceReference) throws Exception {
-		String absoluteFileName = SourceLocator.findClassAbsoluteFileName(sourceReference.fileName, sourceReference.className, getBaseDir());
+		String absoluteFileName = findClassAbsoluteFileName(sourceReference.fileName, sourceReference.className);
     	if(invokeRestApi(absoluteFileName, sourceReference)) {
     		return "OK";
     	} else {
@@ -118,10 +169,12 @@ public class IdeFacade extends MBeanSupport implements IdeFacadeMBean {
             	}
         	}
         	URL requestUrl = new URL(builder.toString());
-			HttpURLConnection connection = (HttpURLConnection) requestUrl.openConnection();
+			HttpURLConnection connection = openConnection(requestUrl);
         	connection.setRequestMethod("GET");
         	LOG.debug("Calling URL: " + builder.toString());
-			return inferApiSupport(connection.getResponseCode() == HttpURLConnection.HTTP_OK);
+			int responseCode = connection.getResponseCode();
+			drain(connection);
+			return inferApiSupport(responseCode == HttpURLConnection.HTTP_OK);
 		} catch (IOException e) {//error on first attempt, take this as as sign that url is not supported
 			LOG.debug("Error invoking IDEA REST API to open file", e);
 			return inferApiSupport(false);
@@ -156,7 +209,7 @@ public class IdeFacade extends MBeanSupport implements IdeFacadeMBean {
     private String ideaXmlRpc(String xml) throws IOException {
         String charset = "UTF-8";
 
-        HttpURLConnection connection = (HttpURLConnection) new URL(IDEA_URL).openConnection();
+        HttpURLConnection connection = openConnection(new URL(IDEA_URL));
         connection.setDoOutput(true);
         connection.setRequestMethod("POST");
         connection.setRequestProperty("accept-charset", charset);
@@ -179,6 +232,41 @@ public class IdeFacade extends MBeanSupport implements IdeFacadeMBean {
         }
     }
 
+    /**
+     * Opens a connection to the IDE; the JDK keeps the connection alive for the next call
+     * as long as the response is read fully and closed
+     */
+    private HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        return connection;
+    }
+
+    /**
+     * Reads and closes the response so the connection can be reused
+     */
+    private void drain(HttpURLConnection connection) {
+        InputStream is = null;
+        try {
+            is = connection.getInputStream();
+        } catch (IOException e) {
+            is = connection.getErrorStream();
+        }
+        if (is != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                while (is.read(buffer) >= 0) {
+                    // discard
+                }
+            } catch (IOException e) {
+                LOG.debug("Failed to read IDE response: " + e, e);
+            } finally {
+                IOHelper.close(is, "response", LOG);
+            }
+        }
+    }
+
 	@Override
 	public String ideOpen(String fileName, String className, Integer line, Integer column) throws Exception {
 		SourceReference sourceReference = new SourceReference();
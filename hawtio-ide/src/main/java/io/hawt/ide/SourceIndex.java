@@ -0,0 +1,298 @@
+package io.hawt.ide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the files in the source folders of a project (the children of src/main and src/test) keyed by
+ * their path relative to the source folder, so that finding the source file of a class is a hash lookup rather
+ * than a search of the file system.
+ * <p/>
+ * The index is built lazily on the first lookup and kept up to date by a {@link WatchService}; if the
+ * folders cannot be watched, for example once the watch limit of the system is reached, each lookup falls back
+ * to searching the folders like {@link SourceLocator}.
+ */
+class SourceIndex {
+	private static final transient Logger LOG = LoggerFactory.getLogger(SourceIndex.class);
+
+	private final File baseDir;
+	private final List<SourceRoot> roots = new ArrayList<SourceRoot>();
+	private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<WatchKey, Path>();
+	private WatchService watchService;
+	private Thread watchThread;
+	private boolean built;
+	private volatile boolean watching;
+
+	SourceIndex(File baseDir) {
+		this.baseDir = baseDir;
+	}
+
+	/**
+	 * Given a class name and a file name, returns the absolute file name of the source file or null if it cannot
+	 * be found
+	 */
+	String findClassAbsoluteFileName(String fileName, String className) {
+		String relativeName = SourceLocator.toRelativeFileName(fileName, className);
+		String answer = SourceLocator.findInFolder(baseDir, relativeName);
+		if (answer == null) {
+			answer = find(relativeName);
+		}
+		return answer;
+	}
+
+	/**
+	 * Returns the absolute file name of the given path relative to one of the source folders or null
+	 */
+	String find(String relativeName) {
+		ensureBuilt();
+		if (!watching) {
+			return SourceLocator.findInSourceFolders(baseDir, relativeName);
+		}
+		String key = toKey(relativeName);
+		for (SourceRoot root : roots) {
+			Path path = root.files.get(key);
+			if (path != null) {
+				File file = path.toFile();
+				// lets not trust the index blindly in case we missed an event
+				if (file.isFile()) {
+					return file.getAbsolutePath();
+				}
+				root.files.remove(key);
+			}
+		}
+		return null;
+	}
+
+	synchronized void close() {
+		watching = false;
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				LOG.debug("Failed to close watch service: " + e, e);
+			}
+			watchService = null;
+		}
+		if (watchThread != null) {
+			watchThread.interrupt();
+			watchThread = null;
+		}
+		roots.clear();
+		watchedDirs.clear();
+		built = false;
+	}
+
+	int size() {
+		int answer = 0;
+		for (SourceRoot root : roots) {
+			answer += root.files.size();
+		}
+		return answer;
+	}
+
+	protected synchronized void ensureBuilt() {
+		if (built) {
+			return;
+		}
+		built = true;
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException e) {
+			LOG.warn("Cannot watch the source folders of " + baseDir + " so searching them on each lookup. " + e);
+			return;
+		} catch (UnsupportedOperationException e) {
+			LOG.warn("Cannot watch the source folders of " + baseDir + " so searching them on each lookup. " + e);
+			return;
+		}
+		long start = System.currentTimeMillis();
+		for (String parent : new String[]{"src/main", "src/test"}) {
+			File[] dirs = new File(baseDir, parent).listFiles();
+			if (dirs != null) {
+				for (File dir : dirs) {
+					if (dir.isDirectory()) {
+						SourceRoot root = new SourceRoot(dir.toPath());
+						roots.add(root);
+						if (!root.index(root.dir)) {
+							return;
+						}
+					}
+				}
+			}
+		}
+		watching = true;
+		watchThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				processEvents();
+			}
+		}, "hawtio-ide-source-watcher");
+		watchThread.setDaemon(true);
+		watchThread.start();
+		LOG.debug("Indexed " + size() + " source files of " + baseDir + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Stops using the index as a folder could not be watched, so that the lookups go back to searching the
+	 * source folders rather than missing the files which were never indexed
+	 */
+	protected synchronized void unwatch(Path dir, IOException e) {
+		if (watchService == null) {
+			return;
+		}
+		LOG.warn("Cannot watch the source folder " + dir + " of " + baseDir + " so searching the source folders on each lookup. " + e);
+		watching = false;
+		try {
+			watchService.close();
+		} catch (IOException closeException) {
+			LOG.debug("Failed to close watch service: " + closeException, closeException);
+		}
+		watchService = null;
+	}
+
+	protected WatchKey register(Path dir, WatchService service) throws IOException {
+		return dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+	}
+
+	protected void processEvents() {
+		WatchService service = watchService;
+		while (watching && service != null) {
+			WatchKey key;
+			try {
+				key = service.take();
+			} catch (InterruptedException e) {
+				return;
+			} catch (ClosedWatchServiceException e) {
+				return;
+			}
+			Path dir = watchedDirs.get(key);
+			SourceRoot root = dir != null ? findRoot(dir) : null;
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (root == null) {
+					break;
+				}
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					root.reindex();
+					continue;
+				}
+				Path path = dir.resolve((Path) event.context());
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+					root.index(path);
+				} else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+					root.remove(path);
+				}
+			}
+			if (!key.reset()) {
+				watchedDirs.remove(key);
+			}
+		}
+	}
+
+	protected SourceRoot findRoot(Path dir) {
+		for (SourceRoot root : roots) {
+			if (dir.startsWith(root.dir)) {
+				return root;
+			}
+		}
+		return null;
+	}
+
+	private static String toKey(String relativeName) {
+		return relativeName.replace('\\', '/');
+	}
+
+	/**
+	 * The files of a single source folder keyed by their relative path using forward slashes
+	 */
+	protected class SourceRoot {
+		private final Path dir;
+		private final Map<String, Path> files = new ConcurrentHashMap<String, Path>();
+
+		SourceRoot(Path dir) {
+			this.dir = dir;
+		}
+
+		/**
+		 * Indexes and watches the given file or directory, returning false if it could not be watched in which
+		 * case the index is no longer used
+		 */
+		boolean index(Path start) {
+			if (Files.isRegularFile(start)) {
+				files.put(keyOf(start), start);
+				return true;
+			}
+			final WatchService service = watchService;
+			if (service == null) {
+				return false;
+			}
+			try {
+				Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+						watchedDirs.put(register(dir, service), dir);
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+						if (attrs.isRegularFile()) {
+							files.put(keyOf(file), file);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (IOException e) {
+				unwatch(start, e);
+				return false;
+			} catch (ClosedWatchServiceException e) {
+				// closed while indexing
+				return false;
+			}
+			return true;
+		}
+
+		void remove(Path path) {
+			String key = keyOf(path);
+			files.remove(key);
+			// a deleted directory takes all of its files with it
+			String prefix = key + "/";
+			for (Iterator<String> iter = files.keySet().iterator(); iter.hasNext(); ) {
+				if (iter.next().startsWith(prefix)) {
+					iter.remove();
+				}
+			}
+		}
+
+		void reindex() {
+			files.clear();
+			index(dir);
+		}
+
+		private String keyOf(Path path) {
+			return toKey(dir.relativize(path).toString());
+		}
+	}
+}
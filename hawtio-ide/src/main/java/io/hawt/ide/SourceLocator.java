@@ -61,18 +61,33 @@ class SourceLocator {
 	 * the source file on the users machine or null if it cannot be found
 	 */
 	static String findClassAbsoluteFileName( String fileName, String className, final File baseDir) {
+		fileName = toRelativeFileName(fileName, className);
+		String answer = findInSourceFolders(baseDir, fileName);
+		if (answer == null) {
+			answer = defaultFileName(fileName);
+		}
+		return answer;
+	}
+
+	/**
+	 * Returns the path of the file relative to a source folder, prefixing the file name
+	 * with the package of the class unless it already contains a path
+	 */
+	static String toRelativeFileName(String fileName, String className) {
 		int lastIdx = className.lastIndexOf('.');
 		if (lastIdx > 0 && !(fileName.contains("/") || fileName.contains(File.separator))) {
 			String packagePath = className.substring(0, lastIdx).replace('.', File.separatorChar);
 			fileName = packagePath + File.separator + fileName;
 		}
-		String answer = findInSourceFolders(baseDir, fileName);
-		// if still not resolved: default to production code relative to module dir
-		// as that appears to be IDEAS preference
-		if (answer == null) {
-			answer = "src" + File.separator + "main" + File.separator + "java" + File.separator + fileName;
-		}
-		return answer;
+		return fileName;
+	}
+
+	/**
+	 * If the file cannot be resolved: default to production code relative to module dir
+	 * as that appears to be IDEAS preference
+	 */
+	static String defaultFileName(String relativeFileName) {
+		return "src" + File.separator + "main" + File.separator + "java" + File.separator + relativeFileName;
 	}
 
 }
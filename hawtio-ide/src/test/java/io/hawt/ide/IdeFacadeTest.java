@@ -1,6 +1,15 @@
 package io.hawt.ide;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 
 import org.junit.After;
 import org.junit.Before;
@@ -32,6 +41,67 @@ public class IdeFacadeTest {
         System.out.println("Found absolute file: " + absoluteFile);
     }
 
+    @Test
+    public void testIndexFindsSameFileAsLocator() throws Exception {
+        String expected = assertFindSampleFileName();
+        assertEquals(expected, facade.findClassAbsoluteFileName(sourceReference.fileName, sourceReference.className));
+    }
+
+    @Test
+    public void testIndexPicksUpNewFiles() throws Exception {
+        File baseDir = new File("target/source-index-test");
+        File packageDir = new File(baseDir, "src/main/java/com/acme");
+        packageDir.mkdirs();
+        File file = new File(packageDir, "Added.java");
+        file.delete();
+
+        SourceIndex index = new SourceIndex(baseDir);
+        try {
+            assertNull(index.findClassAbsoluteFileName("Added.java", "com.acme.Added"));
+
+            FileWriter writer = new FileWriter(file);
+            writer.write("package com.acme;");
+            writer.close();
+
+            // the watch service notices the new file in the background
+            String found = null;
+            for (int i = 0; i < 100 && found == null; i++) {
+                Thread.sleep(100);
+                found = index.findClassAbsoluteFileName("Added.java", "com.acme.Added");
+            }
+            assertEquals(file.getAbsolutePath(), found);
+
+            file.delete();
+            assertNull(index.findClassAbsoluteFileName("Added.java", "com.acme.Added"));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testIndexFallsBackToSearchingWhenFoldersCannotBeWatched() throws Exception {
+        File baseDir = new File("target/source-index-unwatched-test");
+        File packageDir = new File(baseDir, "src/main/java/com/acme");
+        packageDir.mkdirs();
+        File file = new File(packageDir, "Existing.java");
+        FileWriter writer = new FileWriter(file);
+        writer.write("package com.acme;");
+        writer.close();
+
+        SourceIndex index = new SourceIndex(baseDir) {
+            @Override
+            protected WatchKey register(Path dir, WatchService service) throws IOException {
+                throw new IOException("User limit of inotify watches reached");
+            }
+        };
+        try {
+            assertEquals(file.getAbsolutePath(), index.find("com/acme/Existing.java"));
+            assertNull(index.find("com/acme/Missing.java"));
+        } finally {
+            index.close();
+        }
+    }
+
     //@Test
     @Ignore
     public void testOpenInIDEA() throws Exception {
@@ -12,6 +12,7 @@ public class Activator implements BundleActivator {
     private transient Logger LOG = LoggerFactory.getLogger(Activator.class);
 
     private LogQuery logQuery;
+    private MavenCoordinatesTracker mavenCoordinatesTracker;
 
     @Override
     public void start(BundleContext context) throws Exception {
@@ -20,6 +21,8 @@ public class Activator implements BundleActivator {
             LogService logService = (LogService) context.getService(ref);
             logQuery = new LogQuery(logService);
             logQuery.start();
+            mavenCoordinatesTracker = new MavenCoordinatesTracker(context);
+            mavenCoordinatesTracker.start();
         } else {
             LOG.warn("Cannot find OSGi service " + LogService.class.getName() + " to use by hawtio-log to trap into the Karaf logging service");
         }
@@ -27,6 +30,9 @@ public class Activator implements BundleActivator {
 
     @Override
     public void stop(BundleContext context) throws Exception {
+        if (mavenCoordinatesTracker != null) {
+            mavenCoordinatesTracker.stop();
+        }
         if (logQuery != null) {
             logQuery.stop();
         }
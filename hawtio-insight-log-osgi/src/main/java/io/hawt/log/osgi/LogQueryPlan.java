@@ -0,0 +1,123 @@
+package io.hawt.log.osgi;
+
+import java.util.Map;
+import java.util.Set;
+
+import io.hawt.log.LogFilter;
+import io.hawt.log.support.Objects;
+import io.hawt.log.support.Predicate;
+import org.ops4j.pax.logging.spi.PaxLevel;
+import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+
+/**
+ * A {@link LogFilter} compiled into a predicate over the raw {@link PaxLoggingEvent}s which
+ * evaluates the cheap fields first (timestamp bounds, then level) and only falls back
+ * to the text search over message, logger, thread, throwable and properties when those pass.
+ * <p/>
+ * Level matching is evaluated against a bitmap of the distinct levels seen so far so that
+ * the level name only has to be rendered once per level rather than once per event. A plan
+ * therefore keeps state and is compiled for each query rather than shared between threads.
+ */
+public class LogQueryPlan implements Predicate<PaxLoggingEvent> {
+
+    private static final int MAX_LEVEL_SLOTS = 64;
+
+    private final Set<String> levels;
+    private final long before;
+    private final long after;
+    private final String matchesText;
+
+    // the bitmap of level slots; slot i is the level whose toInt() is levelKeys[i]
+    private final int[] levelKeys = new int[MAX_LEVEL_SLOTS];
+    private int levelSlots;
+    private long levelMatches;
+
+    private LogQueryPlan(Set<String> levels, Long before, Long after, String matchesText) {
+        this.levels = levels;
+        this.before = before != null ? before : Long.MAX_VALUE;
+        this.after = after != null ? after : Long.MIN_VALUE;
+        this.matchesText = matchesText;
+    }
+
+    /**
+     * Compiles the given filter into a plan, returning null if the filter does not
+     * restrict the events at all
+     */
+    public static LogQueryPlan compile(LogFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        Set<String> levels = filter.getLevelsSet();
+        String matchesText = filter.getMatchesText();
+        if (matchesText != null && matchesText.length() == 0) {
+            matchesText = null;
+        }
+        if (levels.isEmpty() && filter.getBeforeTimestamp() == null && filter.getAfterTimestamp() == null && matchesText == null) {
+            return null;
+        }
+        return new LogQueryPlan(levels.isEmpty() ? null : levels, filter.getBeforeTimestamp(), filter.getAfterTimestamp(), matchesText);
+    }
+
+    @Override
+    public boolean matches(PaxLoggingEvent event) {
+        long time = event.getTimeStamp();
+        if (time >= before || time <= after) {
+            return false;
+        }
+        if (levels != null && !matchesLevel(event)) {
+            return false;
+        }
+        return matchesText == null || matchesText(event);
+    }
+
+    protected boolean matchesLevel(PaxLoggingEvent event) {
+        PaxLevel level;
+        try {
+            level = event.getLevel();
+        } catch (NoClassDefFoundError error) {
+            // ENTESB-2234, KARAF-3350: the pax-logging service bundle may have been refreshed
+            return false;
+        }
+        if (level == null) {
+            return false;
+        }
+        int key = level.toInt();
+        for (int i = 0; i < levelSlots; i++) {
+            if (levelKeys[i] == key) {
+                return (levelMatches & (1L << i)) != 0;
+            }
+        }
+        boolean matches = levels.contains(level.toString());
+        if (levelSlots < MAX_LEVEL_SLOTS) {
+            if (matches) {
+                levelMatches |= 1L << levelSlots;
+            }
+            levelKeys[levelSlots++] = key;
+        }
+        return matches;
+    }
+
+    protected boolean matchesText(PaxLoggingEvent event) {
+        if (Objects.contains(matchesText,
+                event.getFQNOfLoggerClass(), event.getMessage(),
+                event.getLoggerName(), event.getThreadName())) {
+            return true;
+        }
+        String[] throwableStrRep = event.getThrowableStrRep();
+        if (throwableStrRep != null && Objects.contains(matchesText, throwableStrRep)) {
+            return true;
+        }
+        Map properties = event.getProperties();
+        return properties != null && Objects.contains(matchesText, properties.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "LogQueryPlan{" +
+                "after=" + after +
+                ", before=" + before +
+                ", levels=" + levels +
+                ", matchesText='" + matchesText + '\'' +
+                '}';
+    }
+}
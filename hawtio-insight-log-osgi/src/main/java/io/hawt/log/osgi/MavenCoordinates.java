@@ -11,9 +11,17 @@ import org.osgi.framework.FrameworkUtil;
 
 import static io.hawt.log.support.MavenCoordinates.appendMavenCoordinateFromPomProperties;
 
+/**
+ * Resolves the maven coordinates of bundles from their embedded <code>pom.properties</code> files.
+ * <p/>
+ * Coordinates are cached per bundle id; the {@link MavenCoordinatesTracker} keeps the cache up to date
+ * by precomputing the coordinates when a bundle is resolved and evicting them when it is updated or
+ * uninstalled. Entries also remember the bundle's last modified time so a stale entry is never returned
+ * if a bundle event was missed.
+ */
 public class MavenCoordinates {
 
-    private static Map<String, String> MAVEN_COORDINATES = new ConcurrentHashMap<String, String>();
+    private static final Map<Long, CachedCoordinates> MAVEN_COORDINATES = new ConcurrentHashMap<Long, CachedCoordinates>();
 
     public static void addMavenCoord(Map<String, String> properties) {
         if (properties.get("maven.coordinates") == null) {
@@ -84,27 +92,78 @@ public class MavenCoordinates {
             // Not sure why can't we find the bundleId?
             return null;
         }
-        String id = Long.toString(bundle.getBundleId()) + ":" + Long.toString(bundle.getLastModified());
-        String maven = MAVEN_COORDINATES.get(id);
-        if (maven == null) {
-            if (bundle.getState() >= Bundle.RESOLVED) {
-                try {
-                    Enumeration<URL> e = bundle.findEntries("META-INF/maven/", "pom.properties", true);
-                    StringBuilder buf = new StringBuilder();
-                    while (e != null && e.hasMoreElements()) {
-                        URL url = e.nextElement();
-                        appendMavenCoordinateFromPomProperties(url.openStream(), buf);
-                    }
-                    maven = buf.toString();
-                } catch (Throwable t) {
-                    // Ignore
-                    maven = "";
-                }
-                MAVEN_COORDINATES.put(id, maven);
-            } else {
-                maven = "";
-            }
+        return getMavenCoordinates(bundle);
+    }
+
+    public static String getMavenCoordinates(Bundle bundle) {
+        long lastModified = bundle.getLastModified();
+        CachedCoordinates cached = MAVEN_COORDINATES.get(bundle.getBundleId());
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.coordinates;
+        }
+        if (bundle.getState() < Bundle.RESOLVED) {
+            return "";
+        }
+        String maven = loadMavenCoordinates(bundle);
+        CachedCoordinates entry = new CachedCoordinates(lastModified, maven);
+        MAVEN_COORDINATES.put(bundle.getBundleId(), entry);
+        // the bundle may have been updated or uninstalled, and so evicted, while we were loading so lets not
+        // keep the entry past the eviction; the state changes before the bundle event is sent
+        if (bundle.getState() < Bundle.RESOLVED || bundle.getLastModified() != lastModified) {
+            MAVEN_COORDINATES.remove(bundle.getBundleId(), entry);
         }
         return maven;
     }
+
+    /**
+     * Computes and caches the coordinates of the given bundle if they are not cached already
+     */
+    public static void precompute(Bundle bundle) {
+        if (bundle.getState() >= Bundle.RESOLVED) {
+            getMavenCoordinates(bundle);
+        }
+    }
+
+    /**
+     * Removes any cached coordinates of the given bundle
+     */
+    public static void evict(long bundleId) {
+        MAVEN_COORDINATES.remove(bundleId);
+    }
+
+    /**
+     * Removes all cached coordinates
+     */
+    public static void clear() {
+        MAVEN_COORDINATES.clear();
+    }
+
+    static boolean isCached(long bundleId) {
+        return MAVEN_COORDINATES.containsKey(bundleId);
+    }
+
+    protected static String loadMavenCoordinates(Bundle bundle) {
+        try {
+            Enumeration<URL> e = bundle.findEntries("META-INF/maven/", "pom.properties", true);
+            StringBuilder buf = new StringBuilder();
+            while (e != null && e.hasMoreElements()) {
+                URL url = e.nextElement();
+                appendMavenCoordinateFromPomProperties(url.openStream(), buf);
+            }
+            return buf.toString();
+        } catch (Throwable t) {
+            // Ignore
+            return "";
+        }
+    }
+
+    private static final class CachedCoordinates {
+        private final long lastModified;
+        private final String coordinates;
+
+        private CachedCoordinates(long lastModified, String coordinates) {
+            this.lastModified = lastModified;
+            this.coordinates = coordinates;
+        }
+    }
 }
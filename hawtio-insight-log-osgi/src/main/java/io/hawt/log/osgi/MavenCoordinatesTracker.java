@@ -0,0 +1,46 @@
+package io.hawt.log.osgi;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * Keeps the {@link MavenCoordinates} cache in sync with the bundles in the container: the coordinates
+ * of a bundle are precomputed when it is resolved after being installed or updated, and dropped
+ * again when it is updated, unresolved or uninstalled so that hot deployments don't accumulate entries.
+ */
+public class MavenCoordinatesTracker implements BundleListener {
+
+    private final BundleContext bundleContext;
+
+    public MavenCoordinatesTracker(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    public void start() {
+        bundleContext.addBundleListener(this);
+    }
+
+    public void stop() {
+        bundleContext.removeBundleListener(this);
+        MavenCoordinates.clear();
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        Bundle bundle = event.getBundle();
+        switch (event.getType()) {
+            case BundleEvent.RESOLVED:
+                MavenCoordinates.precompute(bundle);
+                break;
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UNINSTALLED:
+                MavenCoordinates.evict(bundle.getBundleId());
+                break;
+            default:
+                break;
+        }
+    }
+}
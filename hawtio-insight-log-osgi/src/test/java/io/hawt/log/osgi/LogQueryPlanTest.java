@@ -0,0 +1,172 @@
+package io.hawt.log.osgi;
+
+import java.util.Collections;
+
+import io.hawt.log.LogFilter;
+import org.junit.Test;
+import org.ops4j.pax.logging.spi.PaxLevel;
+import org.ops4j.pax.logging.spi.PaxLoggingEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LogQueryPlanTest {
+
+    @Test
+    public void testFilterMatchingEverythingHasNoPlan() throws Exception {
+        assertNull(LogQueryPlan.compile(null));
+        assertNull(LogQueryPlan.compile(new LogFilter()));
+
+        LogFilter filter = new LogFilter();
+        filter.setLevels(new String[0]);
+        filter.setMatchesText("");
+        assertNull(LogQueryPlan.compile(filter));
+    }
+
+    @Test
+    public void testMatchesLevels() throws Exception {
+        LogFilter filter = new LogFilter();
+        filter.setLevels(new String[]{"WARN", "ERROR"});
+        LogQueryPlan plan = LogQueryPlan.compile(filter);
+        assertNotNull(plan);
+
+        CountingLevel info = new CountingLevel("INFO", 20000);
+        CountingLevel warn = new CountingLevel("WARN", 30000);
+        CountingLevel error = new CountingLevel("ERROR", 40000);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(plan.matches(event(1000, info, "started")));
+            assertTrue(plan.matches(event(1000, warn, "slow")));
+            assertTrue(plan.matches(event(1000, error, "failed")));
+        }
+        // each level name is only rendered once however many events there are
+        assertEquals(1, info.rendered);
+        assertEquals(1, warn.rendered);
+        assertEquals(1, error.rendered);
+
+        assertFalse(plan.matches(event(1000, null, "no level")));
+    }
+
+    @Test
+    public void testMatchesTimestampBounds() throws Exception {
+        LogFilter filter = new LogFilter();
+        filter.setAfterTimestamp(1000L);
+        filter.setBeforeTimestamp(2000L);
+        LogQueryPlan plan = LogQueryPlan.compile(filter);
+        PaxLevel info = level("INFO", 20000);
+
+        // both bounds are exclusive
+        assertFalse(plan.matches(event(999, info, "message")));
+        assertFalse(plan.matches(event(1000, info, "message")));
+        assertTrue(plan.matches(event(1001, info, "message")));
+        assertTrue(plan.matches(event(1999, info, "message")));
+        assertFalse(plan.matches(event(2000, info, "message")));
+
+        filter = new LogFilter();
+        filter.setAfterTimestamp(1000L);
+        plan = LogQueryPlan.compile(filter);
+        assertTrue(plan.matches(event(Long.MAX_VALUE - 1, info, "message")));
+    }
+
+    @Test
+    public void testMatchesText() throws Exception {
+        LogFilter filter = new LogFilter();
+        filter.setMatchesText("needle");
+        LogQueryPlan plan = LogQueryPlan.compile(filter);
+        PaxLevel info = level("INFO", 20000);
+
+        assertTrue(plan.matches(event(1000, info, "a needle in a haystack")));
+        assertFalse(plan.matches(event(1000, info, "just hay")));
+
+        PaxLoggingEvent logger = event(1000, info, "just hay");
+        when(logger.getLoggerName()).thenReturn("com.acme.needle.Service");
+        assertTrue(plan.matches(logger));
+
+        PaxLoggingEvent throwable = event(1000, info, "just hay");
+        when(throwable.getThrowableStrRep()).thenReturn(new String[]{"java.lang.Exception", "\tat NeedleFactory"});
+        assertFalse(plan.matches(throwable));
+        when(throwable.getThrowableStrRep()).thenReturn(new String[]{"java.lang.Exception: needle", "\tat Factory"});
+        assertTrue(plan.matches(throwable));
+
+        PaxLoggingEvent properties = event(1000, info, "just hay");
+        when(properties.getProperties()).thenReturn(Collections.singletonMap("bundle.name", "needle-bundle"));
+        assertTrue(plan.matches(properties));
+    }
+
+    @Test
+    public void testChecksTimestampAndLevelBeforeText() throws Exception {
+        LogFilter filter = new LogFilter();
+        filter.setLevels(new String[]{"ERROR"});
+        filter.setAfterTimestamp(1000L);
+        filter.setMatchesText("needle");
+        LogQueryPlan plan = LogQueryPlan.compile(filter);
+
+        PaxLoggingEvent tooOld = event(500, level("ERROR", 40000), "needle");
+        assertFalse(plan.matches(tooOld));
+        verify(tooOld, times(0)).getLevel();
+        verify(tooOld, times(0)).getMessage();
+
+        PaxLoggingEvent info = event(1500, level("INFO", 20000), "needle");
+        assertFalse(plan.matches(info));
+        verify(info, times(0)).getMessage();
+
+        assertTrue(plan.matches(event(1500, level("ERROR", 40000), "needle")));
+        assertFalse(plan.matches(event(1500, level("ERROR", 40000), "hay")));
+    }
+
+    /**
+     * Counts how often the level name is rendered, which Mockito cannot verify
+     */
+    private static class CountingLevel implements PaxLevel {
+        private final String name;
+        private final int value;
+        private int rendered;
+
+        CountingLevel(String name, int value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public boolean isGreaterOrEqual(PaxLevel level) {
+            return value >= level.toInt();
+        }
+
+        @Override
+        public int toInt() {
+            return value;
+        }
+
+        @Override
+        public int getSyslogEquivalent() {
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            rendered++;
+            return name;
+        }
+    }
+
+    private static PaxLevel level(String name, int value) {
+        PaxLevel level = mock(PaxLevel.class);
+        when(level.toString()).thenReturn(name);
+        when(level.toInt()).thenReturn(value);
+        return level;
+    }
+
+    private static PaxLoggingEvent event(long timestamp, PaxLevel level, String message) {
+        PaxLoggingEvent event = mock(PaxLoggingEvent.class);
+        when(event.getTimeStamp()).thenReturn(timestamp);
+        when(event.getLevel()).thenReturn(level);
+        when(event.getMessage()).thenReturn(message);
+        return event;
+    }
+}
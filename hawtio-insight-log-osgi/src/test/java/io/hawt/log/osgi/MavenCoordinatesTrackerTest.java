@@ -0,0 +1,122 @@
+package io.hawt.log.osgi;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MavenCoordinatesTrackerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BundleContext bundleContext = mock(BundleContext.class);
+    private MavenCoordinatesTracker tracker = new MavenCoordinatesTracker(bundleContext);
+    private URL pomProperties;
+
+    @Before
+    public void init() throws Exception {
+        File file = folder.newFile("pom.properties");
+        FileWriter writer = new FileWriter(file);
+        writer.write("groupId=io.hawt\nartifactId=hawtio-log\nversion=1.5\n");
+        writer.close();
+        pomProperties = file.toURI().toURL();
+        tracker.start();
+        verify(bundleContext).addBundleListener(tracker);
+    }
+
+    @After
+    public void destroy() {
+        tracker.stop();
+    }
+
+    @Test
+    public void testPrecomputesCoordinatesWhenResolved() throws Exception {
+        Bundle bundle = bundle(1, Bundle.RESOLVED);
+        tracker.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle));
+        assertTrue(MavenCoordinates.isCached(1));
+
+        assertEquals("io.hawt:hawtio-log:1.5", MavenCoordinates.getMavenCoordinates(bundle));
+        verify(bundle, times(1)).findEntries(anyString(), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void testEvictsCoordinatesWhenUpdatedOrUninstalled() throws Exception {
+        Bundle updated = bundle(2, Bundle.RESOLVED);
+        Bundle uninstalled = bundle(3, Bundle.RESOLVED);
+        MavenCoordinates.getMavenCoordinates(updated);
+        MavenCoordinates.getMavenCoordinates(uninstalled);
+
+        tracker.bundleChanged(new BundleEvent(BundleEvent.UPDATED, updated));
+        assertFalse(MavenCoordinates.isCached(2));
+        when(uninstalled.getState()).thenReturn(Bundle.UNINSTALLED);
+        tracker.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, uninstalled));
+        assertFalse(MavenCoordinates.isCached(3));
+
+        // the updated bundle has its coordinates loaded again
+        assertEquals("io.hawt:hawtio-log:1.5", MavenCoordinates.getMavenCoordinates(updated));
+        verify(updated, times(2)).findEntries(anyString(), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void testDoesNotCacheCoordinatesOfBundleUninstalledWhileLoading() throws Exception {
+        final Bundle bundle = bundle(4, Bundle.RESOLVED);
+        when(bundle.findEntries(anyString(), anyString(), anyBoolean())).thenAnswer(new Answer<Enumeration<URL>>() {
+            @Override
+            public Enumeration<URL> answer(InvocationOnMock invocation) {
+                when(bundle.getState()).thenReturn(Bundle.UNINSTALLED);
+                tracker.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+                return Collections.enumeration(Collections.singletonList(pomProperties));
+            }
+        });
+
+        MavenCoordinates.getMavenCoordinates(bundle);
+        assertFalse(MavenCoordinates.isCached(4));
+    }
+
+    @Test
+    public void testStopClearsCache() throws Exception {
+        MavenCoordinates.getMavenCoordinates(bundle(5, Bundle.ACTIVE));
+        assertTrue(MavenCoordinates.isCached(5));
+
+        tracker.stop();
+        verify(bundleContext).removeBundleListener(tracker);
+        assertFalse(MavenCoordinates.isCached(5));
+    }
+
+    private Bundle bundle(long id, int state) {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(id);
+        when(bundle.getState()).thenReturn(state);
+        when(bundle.getLastModified()).thenReturn(1000L);
+        when(bundle.findEntries("META-INF/maven/", "pom.properties", true)).thenAnswer(new Answer<Enumeration<URL>>() {
+            @Override
+            public Enumeration<URL> answer(InvocationOnMock invocation) {
+                return Collections.enumeration(Collections.singletonList(pomProperties));
+            }
+        });
+        return bundle;
+    }
+}
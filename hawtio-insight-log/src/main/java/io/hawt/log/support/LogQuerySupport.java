@@ -21,6 +21,8 @@ import javax.management.ObjectName;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.hawt.log.LogFilter;
 import io.hawt.log.LogResults;
+import io.hawt.util.metrics.Metrics;
+import io.hawt.util.metrics.MetricsFacade;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +37,7 @@ public abstract class LogQuerySupport implements LogQuerySupportMBean {
     private MBeanServer mbeanServer;
     private String hostName;
     private volatile ObjectInstance objectInstance;
+    private final MetricsFacade metrics = new MetricsFacade("log");
 
     protected LogQuerySupport() {
         try {
@@ -93,24 +96,48 @@ public abstract class LogQuerySupport implements LogQuerySupportMBean {
 
     @Override
     public LogResults logResultsSince(long time) throws IOException {
-        LogFilter filter = new LogFilter();
-        filter.setAfterTimestamp(time);
-        return queryLogResults(filter);
+        long start = Metrics.start();
+        try {
+            LogFilter filter = new LogFilter();
+            filter.setAfterTimestamp(time);
+            return queryLogResults(filter);
+        } finally {
+            Metrics.stop("log.query", start);
+        }
     }
 
     public String getLogEvents(int maxCount) throws IOException {
-        LogResults results = getLogResults(maxCount);
-        return toJSON(results);
+        long start = Metrics.start();
+        try {
+            LogResults results = getLogResults(maxCount);
+            return toJSON(results);
+        } finally {
+            Metrics.stop("log.query", start);
+        }
     }
 
     @Override
     public String filterLogEvents(String jsonFilter) throws IOException {
-        LogResults results = jsonQueryLogResults(jsonFilter);
-        return toJSON(results);
+        long start = Metrics.start();
+        try {
+            LogResults results = doJsonQueryLogResults(jsonFilter);
+            return toJSON(results);
+        } finally {
+            Metrics.stop("log.query", start);
+        }
     }
 
     @Override
     public LogResults jsonQueryLogResults(String jsonFilter) throws IOException {
+        long start = Metrics.start();
+        try {
+            return doJsonQueryLogResults(jsonFilter);
+        } finally {
+            Metrics.stop("log.query", start);
+        }
+    }
+
+    protected LogResults doJsonQueryLogResults(String jsonFilter) throws IOException {
         LogFilter filter = jsonToLogFilter(jsonFilter);
         return queryLogResults(filter);
     }
@@ -153,6 +180,8 @@ public abstract class LogQuerySupport implements LogQuerySupportMBean {
             } else {
                 objectInstance = mbeanServer.registerMBean(this, name);
             }
+            metrics.setMBeanServer(mbeanServer);
+            metrics.init();
         } catch (Exception e) {
             LOG.warn("An error occurred during mbean server registration: " + e, e);
         }
@@ -166,6 +195,7 @@ public abstract class LogQuerySupport implements LogQuerySupportMBean {
                     mbeanServer.unregisterMBean(name);
                     objectInstance = null;
                 }
+                metrics.destroy();
             } catch (Exception e) {
                 LOG.warn("An error occurred during mbean server registration: " + e, e);
             }
@@ -7,8 +7,6 @@ import io.hawt.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.beans.BeanInfo;
-import java.beans.PropertyDescriptor;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +20,7 @@ public class Introspector extends MBeanSupport implements IntrospectorMXBean {
     private static Introspector singleton;
 
     private ClassScanner classScanner = new ClassScanner();
+    private PropertyCache propertyCache = new PropertyCache();
 
 
     public static Introspector getSingleton() {
@@ -97,20 +96,10 @@ public class Introspector extends MBeanSupport implements IntrospectorMXBean {
     }
 
     public List<PropertyDTO> getProperties(Class<?> aClass) throws Exception {
-        List<PropertyDTO> answer = new ArrayList<PropertyDTO>();
-        if (aClass != null) {
-            BeanInfo beanInfo = java.beans.Introspector.getBeanInfo(aClass);
-            PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                // ignore the class property
-                if (propertyDescriptor.getName().equals("class")) {
-                    continue;
-                }
-                PropertyDTO info = new PropertyDTO(propertyDescriptor);
-                answer.add(info);
-            }
+        if (aClass == null) {
+            return new ArrayList<PropertyDTO>();
         }
-        return answer;
+        return propertyCache.getProperties(aClass);
     }
 
     /**
@@ -166,6 +155,7 @@ public class Introspector extends MBeanSupport implements IntrospectorMXBean {
     @Override
     public void clearCache() {
         getClassScanner().clearCache();
+        propertyCache.clear();
     }
 
     public ClassScanner getClassScanner() {
@@ -176,4 +166,8 @@ public class Introspector extends MBeanSupport implements IntrospectorMXBean {
         this.classScanner = classScanner;
     }
 
+    public PropertyCache getPropertyCache() {
+        return propertyCache;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package io.hawt.introspect;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A cache of the bean properties of classes so that forms which look up the properties of the same types
+ * over and over again, navigating into nested properties, only introspect each type once.
+ * <p/>
+ * Entries are keyed weakly by class and only refer weakly to the property types, so the cache never keeps
+ * a class loader alive; entries go away once the class loader of the type is garbage collected.
+ */
+public class PropertyCache {
+    private final Map<Class<?>, ClassProperties> cache = new WeakHashMap<Class<?>, ClassProperties>();
+
+    /**
+     * Returns new property DTOs for the given class, introspecting the class if it is not yet cached
+     */
+    public List<PropertyDTO> getProperties(Class<?> aClass) throws IntrospectionException {
+        return getClassProperties(aClass).toDTOs();
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    protected ClassProperties getClassProperties(Class<?> aClass) throws IntrospectionException {
+        ClassProperties answer;
+        synchronized (cache) {
+            answer = cache.get(aClass);
+        }
+        if (answer == null || !answer.isValid()) {
+            // lets introspect outside of the lock; if two threads race the results are the same anyway
+            answer = createClassProperties(aClass);
+            synchronized (cache) {
+                cache.put(aClass, answer);
+            }
+        }
+        return answer;
+    }
+
+    protected ClassProperties createClassProperties(Class<?> aClass) throws IntrospectionException {
+        BeanInfo beanInfo = java.beans.Introspector.getBeanInfo(aClass);
+        Map<String, CachedProperty> properties = new LinkedHashMap<String, CachedProperty>();
+        for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+            // ignore the class property
+            if (propertyDescriptor.getName().equals("class")) {
+                continue;
+            }
+            CachedProperty property = new CachedProperty(new PropertyDTO(propertyDescriptor));
+            properties.put(property.name, property);
+        }
+        return new ClassProperties(properties);
+    }
+
+    protected static class ClassProperties {
+        private final Map<String, CachedProperty> properties;
+
+        public ClassProperties(Map<String, CachedProperty> properties) {
+            this.properties = Collections.unmodifiableMap(properties);
+        }
+
+        public List<PropertyDTO> toDTOs() {
+            List<PropertyDTO> answer = new ArrayList<PropertyDTO>(properties.size());
+            for (CachedProperty property : properties.values()) {
+                answer.add(property.toDTO());
+            }
+            return answer;
+        }
+
+        /**
+         * Returns false if any of the property types have been garbage collected
+         */
+        public boolean isValid() {
+            for (CachedProperty property : properties.values()) {
+                if (property.isTypeCollected()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The immutable details of a property; DTOs are copied from it as callers rename them
+     */
+    protected static class CachedProperty {
+        private final String name;
+        private final String typeName;
+        private final boolean readable;
+        private final boolean writeable;
+        private final String description;
+        private final String displayName;
+        private final WeakReference<Class<?>> typeClass;
+
+        public CachedProperty(PropertyDTO dto) {
+            this.name = dto.getName();
+            this.typeName = dto.getTypeName();
+            this.readable = dto.isReadable();
+            this.writeable = dto.isWriteable();
+            this.description = dto.getDescription();
+            this.displayName = dto.getDisplayName();
+            this.typeClass = dto.getTypeClass() != null ? new WeakReference<Class<?>>(dto.getTypeClass()) : null;
+        }
+
+        public Class<?> getTypeClass() {
+            return typeClass != null ? typeClass.get() : null;
+        }
+
+        /**
+         * Returns true if the property had a type which has since been garbage collected
+         */
+        public boolean isTypeCollected() {
+            return typeClass != null && typeClass.get() == null;
+        }
+
+        public PropertyDTO toDTO() {
+            PropertyDTO answer = new PropertyDTO();
+            answer.setName(name);
+            answer.setTypeName(typeName);
+            answer.setReadable(readable);
+            answer.setWriteable(writeable);
+            answer.setDescription(description);
+            answer.setDisplayName(displayName);
+            answer.setTypeClass(getTypeClass());
+            return answer;
+        }
+    }
+}
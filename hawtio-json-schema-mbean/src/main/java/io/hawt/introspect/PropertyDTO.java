@@ -38,7 +38,8 @@ public class PropertyDTO {
         name = propertyDescriptor.getName();
         displayName = propertyDescriptor.getDisplayName();
         typeClass = propertyDescriptor.getPropertyType();
-        typeName = typeClass.getName();
+        // indexed properties without plain accessors have no type
+        typeName = typeClass != null ? typeClass.getName() : null;
         description = propertyDescriptor.getShortDescription();
         readable = propertyDescriptor.getReadMethod() != null;
         writeable = propertyDescriptor.getWriteMethod() != null;
@@ -70,6 +70,22 @@ public class IntrospectTest {
         assertFindProperties(invoiceClass, "customer.address.doesNotExist", "customer.address", "customer.address.streetName", "customer.address.zipCode");
     }
 
+    @Test
+    public void testCachesProperties() throws Exception {
+        String invoiceClass = Invoice.class.getName();
+        assertFindProperties(invoiceClass, "customer.address.", "customer.address", "customer.address.streetName", "customer.address.zipCode");
+        int cached = introspector.getPropertyCache().size();
+        assertTrue("should have cached the navigated types", cached >= 3);
+
+        // the cached properties must not be renamed by the nested navigation
+        assertFindProperties(invoiceClass, "customer.address.", "customer.address", "customer.address.streetName", "customer.address.zipCode");
+        assertEquals(cached, introspector.getPropertyCache().size());
+        assertFindProperties(CustomerDTO.class.getName(), "address", "address", "address.streetName", "address.zipCode");
+
+        introspector.clearCache();
+        assertEquals(0, introspector.getPropertyCache().size());
+    }
+
     @Test
     public void testFindTestCases() throws Exception {
         boolean tests = introspector.hasJUnitTests();
@@ -0,0 +1,52 @@
+package io.hawt.introspect;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyCacheTest {
+
+    private PropertyCache cache = new PropertyCache();
+
+    @Test
+    public void testCachesPropertiesWithoutType() throws Exception {
+        PropertyCache.ClassProperties properties = cache.getClassProperties(IndexedBean.class);
+        assertTrue("properties without a type should not invalidate the cache", properties.isValid());
+        assertSame(properties, cache.getClassProperties(IndexedBean.class));
+
+        Map<String, PropertyDTO> map = Introspections.getPropertyMap(cache.getProperties(IndexedBean.class));
+        assertEquals(2, map.size());
+        assertNull(map.get("item").getTypeClass());
+        assertEquals(Long.class, map.get("writeOnly").getTypeClass());
+    }
+
+    @Test
+    public void testReturnsNewDTOs() throws Exception {
+        List<PropertyDTO> first = cache.getProperties(IndexedBean.class);
+        List<PropertyDTO> second = cache.getProperties(IndexedBean.class);
+        assertNotNull(first);
+        assertEquals(first.size(), second.size());
+        first.get(0).setName("renamed");
+        assertTrue(!"renamed".equals(second.get(0).getName()));
+        assertEquals(1, cache.size());
+    }
+
+    public static class IndexedBean {
+        public String getItem(int index) {
+            return null;
+        }
+
+        public void setItem(int index, String item) {
+        }
+
+        public void setWriteOnly(Long writeOnly) {
+        }
+    }
+}
@@ -2,10 +2,10 @@ package io.hawt.junit;
 
 public class InProgressDTO extends ResultDTO {
 
-    private String testClass;
-    private String testMethod;
-    private long startTime;
-    private long endTime;
+    private volatile String testClass;
+    private volatile String testMethod;
+    private volatile long startTime;
+    private volatile long endTime;
 
     public long getStartTime() {
         return startTime;
@@ -41,15 +41,15 @@ public class InProgressDTO extends ResultDTO {
         return failureCount == 0;
     }
 
-    public void onTestFinished() {
+    public synchronized void onTestFinished() {
         runCount++;
     }
 
-    public void onTestFailed() {
+    public synchronized void onTestFailed() {
         failureCount++;
     }
 
-    public void onTestIgnored() {
+    public synchronized void onTestIgnored() {
         ignoreCount++;
     }
 
@@ -1,35 +1,21 @@
 package io.hawt.junit;
 
 import org.junit.runner.Description;
-import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 
+/**
+ * Updates the {@link InProgressDTO} as the tests run; the listener may be shared by test classes running in parallel
+ */
 public class InProgressRunListener extends RunListener {
 
-    private long startTime;
-    private long runTime;
     private final InProgressDTO inProgressDTO;
 
     public InProgressRunListener(InProgressDTO inProgressDTO) {
         this.inProgressDTO = inProgressDTO;
     }
 
-    @Override
-    public void testRunStarted(Description description) throws Exception {
-        startTime = System.currentTimeMillis();
-
-        inProgressDTO.setStartTime(startTime);
-    }
-
-    @Override
-    public void testRunFinished(Result result) throws Exception {
-        long endTime = System.currentTimeMillis();
-        inProgressDTO.setEndTime(endTime);
-
-        runTime += endTime - startTime;
-        inProgressDTO.updateRuntime(runTime);
-    }
+    // the start and end of the run are recorded by the TestRun as its classes run in parallel
 
     @Override
     public void testStarted(Description description) throws Exception {
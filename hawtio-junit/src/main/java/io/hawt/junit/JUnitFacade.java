@@ -2,12 +2,16 @@ package io.hawt.junit;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.hawt.util.MBeanSupport;
 import io.hawt.util.introspect.support.ClassScanner;
-import org.junit.runner.JUnitCore;
-import org.junit.runner.Request;
-import org.junit.runner.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +23,11 @@ public class JUnitFacade extends MBeanSupport implements JUnitFacadeMBean {
     private static JUnitFacade singleton;
     private ClassScanner classScanner = ClassScanner.newInstance();
 
-    private volatile InProgressDTO inProgress;
+    private final TestResultsJournal journal = new TestResultsJournal();
+    private final AtomicLong runCounter = new AtomicLong();
+    private int threads = 1;
+    private ExecutorService executor;
+    private volatile TestRun currentRun;
 
     public static JUnitFacade getSingleton() {
         if (singleton == null) {
@@ -39,6 +47,21 @@ public class JUnitFacade extends MBeanSupport implements JUnitFacadeMBean {
         }
     }
 
+    @Override
+    public void destroy() throws Exception {
+        TestRun run = currentRun;
+        if (run != null) {
+            run.cancel();
+        }
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+        super.destroy();
+    }
+
     @Override
     protected String getDefaultObjectName() {
         return "hawtio:type=JUnitFacade";
@@ -46,28 +69,99 @@ public class JUnitFacade extends MBeanSupport implements JUnitFacadeMBean {
 
     @Override
     public boolean isTestInProgress() {
-        return inProgress != null;
+        TestRun run = currentRun;
+        return run != null && !run.isFinished();
     }
 
     @Override
     public InProgressDTO inProgress() throws Exception {
-        return inProgress;
+        TestRun run = currentRun;
+        return run != null ? run.getInProgress() : null;
     }
 
     @Override
     public ResultDTO runTestClasses(List<String> classNames) throws Exception {
-        inProgress = new InProgressDTO();
+        TestRun run = startTestRun(classNames);
+        run.await();
+        return run.getResult();
+    }
+
+    @Override
+    public long startTestClasses(List<String> classNames) throws Exception {
+        return startTestRun(classNames).getId();
+    }
+
+    @Override
+    public boolean cancelTestRun() {
+        TestRun run = currentRun;
+        if (run == null || run.isFinished()) {
+            return false;
+        }
+        run.cancel();
+        return true;
+    }
+
+    @Override
+    public ResultDTO testRunResult(long runId) {
+        TestRun run = currentRun;
+        return run != null && run.getId() == runId && run.isFinished() ? run.getResult() : null;
+    }
 
-        JUnitCore core = new JUnitCore();
-        core.addListener(new InProgressRunListener(inProgress));
+    @Override
+    public List<TestEventDTO> testEvents(long afterSequence, int maxEvents) {
+        return journal.getEventsAfter(afterSequence, maxEvents);
+    }
 
+    /**
+     * Starts running the test classes on the configured number of threads, failing if a test run is still in progress
+     */
+    protected synchronized TestRun startTestRun(List<String> classNames) throws Exception {
+        if (isTestInProgress()) {
+            throw new IllegalStateException("Test run " + currentRun.getId() + " is still in progress");
+        }
         List<Class<?>> classes = classScanner.optionallyFindClasses(classNames);
-        Class<?>[] classArray = new Class<?>[classes.size()];
-        classes.toArray(classArray);
-        Request request = Request.classes(classArray);
+        TestRun run = new TestRun(runCounter.incrementAndGet(), classes, journal);
+        currentRun = run;
+        run.start(getExecutor());
+        return run;
+    }
+
+    protected synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "hawtio-junit-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    public TestResultsJournal getJournal() {
+        return journal;
+    }
 
-        Result result = core.run(request);
-        return new ResultDTO(result);
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of test classes which run at the same time, which is one by default as classes sharing static
+     * state may not be able to run in parallel; takes effect for the next test run if no test run is in progress
+     */
+    public synchronized void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        if (executor != null && !isTestInProgress()) {
+            executor.shutdown();
+            executor = null;
+        }
     }
 
     private boolean hasJUnitTests() {
@@ -9,7 +9,40 @@ public interface JUnitFacadeMBean {
 
     boolean isTestInProgress();
 
+    /**
+     * Runs the test classes, <code>threads</code> at a time, blocking until they have all finished; throws
+     * {@link IllegalStateException} if another test run is still in progress rather than running them
+     */
     ResultDTO runTestClasses(List<String> classNames) throws Exception;
 
+    /**
+     * Starts running the test classes, <code>threads</code> at a time, without waiting for them, returning the id
+     * of the test run; throws {@link IllegalStateException} if another test run is still in progress rather than
+     * running them
+     */
+    long startTestClasses(List<String> classNames) throws Exception;
+
+    /**
+     * Cancels the test run in progress, returning false if there is none
+     */
+    boolean cancelTestRun();
+
+    /**
+     * Returns the merged results of the given test run once it has finished or null
+     */
+    ResultDTO testRunResult(long runId);
+
+    /**
+     * Returns up to the given number of test events with a sequence number greater than the given one
+     */
+    List<TestEventDTO> testEvents(long afterSequence, int maxEvents);
+
     InProgressDTO inProgress() throws Exception;
+
+    /**
+     * Returns the number of test classes which run at the same time; one unless parallel runs have been enabled
+     */
+    int getThreads();
+
+    void setThreads(int threads);
 }
@@ -0,0 +1,49 @@
+package io.hawt.junit;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Records the test events of a test run in the {@link TestResultsJournal}
+ */
+public class JournalRunListener extends RunListener {
+
+    private final TestResultsJournal journal;
+    private final long runId;
+
+    public JournalRunListener(TestResultsJournal journal, long runId) {
+        this.journal = journal;
+        this.runId = runId;
+    }
+
+    @Override
+    public void testStarted(Description description) throws Exception {
+        addEvent(TestEventDTO.TEST_STARTED, description, null);
+    }
+
+    @Override
+    public void testFinished(Description description) throws Exception {
+        addEvent(TestEventDTO.TEST_FINISHED, description, null);
+    }
+
+    @Override
+    public void testFailure(Failure failure) throws Exception {
+        addEvent(TestEventDTO.TEST_FAILED, failure.getDescription(), new FailureDTO(failure));
+    }
+
+    @Override
+    public void testAssumptionFailure(Failure failure) {
+        addEvent(TestEventDTO.TEST_ASSUMPTION_FAILED, failure.getDescription(), new FailureDTO(failure));
+    }
+
+    @Override
+    public void testIgnored(Description description) throws Exception {
+        addEvent(TestEventDTO.TEST_IGNORED, description, null);
+    }
+
+    protected void addEvent(String type, Description description, FailureDTO failure) {
+        String testClass = description.getTestClass() != null ? description.getTestClass().getName() : description.getClassName();
+        journal.add(new TestEventDTO(runId, type, testClass, description.getMethodName(), failure));
+    }
+}
@@ -49,6 +49,18 @@ public class ResultDTO {
         }
     }
 
+    /**
+     * Adds the counts and failures of the given result, such as the result of one of the classes of a test run
+     */
+    public synchronized void addResult(Result result) {
+        this.ignoreCount += result.getIgnoreCount();
+        this.failureCount += result.getFailureCount();
+        this.runCount += result.getRunCount();
+        for (Failure failure : result.getFailures()) {
+            failures.add(new FailureDTO(failure));
+        }
+    }
+
     @Override
     public String toString() {
         return "ResultDTO{" +
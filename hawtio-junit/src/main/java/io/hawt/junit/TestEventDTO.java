@@ -0,0 +1,103 @@
+package io.hawt.junit;
+
+/**
+ * A DTO for an entry of the test results journal, so that clients can poll for the progress of a test run
+ * by asking for the events after the last sequence number they have seen
+ */
+public class TestEventDTO {
+    public static final String RUN_STARTED = "runStarted";
+    public static final String RUN_FINISHED = "runFinished";
+    public static final String RUN_CANCELLED = "runCancelled";
+    public static final String TEST_STARTED = "testStarted";
+    public static final String TEST_FINISHED = "testFinished";
+    public static final String TEST_FAILED = "testFailed";
+    public static final String TEST_ASSUMPTION_FAILED = "testAssumptionFailed";
+    public static final String TEST_IGNORED = "testIgnored";
+
+    private long sequence;
+    private long runId;
+    private String type;
+    private String testClass;
+    private String testMethod;
+    private long timestamp;
+    private FailureDTO failure;
+
+    public TestEventDTO() {
+    }
+
+    public TestEventDTO(long runId, String type, String testClass, String testMethod, FailureDTO failure) {
+        this.runId = runId;
+        this.type = type;
+        this.testClass = testClass;
+        this.testMethod = testMethod;
+        this.failure = failure;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "TestEventDTO{" +
+                "sequence=" + sequence +
+                ", runId=" + runId +
+                ", type='" + type + '\'' +
+                ", testClass='" + testClass + '\'' +
+                ", testMethod='" + testMethod + '\'' +
+                '}';
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getRunId() {
+        return runId;
+    }
+
+    public void setRunId(long runId) {
+        this.runId = runId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getTestClass() {
+        return testClass;
+    }
+
+    public void setTestClass(String testClass) {
+        this.testClass = testClass;
+    }
+
+    public String getTestMethod() {
+        return testMethod;
+    }
+
+    public void setTestMethod(String testMethod) {
+        this.testMethod = testMethod;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public FailureDTO getFailure() {
+        return failure;
+    }
+
+    public void setFailure(FailureDTO failure) {
+        this.failure = failure;
+    }
+}
@@ -0,0 +1,76 @@
+package io.hawt.junit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A bounded journal of test events numbered by an increasing sequence so that clients can stream the
+ * progress of test runs by polling for the events after the last sequence they have seen.
+ * <p/>
+ * The oldest events are dropped once the journal is full; a client which falls that far behind just
+ * misses them, which it can tell from a gap in the sequence numbers.
+ */
+public class TestResultsJournal {
+    public static final int DEFAULT_MAX_EVENTS = 10000;
+
+    private final Deque<TestEventDTO> events = new ArrayDeque<TestEventDTO>();
+    private final int maxEvents;
+    private long sequence;
+
+    public TestResultsJournal() {
+        this(DEFAULT_MAX_EVENTS);
+    }
+
+    public TestResultsJournal(int maxEvents) {
+        this.maxEvents = Math.max(1, maxEvents);
+    }
+
+    /**
+     * Adds the event to the journal, assigning it the next sequence number
+     */
+    public synchronized long add(TestEventDTO event) {
+        event.setSequence(++sequence);
+        events.addLast(event);
+        while (events.size() > maxEvents) {
+            events.removeFirst();
+        }
+        return sequence;
+    }
+
+    /**
+     * Returns up to the given maximum number of events with a sequence number greater than the given one
+     */
+    public synchronized List<TestEventDTO> getEventsAfter(long afterSequence, int max) {
+        List<TestEventDTO> answer = new ArrayList<TestEventDTO>();
+        if (afterSequence >= sequence) {
+            return answer;
+        }
+        // the events are ordered so lets walk back from the newest to find the first one to return
+        Iterator<TestEventDTO> iter = events.descendingIterator();
+        int count = 0;
+        while (iter.hasNext() && iter.next().getSequence() > afterSequence) {
+            count++;
+        }
+        int skip = events.size() - count;
+        for (TestEventDTO event : events) {
+            if (skip-- > 0) {
+                continue;
+            }
+            if (max > 0 && answer.size() >= max) {
+                break;
+            }
+            answer.add(event);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the sequence number of the last event added
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+}
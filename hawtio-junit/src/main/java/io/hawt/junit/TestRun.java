@@ -0,0 +1,192 @@
+package io.hawt.junit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A run of some test classes, each class running on its own thread of the executor with its own
+ * {@link RunNotifier} so that the classes are isolated from each other and the run can be cancelled.
+ * <p/>
+ * The progress is reported through the shared {@link InProgressDTO} and the {@link TestResultsJournal}
+ * and the results of the classes are merged into a single {@link ResultDTO} once they have all finished.
+ */
+public class TestRun {
+    private static final transient Logger LOG = LoggerFactory.getLogger(TestRun.class);
+
+    private final long id;
+    private final List<Class<?>> classes;
+    private final TestResultsJournal journal;
+    private final InProgressDTO inProgress = new InProgressDTO();
+    private final ResultDTO result = new ResultDTO();
+    private final List<ClassRun> classRuns;
+    private final Queue<RunNotifier> notifiers = new ConcurrentLinkedQueue<RunNotifier>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final AtomicInteger remaining;
+    private volatile boolean cancelled;
+
+    public TestRun(long id, List<Class<?>> classes, TestResultsJournal journal) {
+        this.id = id;
+        this.classes = classes;
+        this.journal = journal;
+        this.remaining = new AtomicInteger(classes.size());
+        // created up front as the run may be cancelled from another thread while it is being started
+        List<ClassRun> runs = new ArrayList<ClassRun>(classes.size());
+        for (Class<?> aClass : classes) {
+            runs.add(new ClassRun(aClass));
+        }
+        this.classRuns = Collections.unmodifiableList(runs);
+    }
+
+    /**
+     * Starts running the test classes on the given executor
+     */
+    public void start(Executor executor) {
+        inProgress.setStartTime(System.currentTimeMillis());
+        journal.add(new TestEventDTO(id, TestEventDTO.RUN_STARTED, null, null, null));
+        if (classes.isEmpty()) {
+            onFinished();
+            return;
+        }
+        for (ClassRun classRun : classRuns) {
+            executor.execute(classRun);
+        }
+    }
+
+    /**
+     * Stops the run; the tests which are running finish but no more tests are started
+     */
+    public void cancel() {
+        if (cancelled || isFinished()) {
+            return;
+        }
+        cancelled = true;
+        for (RunNotifier notifier : notifiers) {
+            notifier.pleaseStop();
+        }
+        // the classes which have not started yet return without running any tests; their futures are not cancelled
+        // as that would also discard the results of the classes which are running and finish the run before them
+    }
+
+    /**
+     * Waits for the run to finish returning true if it finished in time
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    public void await() throws InterruptedException {
+        finished.await();
+    }
+
+    public boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public InProgressDTO getInProgress() {
+        return inProgress;
+    }
+
+    /**
+     * Returns the merged results of the classes which have finished so far
+     */
+    public ResultDTO getResult() {
+        return result;
+    }
+
+    protected Result runClass(Class<?> aClass) {
+        Result answer = new Result();
+        RunNotifier notifier = new RunNotifier();
+        notifier.addListener(answer.createListener());
+        notifier.addListener(new InProgressRunListener(inProgress));
+        notifier.addListener(new JournalRunListener(journal, id));
+        notifiers.add(notifier);
+        try {
+            if (cancelled) {
+                return answer;
+            }
+            Runner runner = Request.aClass(aClass).getRunner();
+            notifier.fireTestRunStarted(runner.getDescription());
+            try {
+                runner.run(notifier);
+            } catch (StoppedByUserException e) {
+                LOG.debug("Test run " + id + " cancelled while running " + aClass.getName());
+            }
+            notifier.fireTestRunFinished(answer);
+        } finally {
+            notifiers.remove(notifier);
+        }
+        return answer;
+    }
+
+    protected void onClassDone(Result classResult) {
+        if (classResult != null) {
+            result.addResult(classResult);
+        }
+        if (remaining.decrementAndGet() == 0) {
+            onFinished();
+        }
+    }
+
+    protected void onFinished() {
+        long endTime = System.currentTimeMillis();
+        inProgress.updateRuntime(endTime - inProgress.getStartTime());
+        inProgress.setEndTime(endTime);
+        result.setSuccessful(result.getFailureCount() == 0);
+        result.setRunTime(endTime - inProgress.getStartTime());
+        String type = cancelled ? TestEventDTO.RUN_CANCELLED : TestEventDTO.RUN_FINISHED;
+        journal.add(new TestEventDTO(id, type, null, null, null));
+        finished.countDown();
+    }
+
+    /**
+     * The run of a single class which reports back to the test run whether it completes, fails or is cancelled
+     */
+    protected class ClassRun extends FutureTask<Result> {
+        public ClassRun(final Class<?> aClass) {
+            super(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    return runClass(aClass);
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            Result classResult = null;
+            if (!isCancelled()) {
+                try {
+                    classResult = get();
+                } catch (Exception e) {
+                    LOG.warn("Failed to run test class in test run " + id + ". " + e, e);
+                }
+            }
+            onClassDone(classResult);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.hawt.junit;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestResultsJournalTest {
+
+    @Test
+    public void testReturnsEventsAfterSequence() throws Exception {
+        TestResultsJournal journal = new TestResultsJournal();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 1, journal.add(event("test" + i)));
+        }
+        assertEquals(5, journal.getSequence());
+
+        List<TestEventDTO> events = journal.getEventsAfter(2, 0);
+        assertEquals(3, events.size());
+        assertEquals(3, events.get(0).getSequence());
+        assertEquals("test2", events.get(0).getTestMethod());
+
+        events = journal.getEventsAfter(0, 2);
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(1).getSequence());
+
+        assertTrue(journal.getEventsAfter(5, 0).isEmpty());
+    }
+
+    @Test
+    public void testDropsOldestEventsOnceFull() throws Exception {
+        TestResultsJournal journal = new TestResultsJournal(3);
+        for (int i = 0; i < 5; i++) {
+            journal.add(event("test" + i));
+        }
+        // a client which fell behind gets the events which are left and can tell from the gap it missed some
+        List<TestEventDTO> events = journal.getEventsAfter(1, 0);
+        assertEquals(3, events.size());
+        assertEquals(3, events.get(0).getSequence());
+        assertEquals(5, events.get(2).getSequence());
+    }
+
+    private static TestEventDTO event(String testMethod) {
+        return new TestEventDTO(1, TestEventDTO.TEST_FINISHED, TestResultsJournalTest.class.getName(), testMethod, null);
+    }
+}
@@ -0,0 +1,105 @@
+package io.hawt.junit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestRunTest {
+
+    private static CountDownLatch blockingStarted;
+    private static CountDownLatch releaseBlocking;
+
+    private ExecutorService executor;
+
+    @After
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMergesResultsOfClasses() throws Exception {
+        executor = Executors.newFixedThreadPool(2);
+        TestResultsJournal journal = new TestResultsJournal();
+        TestRun run = new TestRun(1, Arrays.<Class<?>>asList(Passing.class, Failing.class), journal);
+        run.start(executor);
+        assertTrue(run.await(30, TimeUnit.SECONDS));
+
+        ResultDTO result = run.getResult();
+        assertEquals(3, result.getRunCount());
+        assertEquals(1, result.getFailureCount());
+        assertFalse(result.isSuccessful());
+
+        List<TestEventDTO> events = journal.getEventsAfter(0, 0);
+        assertEquals(TestEventDTO.RUN_STARTED, events.get(0).getType());
+        assertEquals(TestEventDTO.RUN_FINISHED, events.get(events.size() - 1).getType());
+    }
+
+    @Test
+    public void testCancelDoesNotStartRemainingClasses() throws Exception {
+        blockingStarted = new CountDownLatch(1);
+        releaseBlocking = new CountDownLatch(1);
+        executor = Executors.newSingleThreadExecutor();
+        TestResultsJournal journal = new TestResultsJournal();
+        TestRun run = new TestRun(2, Arrays.<Class<?>>asList(Blocking.class, Passing.class), journal);
+        run.start(executor);
+        assertTrue(blockingStarted.await(30, TimeUnit.SECONDS));
+
+        run.cancel();
+        releaseBlocking.countDown();
+        assertTrue(run.await(30, TimeUnit.SECONDS));
+
+        assertTrue(run.isCancelled());
+        assertEquals(1, run.getResult().getRunCount());
+        List<TestEventDTO> events = journal.getEventsAfter(0, 0);
+        assertEquals(TestEventDTO.RUN_CANCELLED, events.get(events.size() - 1).getType());
+    }
+
+    @Test
+    public void testCancelBeforeStarting() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        TestRun run = new TestRun(3, Arrays.<Class<?>>asList(Passing.class, Failing.class), new TestResultsJournal());
+        run.cancel();
+        run.start(executor);
+        assertTrue(run.await(30, TimeUnit.SECONDS));
+        assertTrue(run.isCancelled());
+        assertEquals(0, run.getResult().getRunCount());
+    }
+
+    public static class Passing {
+        @Test
+        public void first() {
+        }
+
+        @Test
+        public void second() {
+        }
+    }
+
+    public static class Failing {
+        @Test
+        public void fails() {
+            Assert.fail("expected");
+        }
+    }
+
+    public static class Blocking {
+        @Test
+        public void blocks() throws Exception {
+            blockingStarted.countDown();
+            releaseBlocking.await(30, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -7,10 +7,17 @@ import org.slf4j.LoggerFactory;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
-import java.io.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
 import java.security.Provider;
 import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 
 /**
@@ -84,130 +91,30 @@ public class KeystoreService implements KeystoreServiceMBean {
         return org.apache.commons.codec.binary.Base64.encodeBase64String(createKeyStore(r));
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     @Override
     public byte[] createKeyStore(CreateKeyStoreRequestDTO request) throws IOException {
-
-        File keystoreFile = File.createTempFile("keystore", ".jks");
-        keystoreFile.delete();
         LOG.info("Generating ssl keystore...");
-
-        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
-        int rc;
-        if( request.createPrivateKey ) {
-            rc = system(keytool, "-genkey",
-                    "-storetype", request.storeType,
-                    "-storepass", request.storePassword,
-                    "-keystore", keystoreFile.getCanonicalPath(),
-                    "-keypass", request.keyPassword,
-                    "-alias", request.keyCommonName,
-                    "-keyalg", request.keyAlgorithm,
-                    "-keysize", ""+request.keyLength,
-                    "-dname", String.format("cn=%s", request.keyCommonName),
-                    "-validity", ""+request.keyValidity);
-
-        } else {
-
-            rc = system(keytool, "-genkey",
-                    "-storetype", request.storeType,
-                    "-storepass", request.storePassword,
-                    "-keystore", keystoreFile.getCanonicalPath(),
-                    "-dname", "cn=temp",
-                    "-keypass", "password",
-                    "-alias", "temp");
-
-            if(rc!=0) {
-              throw new IOException("keytool failed with exit code: "+rc);
-            }
-
-            rc = system(keytool, "-delete",
-                    "-storetype", request.storeType,
-                    "-storepass", request.storePassword,
-                    "-keystore", keystoreFile.getCanonicalPath(),
-                    "-alias", "temp");
-
-        }
-
-        if(rc!=0) {
-          throw new IOException("keytool failed with exit code: "+rc);
-        }
-
-        byte[] keystore = readBytes(keystoreFile);
-        keystoreFile.delete();
-        return keystore;
-    }
-
-
-
-    private int system(final String...args) {
-        ProcessBuilder processBuilder = new ProcessBuilder(args);
-        processBuilder.redirectErrorStream(true);
-
-        // start the process
-        final Process process;
         try {
-            process = processBuilder.start();
-        } catch (IOException e) {
-            LOG.debug("Process failed to start: "+e, e);
-            return -1;
-        }
-
-        new Thread("system command output processor") {
-            @Override
-            public void run() {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                try {
-                    while (true) {
-                        String line = reader.readLine();
-                        if (line == null) break;
-                        LOG.info(String.format("%s: %s", args[0], line));
-                        // System.out.println(String.format("%s: %s", args[0], line));
-                    }
-                } catch (IOException ignored) {
-                } finally {
-                    close(reader);
-                }
+            KeyStore keyStore = KeyStore.getInstance(request.storeType);
+            keyStore.load(null, null);
+            if (request.createPrivateKey) {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance(request.keyAlgorithm);
+                generator.initialize((int) request.keyLength);
+                KeyPair keyPair = generator.generateKeyPair();
+                X509Certificate certificate = SelfSignedCertificate.create(keyPair, request.keyCommonName, request.keyValidity);
+                keyStore.setKeyEntry(request.keyCommonName, keyPair.getPrivate(), toChars(request.keyPassword),
+                        new Certificate[]{certificate});
             }
-
-        }.start();
-
-        // wait for command to exit
-        try {
-            return process.waitFor();
-        } catch (InterruptedException e) {
-            LOG.debug("Thread interrupted, killing process");
-            process.destroy();
-            Thread.currentThread().interrupt();
-            return -1;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            keyStore.store(out, toChars(request.storePassword));
+            return out.toByteArray();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to create the keystore: " + e.getMessage(), e);
         }
     }
 
-    private static void close(Closeable reader) {
-        try {
-            reader.close();
-        } catch (Exception ignored) {
-        }
-    }
-
-    private static byte[] readBytes(File file) throws IOException {
-        FileInputStream fis = null;
-        ByteArrayOutputStream bos = null;
-        if (file == null) {
-            throw new FileNotFoundException("No file specified");
-        }
-        try {
-            fis = new FileInputStream(file);
-            bos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024*4];
-            int remaining;
-            while ((remaining = fis.read(buffer)) > 0) {
-                bos.write(buffer, 0, remaining);
-            }
-            return bos.toByteArray();
-        } finally {
-            close(fis);
-            close(bos);
-        }
+    private static char[] toChars(String password) {
+        return password != null ? password.toCharArray() : new char[0];
     }
 
 }
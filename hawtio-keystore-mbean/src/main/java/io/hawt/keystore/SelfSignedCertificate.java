@@ -0,0 +1,185 @@
+package io.hawt.keystore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.DSAPublicKey;
+import java.util.Arrays;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates self signed X.509 certificates in process, as keytool does for <code>-genkey</code>: version 3
+ * certificates with a subject key identifier extension.
+ * <p/>
+ * The JDK has no public API to build certificates, so the DER encoding of the certificate is written here
+ * and then signed with the JDK {@link Signature} and parsed by its {@link CertificateFactory}.
+ */
+public class SelfSignedCertificate {
+
+    private static final byte[] OID_COMMON_NAME = {0x55, 0x04, 0x03};
+    private static final byte[] OID_SUBJECT_KEY_IDENTIFIER = {0x55, 0x1D, 0x0E};
+    private static final byte[] OID_SHA256_WITH_RSA = {0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x0B};
+    private static final byte[] OID_SHA1_WITH_DSA = {0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x38, 0x04, 0x03};
+    private static final byte[] OID_SHA256_WITH_DSA = {0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x03, 0x02};
+    private static final byte[] OID_SHA256_WITH_ECDSA = {0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x3D, 0x04, 0x03, 0x02};
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Creates a certificate for the public key of the key pair signed by its private key, valid from now for
+     * the given number of days
+     */
+    public static X509Certificate create(KeyPair keyPair, String commonName, int validityDays) throws GeneralSecurityException, IOException {
+        String keyAlgorithm = keyPair.getPublic().getAlgorithm();
+        String signatureAlgorithm;
+        byte[] signatureOid;
+        boolean signatureParametersNull;
+        if ("RSA".equalsIgnoreCase(keyAlgorithm)) {
+            signatureAlgorithm = "SHA256withRSA";
+            signatureOid = OID_SHA256_WITH_RSA;
+            signatureParametersNull = true;
+        } else if ("DSA".equalsIgnoreCase(keyAlgorithm)) {
+            // like keytool lets use SHA1 with the smaller DSA keys whose sub-prime is too small for SHA256
+            boolean small = ((DSAPublicKey) keyPair.getPublic()).getParams().getQ().bitLength() <= 160;
+            signatureAlgorithm = small ? "SHA1withDSA" : "SHA256withDSA";
+            signatureOid = small ? OID_SHA1_WITH_DSA : OID_SHA256_WITH_DSA;
+            signatureParametersNull = false;
+        } else if ("EC".equalsIgnoreCase(keyAlgorithm)) {
+            signatureAlgorithm = "SHA256withECDSA";
+            signatureOid = OID_SHA256_WITH_ECDSA;
+            signatureParametersNull = false;
+        } else {
+            throw new GeneralSecurityException("Cannot sign a certificate with a key of algorithm " + keyAlgorithm);
+        }
+
+        byte[] algorithmIdentifier = signatureParametersNull
+                ? sequence(oid(signatureOid), new byte[]{0x05, 0x00})
+                : sequence(oid(signatureOid));
+        byte[] name = sequence(set(sequence(oid(OID_COMMON_NAME), utf8String(commonName))));
+        long now = System.currentTimeMillis();
+        Date notBefore = new Date(now);
+        Date notAfter = new Date(now + TimeUnit.DAYS.toMillis(validityDays));
+        byte[] serial = new BigInteger(63, RANDOM).add(BigInteger.ONE).toByteArray();
+
+        byte[] publicKey = keyPair.getPublic().getEncoded();
+        byte[] extensions = sequence(
+                sequence(oid(OID_SUBJECT_KEY_IDENTIFIER), tlv(0x04, tlv(0x04, keyIdentifier(publicKey)))));
+
+        byte[] tbsCertificate = sequence(
+                tlv(0xA0, tlv(0x02, new byte[]{0x02})),
+                tlv(0x02, serial),
+                algorithmIdentifier,
+                name,
+                sequence(time(notBefore), time(notAfter)),
+                name,
+                publicKey,
+                tlv(0xA3, extensions));
+
+        Signature signature = Signature.getInstance(signatureAlgorithm);
+        signature.initSign(keyPair.getPrivate());
+        signature.update(tbsCertificate);
+        byte[] signed = signature.sign();
+        byte[] bitString = new byte[signed.length + 1];
+        System.arraycopy(signed, 0, bitString, 1, signed.length);
+
+        byte[] certificate = sequence(tbsCertificate, algorithmIdentifier, tlv(0x03, bitString));
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        return (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(certificate));
+    }
+
+    /**
+     * Returns the SHA-1 hash of the subject public key bit string, the key identifier of RFC 5280 4.2.1.2 which
+     * keytool uses too
+     */
+    static byte[] keyIdentifier(byte[] subjectPublicKeyInfo) throws GeneralSecurityException {
+        // SubjectPublicKeyInfo ::= SEQUENCE { algorithm AlgorithmIdentifier, subjectPublicKey BIT STRING }
+        int offset = contentOffset(subjectPublicKeyInfo, 0);
+        offset = contentOffset(subjectPublicKeyInfo, offset) + contentLength(subjectPublicKeyInfo, offset);
+        if (subjectPublicKeyInfo[offset] != 0x03) {
+            throw new GeneralSecurityException("The public key is not a bit string");
+        }
+        int start = contentOffset(subjectPublicKeyInfo, offset);
+        int end = start + contentLength(subjectPublicKeyInfo, offset);
+        // skips the number of unused bits
+        byte[] key = Arrays.copyOfRange(subjectPublicKeyInfo, start + 1, end);
+        return MessageDigest.getInstance("SHA-1").digest(key);
+    }
+
+    private static int contentOffset(byte[] der, int offset) {
+        int length = der[offset + 1] & 0xFF;
+        return offset + 2 + (length < 0x80 ? 0 : length & 0x7F);
+    }
+
+    private static int contentLength(byte[] der, int offset) {
+        int length = der[offset + 1] & 0xFF;
+        if (length < 0x80) {
+            return length;
+        }
+        int answer = 0;
+        for (int i = 0; i < (length & 0x7F); i++) {
+            answer = (answer << 8) | (der[offset + 2 + i] & 0xFF);
+        }
+        return answer;
+    }
+
+    private static byte[] time(Date date) {
+        // RFC 5280 requires UTCTime up to 2049 and GeneralizedTime from 2050
+        boolean utc = date.getTime() < 2524608000000L;
+        SimpleDateFormat format = new SimpleDateFormat(utc ? "yyMMddHHmmss'Z'" : "yyyyMMddHHmmss'Z'", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return tlv(utc ? 0x17 : 0x18, format.format(date).getBytes());
+    }
+
+    private static byte[] oid(byte[] encoded) {
+        return tlv(0x06, encoded);
+    }
+
+    private static byte[] utf8String(String value) throws IOException {
+        return tlv(0x0C, value.getBytes("UTF-8"));
+    }
+
+    private static byte[] sequence(byte[]... elements) {
+        return tlv(0x30, concat(elements));
+    }
+
+    private static byte[] set(byte[]... elements) {
+        return tlv(0x31, concat(elements));
+    }
+
+    private static byte[] concat(byte[]... elements) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] element : elements) {
+            out.write(element, 0, element.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] tlv(int tag, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 6);
+        out.write(tag);
+        int length = value.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int bytes = length > 0xFFFFFF ? 4 : length > 0xFFFF ? 3 : length > 0xFF ? 2 : 1;
+            out.write(0x80 | bytes);
+            for (int i = bytes - 1; i >= 0; i--) {
+                out.write(length >>> (i * 8));
+            }
+        }
+        out.write(value, 0, value.length);
+        return out.toByteArray();
+    }
+}
@@ -2,7 +2,10 @@ package io.hawt.keystore;
 
 import org.junit.Test;
 
-import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
 
 import static org.junit.Assert.*;
 
@@ -12,7 +15,7 @@ import static org.junit.Assert.*;
 public class KeystoreServiceTest {
 
     @Test
-    public void test() throws IOException {
+    public void test() throws Exception {
 
         KeystoreService service = new KeystoreService();
         SecurityProviderDTO info = service.getSecurityProviderInfo();
@@ -35,6 +38,21 @@ public class KeystoreServiceTest {
         assertNotNull(data);
         assertTrue(data.length > 0);
 
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(new ByteArrayInputStream(data), "password".toCharArray());
+        assertNotNull(keyStore.getKey("localhost", "password".toCharArray()));
+        X509Certificate certificate = (X509Certificate) keyStore.getCertificate("localhost");
+        certificate.checkValidity();
+        certificate.verify(certificate.getPublicKey());
+        assertEquals("CN=localhost", certificate.getSubjectX500Principal().getName());
+        // like the certificates keytool creates
+        assertEquals(3, certificate.getVersion());
+        byte[] keyIdentifier = SelfSignedCertificate.keyIdentifier(certificate.getPublicKey().getEncoded());
+        assertEquals(20, keyIdentifier.length);
+        byte[] extension = certificate.getExtensionValue("2.5.29.14");
+        assertNotNull(extension);
+        assertArrayEquals(keyIdentifier, Arrays.copyOfRange(extension, extension.length - 20, extension.length));
+
 
         request = new CreateKeyStoreRequestDTO();
         request.storePassword = "password";
@@ -45,6 +63,10 @@ public class KeystoreServiceTest {
         assertNotNull(data);
         assertTrue(data.length > 0);
 
+        keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(new ByteArrayInputStream(data), "password".toCharArray());
+        assertEquals(0, keyStore.size());
+
     }
 
 }
@@ -2,6 +2,7 @@ package io.hawt.springboot;
 
 import io.hawt.HawtioContextListener;
 import io.hawt.web.AuthenticationFilter;
+import io.hawt.web.BulkProxyServlet;
 import io.hawt.web.CORSFilter;
 import io.hawt.web.CacheHeadersFilter;
 import io.hawt.web.ContextFormatterServlet;
@@ -45,7 +46,7 @@ public class HawtioConfiguration {
 
     @Bean
     public HawtioEndpoint hawtioEndpoint() {
-        return new HawtioEndpoint();
+        return new HawtioEndpoint(hawtioProperties);
     }
 
     /**
@@ -85,6 +86,14 @@ public class HawtioConfiguration {
         return filter;
     }
 
+    @Bean
+    public FilterRegistrationBean varyFilter() {
+        final FilterRegistrationBean filter = new FilterRegistrationBean();
+        filter.setFilter(new VaryFilter());
+        filter.addUrlPatterns("/hawtio/*", "/img/*");
+        return filter;
+    }
+
     @Bean
     public FilterRegistrationBean corsFilter() {
         final FilterRegistrationBean filter = new FilterRegistrationBean();
@@ -117,6 +126,7 @@ public class HawtioConfiguration {
             "/hawtio/auth/*",
             "/jolokia/*",
             "/hawtio/upload/*",
+            "/hawtio/bulk-proxy/*",
             "/hawtio/javadoc/*");
         return filter;
     }
@@ -133,6 +143,12 @@ public class HawtioConfiguration {
             "/hawtio/proxy/*");
     }
 
+    @Bean
+    public ServletRegistrationBean jolokiaBulkProxyServlet() {
+        return new ServletRegistrationBean(new BulkProxyServlet(),
+            "/hawtio/bulk-proxy/*");
+    }
+
     @Bean
     public ServletRegistrationBean fileUploadServlet() {
         return new ServletRegistrationBean(new UploadServlet(),
@@ -1,6 +1,8 @@
 package io.hawt.springboot;
 
 import org.springframework.boot.actuate.endpoint.mvc.AbstractNamedMvcEndpoint;
+import org.springframework.web.servlet.config.annotation.ResourceChainRegistration;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 
@@ -9,28 +11,47 @@ import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
  */
 public class HawtioEndpoint extends AbstractNamedMvcEndpoint {
 
+    private final HawtioProperties properties;
+
     public HawtioEndpoint() {
+        this(new HawtioProperties());
+    }
+
+    public HawtioEndpoint(final HawtioProperties properties) {
         super("hawtio", "/hawtio", true);
+        this.properties = properties;
     }
 
     @Override
     public void addResourceHandlers(final ResourceHandlerRegistry registry) {
-        registry
+        cacheResources("plugins", registry
             .addResourceHandler("/hawtio/plugins/**")
             .addResourceLocations(
                 "/app/",
-                "classpath:/hawtio-static/app/");
-        registry
+                "classpath:/hawtio-static/app/"));
+        cacheResources("hawtio", registry
             .addResourceHandler("/hawtio/**")
             .addResourceLocations(
                 "/",
                 "/app/",
                 "classpath:/hawtio-static/",
-                "classpath:/hawtio-static/app/");
-        registry
+                "classpath:/hawtio-static/app/"));
+        cacheResources("img", registry
             .addResourceHandler("/img/**")
             .addResourceLocations(
-                "classpath:/hawtio-static/img/");
+                "classpath:/hawtio-static/img/"));
+    }
+
+    /**
+     * Caches the resolved resources, up to the configured size and unless disabled in memory and compressed for
+     * the clients accepting gzip
+     */
+    private void cacheResources(final String name, final ResourceHandlerRegistration registration) {
+        final ResourceChainRegistration chain = registration
+            .resourceChain(true, new InMemoryResourceCache(name, properties.getResourceCacheSize()));
+        if (properties.isInMemoryResources()) {
+            chain.addResolver(new InMemoryResourceResolver());
+        }
     }
 
     @Override
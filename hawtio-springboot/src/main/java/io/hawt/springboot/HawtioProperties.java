@@ -7,4 +7,30 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "hawtio")
 public class HawtioProperties {
+
+    /**
+     * Whether to serve the console resources from in memory copies, gzipped for the clients accepting gzip
+     */
+    private boolean inMemoryResources = true;
+
+    /**
+     * The maximum size in bytes of the cached console resources of each of the resource locations
+     */
+    private long resourceCacheSize = 8 * 1024 * 1024;
+
+    public boolean isInMemoryResources() {
+        return inMemoryResources;
+    }
+
+    public void setInMemoryResources(boolean inMemoryResources) {
+        this.inMemoryResources = inMemoryResources;
+    }
+
+    public long getResourceCacheSize() {
+        return resourceCacheSize;
+    }
+
+    public void setResourceCacheSize(long resourceCacheSize) {
+        this.resourceCacheSize = resourceCacheSize;
+    }
 }
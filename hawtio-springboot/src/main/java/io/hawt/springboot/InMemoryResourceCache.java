@@ -0,0 +1,114 @@
+package io.hawt.springboot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * A cache for the resource chain which is bounded by the size of the in memory copies of the resources it holds,
+ * evicting the least recently used resources, rather than keeping every resource ever requested
+ */
+class InMemoryResourceCache extends AbstractValueAdaptingCache {
+
+    /**
+     * The rough size of an entry which isn't an in memory copy, such as a resolved url path or a file resource
+     */
+    private static final int ENTRY_SIZE = 256;
+
+    private final String name;
+    private final long maxSize;
+    private final Map<Object, Object> store = new LinkedHashMap<Object, Object>(16, 0.75f, true);
+    private long size;
+
+    InMemoryResourceCache(String name, long maxSize) {
+        super(false);
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+
+    @Override
+    protected synchronized Object lookup(Object key) {
+        return store.get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public synchronized void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        evict(key);
+        long entrySize = sizeOf(storeValue);
+        if (entrySize > maxSize) {
+            return;
+        }
+        store.put(key, storeValue);
+        size += entrySize;
+        for (Iterator<Object> iter = store.values().iterator(); iter.hasNext() && size > maxSize; ) {
+            size -= sizeOf(iter.next());
+            iter.remove();
+        }
+    }
+
+    @Override
+    public synchronized ValueWrapper putIfAbsent(Object key, Object value) {
+        Object existing = store.get(key);
+        if (existing == null) {
+            put(key, value);
+        }
+        return toValueWrapper(existing);
+    }
+
+    @Override
+    public synchronized void evict(Object key) {
+        Object removed = store.remove(key);
+        if (removed != null) {
+            size -= sizeOf(removed);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        store.clear();
+        size = 0;
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value instanceof ByteArrayResource) {
+            return ((ByteArrayResource) value).getByteArray().length + ENTRY_SIZE;
+        }
+        return ENTRY_SIZE;
+    }
+}
@@ -0,0 +1,144 @@
+package io.hawt.springboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.EncodedResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+/**
+ * Resolves the console resources into in memory copies, so that once they are cached by the resource chain the jar
+ * entries aren't read again for every request. Clients accepting gzip are served a compressed copy, which is the
+ * precompressed <code>.gz</code> variant of the resource if there is one. The responses for the compressible
+ * resources are marked as varying on <code>Accept-Encoding</code> by the {@link VaryFilter}.
+ */
+public class InMemoryResourceResolver extends AbstractResourceResolver {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(InMemoryResourceResolver.class);
+
+    private static final String[] COMPRESSIBLE_EXTENSIONS = {".html", ".js", ".css", ".json", ".map", ".svg", ".txt", ".xml"};
+    private static final int MIN_COMPRESS_SIZE = 1024;
+    private static final int MAX_SIZE = 1024 * 1024;
+
+    @Override
+    protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+                                               List<? extends Resource> locations, ResourceResolverChain chain) {
+        Resource resource = chain.resolveResource(request, requestPath, locations);
+        if (resource == null) {
+            return null;
+        }
+        try {
+            long length = resource.contentLength();
+            if (length > MAX_SIZE) {
+                return resource;
+            }
+            if (isCompressible(requestPath) && length >= MIN_COMPRESS_SIZE && isGzipAccepted(request)) {
+                Resource gzipped = chain.resolveResource(request, requestPath + ".gz", locations);
+                byte[] content = gzipped != null ? read(gzipped) : gzip(resource);
+                return new GzippedResource(resource, content);
+            }
+            return new InMemoryResource(resource, read(resource));
+        } catch (IOException e) {
+            LOG.debug("Failed to read resource {} into memory: {}", requestPath, e.getMessage());
+            return resource;
+        }
+    }
+
+    @Override
+    protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+                                            ResourceResolverChain chain) {
+        return chain.resolveUrlPath(resourceUrlPath, locations);
+    }
+
+    static boolean isCompressible(String path) {
+        String lowerCasePath = path.toLowerCase();
+        for (String extension : COMPRESSIBLE_EXTENSIONS) {
+            if (lowerCasePath.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the way the caching resource resolver keys the gzipped resources it caches
+     */
+    private static boolean isGzipAccepted(HttpServletRequest request) {
+        String acceptEncoding = request != null ? request.getHeader(HttpHeaders.ACCEPT_ENCODING) : null;
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    private static byte[] gzip(Resource resource) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = resource.getInputStream(); GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            StreamUtils.copy(in, gzip);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A copy of a resource, which keeps the file name and last modified time of the resource so that its media type
+     * is still determined and conditional requests are still answered with 304
+     */
+    static class InMemoryResource extends ByteArrayResource {
+
+        private final String filename;
+        private final long lastModified;
+
+        InMemoryResource(Resource resource, byte[] content) {
+            super(content, resource.getDescription());
+            this.filename = resource.getFilename();
+            this.lastModified = lastModified(resource);
+        }
+
+        private static long lastModified(Resource resource) {
+            try {
+                return resource.lastModified();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * A gzipped copy of a resource, for which the resource handler sets the <code>Content-Encoding</code> header
+     */
+    static class GzippedResource extends InMemoryResource implements EncodedResource {
+
+        GzippedResource(Resource resource, byte[] content) {
+            super(resource, content);
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return "gzip";
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.hawt.springboot;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Marks the responses for the resources the {@link InMemoryResourceResolver} may serve gzipped as varying on
+ * <code>Accept-Encoding</code>, so that shared caches don't hand a compressed copy to a client which can't read it
+ */
+public class VaryFilter implements Filter {
+
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    public void destroy() {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        if (InMemoryResourceResolver.isCompressible(req.getRequestURI())) {
+            resp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        chain.doFilter(request, response);
+    }
+}
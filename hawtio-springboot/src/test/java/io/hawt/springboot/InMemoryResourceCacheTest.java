@@ -0,0 +1,55 @@
+package io.hawt.springboot;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class InMemoryResourceCacheTest {
+
+    private InMemoryResourceCache cache = new InMemoryResourceCache("test", 3000);
+
+    @Test
+    public void testEvictsLeastRecentlyUsedResourcesToStayWithinSize() {
+        cache.put("a", resource(1000));
+        cache.put("b", resource(1000));
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", resource(1000));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(2 * (1000 + 256), cache.size());
+    }
+
+    @Test
+    public void testDoesNotKeepResourcesLargerThanTheCache() {
+        cache.put("small", "/hawtio/index.html");
+        cache.put("large", resource(4000));
+        assertNull(cache.get("large"));
+        assertNotNull(cache.get("small"));
+        assertEquals(256, cache.size());
+    }
+
+    @Test
+    public void testAccountsForReplacedAndEvictedEntries() {
+        cache.put("a", resource(1000));
+        cache.put("a", resource(500));
+        assertEquals(500 + 256, cache.size());
+        assertNotNull(cache.putIfAbsent("a", resource(100)));
+        assertEquals(500 + 256, cache.size());
+
+        cache.evict("a");
+        assertEquals(0, cache.size());
+        cache.put("b", resource(1000));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    private static Resource resource(int size) {
+        return new ByteArrayResource(new byte[size]);
+    }
+}
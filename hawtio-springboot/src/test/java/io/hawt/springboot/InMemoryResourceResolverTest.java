@@ -0,0 +1,122 @@
+package io.hawt.springboot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration
+public class InMemoryResourceResolverTest {
+
+    private static final String PATH = "/hawtio/resolver-test.js";
+
+    @Configuration
+    @EnableWebMvc
+    static class Config extends WebMvcConfigurerAdapter {
+
+        @Bean
+        public HawtioEndpoint hawtioEndpoint() {
+            return new HawtioEndpoint();
+        }
+
+        /**
+         * The mock servlet context doesn't know the media type of scripts, unlike the embedded containers
+         */
+        @Override
+        public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
+            configurer.mediaType("js", MediaType.valueOf("application/javascript"));
+        }
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mvc;
+    private byte[] expected;
+    private long lastModified;
+
+    @Before
+    public void init() throws IOException {
+        mvc = MockMvcBuilders.webAppContextSetup(context).addFilters(new VaryFilter()).build();
+        ClassPathResource resource = new ClassPathResource("hawtio-static/app/resolver-test.js");
+        expected = StreamUtils.copyToByteArray(resource.getInputStream());
+        lastModified = resource.lastModified();
+    }
+
+    @Test
+    public void testServesGzippedResourceWhenAccepted() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = mvc.perform(get(PATH).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(content().contentTypeCompatibleWith("application/javascript"))
+                .andReturn();
+            assertArrayEquals(expected, gunzip(result.getResponse().getContentAsByteArray()));
+        }
+    }
+
+    @Test
+    public void testServesPlainResourceOtherwise() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = mvc.perform(get(PATH))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(content().bytes(expected))
+                .andReturn();
+            assertEquals(expected.length, result.getResponse().getContentLength());
+        }
+    }
+
+    @Test
+    public void testAnswersConditionalRequestWithNotModified() throws Exception {
+        mvc.perform(get(PATH).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, lastModified / 1000 * 1000));
+
+        mvc.perform(get(PATH).header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+            .andExpect(status().isNotModified());
+        mvc.perform(get(PATH).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+            .andExpect(status().isNotModified());
+        mvc.perform(get(PATH).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified - 60000))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(expected));
+    }
+
+    private static byte[] gunzip(byte[] content) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * A script large enough to be served gzipped by the in memory resource resolver
+ */
+var line0 = 'The quick brown fox jumps over the lazy dog';
+var line1 = 'The quick brown fox jumps over the lazy dog';
+var line2 = 'The quick brown fox jumps over the lazy dog';
+var line3 = 'The quick brown fox jumps over the lazy dog';
+var line4 = 'The quick brown fox jumps over the lazy dog';
+var line5 = 'The quick brown fox jumps over the lazy dog';
+var line6 = 'The quick brown fox jumps over the lazy dog';
+var line7 = 'The quick brown fox jumps over the lazy dog';
+var line8 = 'The quick brown fox jumps over the lazy dog';
+var line9 = 'The quick brown fox jumps over the lazy dog';
+var line10 = 'The quick brown fox jumps over the lazy dog';
+var line11 = 'The quick brown fox jumps over the lazy dog';
+var line12 = 'The quick brown fox jumps over the lazy dog';
+var line13 = 'The quick brown fox jumps over the lazy dog';
+var line14 = 'The quick brown fox jumps over the lazy dog';
+var line15 = 'The quick brown fox jumps over the lazy dog';
+var line16 = 'The quick brown fox jumps over the lazy dog';
+var line17 = 'The quick brown fox jumps over the lazy dog';
+var line18 = 'The quick brown fox jumps over the lazy dog';
+var line19 = 'The quick brown fox jumps over the lazy dog';
+var line20 = 'The quick brown fox jumps over the lazy dog';
+var line21 = 'The quick brown fox jumps over the lazy dog';
+var line22 = 'The quick brown fox jumps over the lazy dog';
+var line23 = 'The quick brown fox jumps over the lazy dog';
+var line24 = 'The quick brown fox jumps over the lazy dog';
+var line25 = 'The quick brown fox jumps over the lazy dog';
+var line26 = 'The quick brown fox jumps over the lazy dog';
+var line27 = 'The quick brown fox jumps over the lazy dog';
+var line28 = 'The quick brown fox jumps over the lazy dog';
+var line29 = 'The quick brown fox jumps over the lazy dog';
+var line30 = 'The quick brown fox jumps over the lazy dog';
+var line31 = 'The quick brown fox jumps over the lazy dog';
+var line32 = 'The quick brown fox jumps over the lazy dog';
+var line33 = 'The quick brown fox jumps over the lazy dog';
+var line34 = 'The quick brown fox jumps over the lazy dog';
+var line35 = 'The quick brown fox jumps over the lazy dog';
+var line36 = 'The quick brown fox jumps over the lazy dog';
+var line37 = 'The quick brown fox jumps over the lazy dog';
+var line38 = 'The quick brown fox jumps over the lazy dog';
+var line39 = 'The quick brown fox jumps over the lazy dog';
@@ -11,6 +11,7 @@ import io.hawt.jmx.QuartzFacade;
 import io.hawt.jmx.RBACRegistry;
 import io.hawt.jmx.UploadManager;
 import io.hawt.system.ConfigManager;
+import io.hawt.util.metrics.MetricsFacade;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +30,7 @@ public class HawtioContextListener implements ServletContextListener {
     private ConfigManager configManager = new ConfigManager();
     private JMXSecurity jmxSecurity = new JMXSecurity();
     private RBACRegistry rbacRegistry = new RBACRegistry();
+    private MetricsFacade metrics = new MetricsFacade();
 
     public void contextInitialized(ServletContextEvent servletContextEvent) {
         LOGGER.info("Initialising hawtio services");
@@ -41,6 +43,7 @@ public class HawtioContextListener implements ServletContextListener {
             uploadManager.init(configManager);
             jmxSecurity.init();
             rbacRegistry.init();
+            metrics.init();
         } catch (Exception e) {
             throw createServletException(e);
         }
@@ -58,6 +61,7 @@ public class HawtioContextListener implements ServletContextListener {
             uploadManager.destroy();
             configManager.destroy();
             jmxSecurity.destroy();
+            metrics.destroy();
         } catch (Exception e) {
             throw createServletException(e);
         }
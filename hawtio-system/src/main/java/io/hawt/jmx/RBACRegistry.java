@@ -36,6 +36,7 @@ import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import javax.management.ReflectionException;
 
+import io.hawt.util.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +74,15 @@ public class RBACRegistry implements RBACRegistryMBean {
 
     @Override
     public Map<String, Object> list() throws Exception {
+        long start = Metrics.start();
+        try {
+            return doList();
+        } finally {
+            Metrics.stop("jmx.RBACRegistry.list", start);
+        }
+    }
+
+    private Map<String, Object> doList() throws Exception {
         Map<String, Object> result = new HashMap<>();
 
         // domain -> [mbean, mbean, ...], where mbean is either inline jsonified MBeanInfo or a key to shared
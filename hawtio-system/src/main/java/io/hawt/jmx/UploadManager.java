@@ -35,6 +35,14 @@ public class UploadManager implements UploadManagerMBean {
         return factory;
     }
 
+    /**
+     * Returns the directory the chunks of resumable uploads are collected in until the upload is complete
+     */
+    public static File getPartialUploadDirectory() {
+        String parent = Strings.isNotBlank(UPLOAD_DIRECTORY) ? UPLOAD_DIRECTORY : System.getProperty("java.io.tmpdir");
+        return new File(parent, ".partial");
+    }
+
     public void init(ConfigManager config) throws Exception {
         UploadManager.UPLOAD_DIRECTORY = config.get("uploadDirectory", System.getProperty("java.io.tmpdir") + File.separator + "uploads");
         LOG.info("Using file upload directory: {}", UploadManager.UPLOAD_DIRECTORY);
@@ -15,11 +15,25 @@ import javax.management.ReflectionException;
 import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Whitelist manager for hawtio proxy.
+ * <p/>
+ * Checking a host costs a hash lookup plus a single combined regular expression. The Fabric container list and
+ * the host names of the local addresses are resolved on a background thread; a host which is not allowed
+ * triggers at most one refresh every {@link #getMinRefreshInterval()} and is then remembered as denied
+ * for {@link #getDeniedTtl()} so repeated requests for it do not keep calling the Fabric MBean.
  *
  * TODO: For now this implementation is heavily relying on Fabric v1, and should be rewritten to a more general form.
  */
@@ -28,20 +42,37 @@ public class ProxyWhitelist {
     private static final transient Logger LOG = LoggerFactory.getLogger(ProxyWhitelist.class);
 
     private static final String FABRIC_MBEAN = "io.fabric8:type=Fabric";
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\[1-9]|\\\\k<");
+    private static final int MAX_DENIED_HOSTS = 10000;
 
-    protected CopyOnWriteArraySet<String> whitelist;
+    protected Set<String> whitelist;
     protected List<Pattern> regexWhitelist;
     protected MBeanServer mBeanServer;
     protected ObjectName fabricMBean;
 
+    private volatile boolean allowAll;
+    private Pattern combinedRegex;
+    private List<Pattern> separateRegexes;
+    private final Map<String, Long> deniedHosts = new ConcurrentHashMap<>();
+    private long deniedTtl = TimeUnit.SECONDS.toMillis(30);
+    private long minRefreshInterval = TimeUnit.SECONDS.toMillis(5);
+    private long refreshInterval = TimeUnit.SECONDS.toMillis(60);
+    private long refreshTimeout = TimeUnit.SECONDS.toMillis(2);
+    private volatile long lastRefresh;
+    private Future<Boolean> pendingRefresh;
+    private Future<?> localHostNames;
+    private ScheduledExecutorService executor;
+
     public ProxyWhitelist(String whitelistStr) {
+        whitelist = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         if (Strings.isBlank(whitelistStr)) {
-            whitelist = new CopyOnWriteArraySet<>();
             regexWhitelist = Collections.emptyList();
         } else {
-            whitelist = new CopyOnWriteArraySet<>(filterRegex(Strings.split(whitelistStr, ",")));
+            whitelist.addAll(filterRegex(Strings.split(whitelistStr, ",")));
             regexWhitelist = buildRegexWhitelist(Strings.split(whitelistStr, ","));
         }
+        allowAll = whitelist.contains("*");
+        compileRegexWhitelist();
         initialiseWhitelist();
         LOG.info("Initial proxy whitelist: {}", whitelist);
 
@@ -51,6 +82,9 @@ public class ProxyWhitelist {
         } catch (MalformedObjectNameException e) {
             throw new RuntimeException(e);
         }
+        if (!allowAll) {
+            startBackgroundRefresh();
+        }
     }
 
     protected List<String> filterRegex(List<String> whitelist) {
@@ -77,35 +111,176 @@ public class ProxyWhitelist {
 
         return patterns;
     }
+
+    /**
+     * Combines the regular expressions into a single pattern so a host is matched in one pass; expressions
+     * using back references are kept separate as combining them would renumber their groups
+     */
+    protected void compileRegexWhitelist() {
+        StringBuilder combined = new StringBuilder();
+        List<Pattern> separate = new ArrayList<>();
+        for (Pattern pattern : regexWhitelist) {
+            if (BACK_REFERENCE.matcher(pattern.pattern()).find()) {
+                separate.add(pattern);
+            } else {
+                if (combined.length() > 0) {
+                    combined.append('|');
+                }
+                combined.append("(?:").append(pattern.pattern()).append(')');
+            }
+        }
+        try {
+            combinedRegex = combined.length() > 0 ? Pattern.compile(combined.toString()) : null;
+        } catch (PatternSyntaxException e) {
+            LOG.debug("Cannot combine the proxy whitelist regular expressions so matching them one by one: " + e);
+            combinedRegex = null;
+            separate = regexWhitelist;
+        }
+        separateRegexes = separate;
+    }
+
+    /**
+     * Adds the addresses of the local network interfaces; their host names are resolved in the background
+     * as reverse DNS lookups can be slow
+     */
     protected void initialiseWhitelist() {
+        for (InetAddress address : getLocalAddresses()) {
+            whitelist.add(address.getHostAddress());
+        }
+    }
+
+    protected void resolveLocalHostNames() {
+        for (InetAddress address : getLocalAddresses()) {
+            whitelist.add(address.getHostName());
+            whitelist.add(address.getCanonicalHostName());
+        }
+        deniedHosts.clear();
+        LOG.debug("Resolved local host names of proxy whitelist: {}", whitelist);
+    }
+
+    private List<InetAddress> getLocalAddresses() {
+        List<InetAddress> answer = new ArrayList<>();
         Map<String, Set<InetAddress>> localAddresses = Hosts.getNetworkInterfaceAddresses(true);
         for (Set<InetAddress> addresses : localAddresses.values()) {
-            for (InetAddress address : addresses) {
-                whitelist.add(address.getHostAddress());
-                whitelist.add(address.getHostName());
-                whitelist.add(address.getCanonicalHostName());
-            }
+            answer.addAll(addresses);
         }
+        return answer;
     }
 
     public boolean isAllowed(ProxyDetails details) {
-        if (details.isAllowed(whitelist)) {
+        String host = hostWithoutPort(details.getHost());
+        if (matches(host)) {
+            return true;
+        }
+
+        Long deniedUntil = deniedHosts.get(host);
+        if (deniedUntil != null && deniedUntil > System.currentTimeMillis()) {
+            return false;
+        }
+
+        // the host may be one of the local host names which are still being resolved
+        if (awaitLocalHostNames() && matches(host)) {
             return true;
         }
 
         // Update whitelist and check again
         LOG.debug("Updating proxy whitelist: {}, {}", whitelist, details);
-        if (update() && details.isAllowed(whitelist)) {
+        if (refresh() && matches(host)) {
             return true;
         }
 
+        if (deniedHosts.size() >= MAX_DENIED_HOSTS) {
+            deniedHosts.clear();
+        }
+        deniedHosts.put(host, System.currentTimeMillis() + deniedTtl);
+        return false;
+    }
+
+    protected boolean matches(String host) {
+        if (allowAll || whitelist.contains(host)) {
+            return true;
+        }
         // test against the regex as last resort
-        if (details.isAllowed(regexWhitelist)) {
+        if (combinedRegex != null && combinedRegex.matcher(host).matches()) {
             return true;
-        } else {
+        }
+        for (Pattern pattern : separateRegexes) {
+            if (pattern.matcher(host).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String hostWithoutPort(String host) {
+        // host may contain port number! (e.g. "localhost:9000")
+        int idx = host.indexOf(':');
+        return idx < 0 ? host : host.substring(0, idx);
+    }
+
+    /**
+     * Waits a little while for the local host names to be resolved if they are not yet
+     *
+     * @return true if they were resolved while waiting
+     */
+    protected boolean awaitLocalHostNames() {
+        Future<?> future;
+        synchronized (this) {
+            future = localHostNames;
+        }
+        if (future == null || future.isDone()) {
             return false;
         }
+        try {
+            future.get(refreshTimeout, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.debug("Local host names of the proxy whitelist not resolved yet: " + e);
+        }
+        return false;
+    }
 
+    /**
+     * Refreshes the whitelist from Fabric on the background thread unless it was refreshed recently, waiting
+     * a little while for the result; concurrent callers share the same refresh
+     *
+     * @return true if the whitelist changed
+     */
+    protected boolean refresh() {
+        if (!mBeanServer.isRegistered(fabricMBean)) {
+            LOG.debug("Whitelist MBean not available");
+            return false;
+        }
+        Future<Boolean> future;
+        synchronized (this) {
+            if (pendingRefresh == null || pendingRefresh.isDone()) {
+                if (System.currentTimeMillis() - lastRefresh < minRefreshInterval || executor == null) {
+                    return false;
+                }
+                lastRefresh = System.currentTimeMillis();
+                pendingRefresh = executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return update();
+                    }
+                });
+            }
+            future = pendingRefresh;
+        }
+        try {
+            return future.get(refreshTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            LOG.debug("Failed to refresh proxy whitelist: " + e.getCause(), e.getCause());
+            return false;
+        } catch (TimeoutException e) {
+            LOG.debug("Timed out waiting for the proxy whitelist to refresh");
+            return false;
+        }
     }
 
     public boolean update() {
@@ -115,14 +290,14 @@ public class ProxyWhitelist {
         }
 
         Set<String> newWhitelist = invokeMBean();
-        int previousSize = whitelist.size();
-        whitelist.addAll(newWhitelist);
-        if (whitelist.size() == previousSize) {
-            LOG.debug("No new proxy whitelist to update");
-            return false;
-        } else {
+        if (whitelist.addAll(newWhitelist)) {
+            // some of the denied hosts may be allowed now
+            deniedHosts.clear();
             LOG.info("Updated proxy whitelist: {}", whitelist);
             return true;
+        } else {
+            LOG.debug("No new proxy whitelist to update");
+            return false;
         }
     }
 
@@ -148,4 +323,68 @@ public class ProxyWhitelist {
         }
         return list;
     }
+
+    protected synchronized void startBackgroundRefresh() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "hawtio-proxy-whitelist");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        localHostNames = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                resolveLocalHostNames();
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mBeanServer.isRegistered(fabricMBean)) {
+                        lastRefresh = System.currentTimeMillis();
+                        update();
+                    }
+                } catch (Exception e) {
+                    LOG.debug("Failed to refresh proxy whitelist: " + e, e);
+                }
+            }
+        }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background refresh of the whitelist
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public long getDeniedTtl() {
+        return deniedTtl;
+    }
+
+    public void setDeniedTtl(long deniedTtl) {
+        this.deniedTtl = deniedTtl;
+    }
+
+    public long getMinRefreshInterval() {
+        return minRefreshInterval;
+    }
+
+    public void setMinRefreshInterval(long minRefreshInterval) {
+        this.minRefreshInterval = minRefreshInterval;
+    }
+
+    public long getRefreshTimeout() {
+        return refreshTimeout;
+    }
+
+    public void setRefreshTimeout(long refreshTimeout) {
+        this.refreshTimeout = refreshTimeout;
+    }
 }
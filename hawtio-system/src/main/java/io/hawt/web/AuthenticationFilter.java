@@ -23,6 +23,7 @@ import io.hawt.system.ConfigManager;
 import io.hawt.system.ExtractAuthInfoCallback;
 import io.hawt.system.Helpers;
 import io.hawt.system.PrivilegedCallback;
+import io.hawt.util.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -142,7 +143,16 @@ public class AuthenticationFilter implements Filter {
     }
 
     @Override
-    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        TimedFilterChain timedChain = new TimedFilterChain("filter.AuthenticationFilter", chain);
+        try {
+            authenticate(request, response, timedChain);
+        } finally {
+            timedChain.done();
+        }
+    }
+
+    private void authenticate(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         String path = httpRequest.getServletPath();
         LOG.debug("Handling request for path {}", path);
@@ -176,9 +186,11 @@ public class AuthenticationFilter implements Filter {
                 // request was executed using the authenticated subject, nothing more to do
                 break;
             case NOT_AUTHORIZED:
+                Metrics.increment("filter.AuthenticationFilter.notAuthorized");
                 Helpers.doForbidden((HttpServletResponse) response);
                 break;
             case NO_CREDENTIALS:
+                Metrics.increment("filter.AuthenticationFilter.noCredentials");
                 if (configuration.isNoCredentials401()) {
                     // return auth prompt 401
                     Helpers.doAuthPrompt(configuration.getRealm(), (HttpServletResponse) response);
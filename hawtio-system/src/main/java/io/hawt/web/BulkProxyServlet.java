@@ -0,0 +1,505 @@
+package io.hawt.web;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.hawt.util.Strings;
+import io.hawt.util.metrics.Metrics;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the same Jolokia requests to many remote agents in one go, so that a console showing a whole fleet of
+ * JVMs needs a single round trip rather than one proxied request per JVM.
+ * <p/>
+ * The body of the POST lists the targets, in the same form as the path of the {@link ProxyServlet}, and the
+ * Jolokia request (or array of requests) to send to them, which a target may override:
+ * <pre>
+ * {
+ *   "timeout": 5000,
+ *   "request": {"type": "read", "mbean": "java.lang:type=Memory", "attribute": "HeapMemoryUsage"},
+ *   "targets": ["localhost/8778/jolokia", {"id": "b", "url": "admin:admin@otherhost/8181/jolokia"}]
+ * }
+ * </pre>
+ * The targets are called concurrently, each with its own timeout, and the response is streamed back as
+ * newline delimited JSON with one line per target in the order the targets answer:
+ * <pre>
+ * {"id": "localhost/8778/jolokia", "status": 200, "response": {...}}
+ * {"id": "b", "status": 504, "error": "Timed out after 5000 ms"}
+ * </pre>
+ * Targets are checked against the same whitelist as the {@link ProxyServlet}.
+ */
+public class BulkProxyServlet extends ProxyServlet {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(BulkProxyServlet.class);
+
+    /**
+     * The maximum number of targets called at the same time, across all bulk requests
+     */
+    public static final String BULK_PROXY_MAX_CONCURRENCY = "bulkProxyMaxConcurrency";
+    public static final String HAWTIO_BULK_PROXY_MAX_CONCURRENCY = "hawtio." + BULK_PROXY_MAX_CONCURRENCY;
+
+    /**
+     * The maximum time in milliseconds a single target may take, which also caps the timeout of a request
+     */
+    public static final String BULK_PROXY_MAX_TIMEOUT = "bulkProxyMaxTimeout";
+    public static final String HAWTIO_BULK_PROXY_MAX_TIMEOUT = "hawtio." + BULK_PROXY_MAX_TIMEOUT;
+
+    /**
+     * The maximum number of targets of a single request
+     */
+    public static final String BULK_PROXY_MAX_TARGETS = "bulkProxyMaxTargets";
+    public static final String HAWTIO_BULK_PROXY_MAX_TARGETS = "hawtio." + BULK_PROXY_MAX_TARGETS;
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 50;
+    private static final long DEFAULT_MAX_TIMEOUT = 30000;
+    private static final long DEFAULT_TIMEOUT = 10000;
+    private static final int DEFAULT_MAX_TARGETS = 500;
+    private static final int MAX_REQUEST_BYTES = 1024 * 1024;
+    private static final long TIMEOUT_CHECK_INTERVAL = 100;
+
+    private static final String CONTENT_TYPE = "application/x-ndjson";
+
+    protected int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    protected long maxTimeout = DEFAULT_MAX_TIMEOUT;
+    protected int maxTargets = DEFAULT_MAX_TARGETS;
+
+    private ThreadPoolExecutor executor;
+
+    @Override
+    public String getServletInfo() {
+        return "A proxy sending Jolokia requests to many remote agents";
+    }
+
+    @Override
+    public void init(ServletConfig servletConfig) throws ServletException {
+        maxConcurrency = (int) getConfig(servletConfig, BULK_PROXY_MAX_CONCURRENCY, HAWTIO_BULK_PROXY_MAX_CONCURRENCY, DEFAULT_MAX_CONCURRENCY);
+        maxTimeout = getConfig(servletConfig, BULK_PROXY_MAX_TIMEOUT, HAWTIO_BULK_PROXY_MAX_TIMEOUT, DEFAULT_MAX_TIMEOUT);
+        maxTargets = (int) getConfig(servletConfig, BULK_PROXY_MAX_TARGETS, HAWTIO_BULK_PROXY_MAX_TARGETS, DEFAULT_MAX_TARGETS);
+
+        super.init(servletConfig);
+
+        final AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hawtio-bulk-proxy-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static long getConfig(ServletConfig servletConfig, String name, String systemProperty, long defaultValue) {
+        String value = servletConfig.getInitParameter(name);
+        if (System.getProperty(systemProperty) != null) {
+            value = System.getProperty(systemProperty);
+        }
+        if (Strings.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            long answer = Long.parseLong(value.trim());
+            return answer > 0 ? answer : defaultValue;
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value {} of {} so using {}", value, name, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    protected void configureHttpClient(HttpClientBuilder httpClientBuilder) {
+        // each target is usually a different route so the pool must allow a connection per busy thread, which
+        // the builder ignores when it uses the system properties unless it is given its own connection manager
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", sslSocketFactory != null ? sslSocketFactory : SSLConnectionSocketFactory.getSystemSocketFactory())
+                        .build());
+        connectionManager.setMaxTotal(maxConcurrency);
+        connectionManager.setDefaultMaxPerRoute(maxConcurrency);
+        // cookies are not kept as the targets are called on behalf of many users
+        httpClientBuilder
+                .setConnectionManager(connectionManager)
+                .disableCookieManagement();
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected void service(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
+            throws ServletException, IOException {
+        if (!"POST".equals(servletRequest.getMethod())) {
+            servletResponse.setHeader("Allow", "POST");
+            servletResponse.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        long start = Metrics.start();
+        try {
+            fanOut(servletRequest, servletResponse);
+        } finally {
+            Metrics.stop("proxy.bulk.request", start);
+        }
+    }
+
+    protected void fanOut(HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws IOException {
+        Map<?, ?> bulkRequest = parseBulkRequest(servletRequest, servletResponse);
+        if (bulkRequest == null) {
+            return;
+        }
+        Object targets = bulkRequest.get("targets");
+        if (!(targets instanceof List) || ((List<?>) targets).isEmpty()) {
+            servletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "No targets");
+            return;
+        }
+        if (((List<?>) targets).size() > maxTargets) {
+            servletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "More than " + maxTargets + " targets");
+            return;
+        }
+        long timeout = DEFAULT_TIMEOUT;
+        if (bulkRequest.get("timeout") instanceof Number) {
+            timeout = ((Number) bulkRequest.get("timeout")).longValue();
+        }
+        timeout = Math.max(1, Math.min(timeout, maxTimeout));
+        Object defaultRequest = bulkRequest.get("request");
+
+        servletResponse.setStatus(HttpServletResponse.SC_OK);
+        servletResponse.setContentType(CONTENT_TYPE);
+        servletResponse.setCharacterEncoding("UTF-8");
+        OutputStream out = servletResponse.getOutputStream();
+
+        CompletionService<TargetResult> completionService = new ExecutorCompletionService<>(executor);
+        List<TargetCall> calls = new ArrayList<>();
+        List<Future<TargetResult>> futures = new ArrayList<>();
+        int pending = 0;
+        try {
+            for (Object target : (List<?>) targets) {
+                TargetCall call = createCall(servletRequest, target, defaultRequest, timeout);
+                if (call.result != null) {
+                    // rejected up front so there is nothing to wait for
+                    writeResult(out, call.result);
+                    continue;
+                }
+                calls.add(call);
+                futures.add(completionService.submit(call));
+                pending++;
+            }
+            out.flush();
+
+            long lastCheck = System.currentTimeMillis();
+            while (pending > 0) {
+                Future<TargetResult> future = completionService.poll(TIMEOUT_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    pending--;
+                    writeResult(out, future.get());
+                    out.flush();
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastCheck >= TIMEOUT_CHECK_INTERVAL) {
+                    lastCheck = now;
+                    for (TargetCall call : calls) {
+                        call.abortIfExpired(now);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the calls catch their own failures so this should never happen
+            LOG.warn("Bulk proxy call failed: " + e, e);
+        } finally {
+            if (pending > 0) {
+                // the client went away or we were interrupted so lets not keep calling the targets
+                for (Future<TargetResult> future : futures) {
+                    future.cancel(false);
+                }
+                for (TargetCall call : calls) {
+                    call.abort();
+                }
+            }
+        }
+    }
+
+    private Map<?, ?> parseBulkRequest(HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws IOException {
+        if (servletRequest.getContentLength() > MAX_REQUEST_BYTES) {
+            servletResponse.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return null;
+        }
+        byte[] body = IOUtils.toByteArray(new BoundedInputStream(servletRequest.getInputStream(), MAX_REQUEST_BYTES + 1));
+        if (body.length > MAX_REQUEST_BYTES) {
+            servletResponse.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return null;
+        }
+        try {
+            Object json = new JSONParser().parse(new String(body, "UTF-8"));
+            if (json instanceof Map) {
+                return (Map<?, ?>) json;
+            }
+        } catch (ParseException e) {
+            LOG.debug("Invalid bulk proxy request: {}", e.toString());
+        }
+        servletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid bulk proxy request");
+        return null;
+    }
+
+    protected TargetCall createCall(HttpServletRequest servletRequest, Object target, Object defaultRequest, long timeout) {
+        String url;
+        String id;
+        Object jolokiaRequest = defaultRequest;
+        String userName = null;
+        String password = null;
+        if (target instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) target;
+            url = map.get("url") != null ? map.get("url").toString() : null;
+            id = map.get("id") != null ? map.get("id").toString() : url;
+            if (map.containsKey("request")) {
+                jolokiaRequest = map.get("request");
+            }
+            userName = map.get("user") != null ? map.get("user").toString() : null;
+            password = map.get("password") != null ? map.get("password").toString() : null;
+        } else {
+            url = target != null ? target.toString() : null;
+            id = url;
+        }
+
+        TargetCall call = new TargetCall(id, timeout);
+        ProxyDetails details = url != null ? new ProxyDetails(url) : null;
+        if (details == null || details.getFullProxyUrl() == null || jolokiaRequest == null) {
+            call.result = new TargetResult(id, HttpServletResponse.SC_BAD_REQUEST, null, "Invalid target");
+            return call;
+        }
+        if (!whitelist.isAllowed(details)) {
+            LOG.debug("Rejecting {}", details);
+            Metrics.increment("proxy.rejected");
+            call.result = new TargetResult(id, HttpServletResponse.SC_FORBIDDEN, null, "Forbidden");
+            return call;
+        }
+        try {
+            call.targetUri = new URI(details.getFullProxyUrl());
+        } catch (URISyntaxException e) {
+            call.result = new TargetResult(id, HttpServletResponse.SC_BAD_REQUEST, null, "Invalid target");
+            return call;
+        }
+
+        if (userName == null) {
+            userName = details.getUserName();
+            password = details.getPassword();
+        }
+        String credentials = null;
+        if (Strings.isNotBlank(userName) && Strings.isNotBlank(password)) {
+            credentials = "Basic " + Base64.encodeBase64String((userName + ":" + password).getBytes());
+        }
+
+        byte[] body;
+        try {
+            body = JSONValue.toJSONString(jolokiaRequest).getBytes("UTF-8");
+        } catch (IOException e) {
+            call.result = new TargetResult(id, HttpServletResponse.SC_BAD_REQUEST, null, "Invalid request");
+            return call;
+        }
+        HttpPost post = new HttpPost(call.targetUri);
+        post.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        post.setConfig(RequestConfig.custom()
+                .setConnectTimeout((int) timeout)
+                .setSocketTimeout((int) timeout)
+                .setConnectionRequestTimeout((int) timeout)
+                .build());
+        if (credentials != null) {
+            post.setHeader("Authorization", credentials);
+        }
+        setXForwardedForHeader(servletRequest, post);
+        call.request = post;
+        if (readCache != null) {
+            call.cacheKey = JolokiaReadCache.cacheKey("POST", details.getFullProxyUrl(), credentials, body);
+        }
+        return call;
+    }
+
+    private static void writeResult(OutputStream out, TargetResult result) throws IOException {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("{\"id\":\"").append(JSONValue.escape(String.valueOf(result.id))).append("\",\"status\":").append(result.status);
+        if (result.response != null) {
+            // the response of the agent is already JSON so lets not parse it just to write it out again
+            buffer.append(",\"response\":").append(result.response);
+        }
+        if (result.error != null) {
+            buffer.append(",\"error\":\"").append(JSONValue.escape(result.error)).append('"');
+        }
+        buffer.append("}\n");
+        out.write(buffer.toString().getBytes("UTF-8"));
+    }
+
+    /**
+     * The call of a single target which can be aborted once its time is up
+     */
+    protected class TargetCall implements Callable<TargetResult> {
+        private final String id;
+        private final long timeout;
+        private URI targetUri;
+        private HttpPost request;
+        private String cacheKey;
+        private TargetResult result;
+        // zero until the call has started
+        private volatile long deadline;
+        private volatile boolean timedOut;
+
+        TargetCall(String id, long timeout) {
+            this.id = id;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public TargetResult call() {
+            long start = Metrics.start();
+            deadline = System.currentTimeMillis() + timeout;
+            try {
+                JolokiaReadCache.CachedResponse response;
+                if (cacheKey != null) {
+                    // only cached responses are shared: waiting for an identical request in flight could not be
+                    // aborted at this call's deadline, and aborting this call must not fail other callers
+                    response = readCache.getIfPresent(cacheKey);
+                    if (response == null) {
+                        response = executeAndBuffer(request, targetUri, null);
+                        readCache.put(cacheKey, response);
+                    }
+                } else {
+                    response = execute();
+                }
+                String body = new String(response.getBody(), "UTF-8");
+                if (response.getStatus() == HttpServletResponse.SC_OK && isJson(body)) {
+                    return new TargetResult(id, response.getStatus(), body, null);
+                }
+                return new TargetResult(id, response.getStatus(), null, response.getReason());
+            } catch (Exception e) {
+                Metrics.increment("proxy.failed");
+                // the connect and socket timeouts usually fire before the call is aborted
+                if (timedOut || e instanceof InterruptedIOException) {
+                    LOG.debug("Bulk proxy to {} timed out after {} ms", request.getURI(), timeout);
+                    return new TargetResult(id, HttpServletResponse.SC_GATEWAY_TIMEOUT, null, "Timed out after " + timeout + " ms");
+                }
+                LOG.debug("Bulk proxy to " + request.getURI() + " failed", e);
+                // the details of the failure are not returned for security reasons
+                return new TargetResult(id, HttpServletResponse.SC_BAD_GATEWAY, null, "Failed to call target");
+            } finally {
+                Metrics.stop("proxy.bulk.target", start);
+            }
+        }
+
+        private JolokiaReadCache.CachedResponse execute() throws IOException {
+            HttpResponse response = null;
+            try {
+                response = proxyClient.execute(URIUtils.extractHost(targetUri), request);
+                HttpEntity entity = response.getEntity();
+                byte[] body = entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+                return new JolokiaReadCache.CachedResponse(response.getStatusLine().getStatusCode(),
+                        response.getStatusLine().getReasonPhrase(), new ArrayList<String[]>(), body);
+            } finally {
+                if (response != null) {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
+            }
+        }
+
+        void abortIfExpired(long now) {
+            long callDeadline = deadline;
+            if (callDeadline != 0 && callDeadline <= now && !timedOut) {
+                timedOut = true;
+                abort();
+            }
+        }
+
+        void abort() {
+            if (request != null) {
+                request.abort();
+            }
+        }
+    }
+
+    private static boolean isJson(String body) {
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{' || c == '[';
+            }
+        }
+        return false;
+    }
+
+    protected static class TargetResult {
+        private final String id;
+        private final int status;
+        private final String response;
+        private final String error;
+
+        TargetResult(String id, int status, String response, String error) {
+            this.id = id;
+            this.status = status;
+            this.response = response;
+            this.error = error;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getResponse() {
+            return response;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
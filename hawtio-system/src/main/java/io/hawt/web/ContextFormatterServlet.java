@@ -7,18 +7,32 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import static io.hawt.web.ExportContextServlet.executeHttpGetRequest;
+import static io.hawt.web.ExportContextServlet.readEntries;
 
 public class ContextFormatterServlet extends HttpServlet {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ContextFormatterServlet.class);
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        SharedHttpClient.acquire();
+    }
+
+    @Override
+    public void destroy() {
+        SharedHttpClient.release();
+        super.destroy();
+    }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -27,7 +41,6 @@ public class ContextFormatterServlet extends HttpServlet {
         String jobExecutionId = req.getParameter("jobExecutionId");
         String stepExecutionId = req.getParameter("stepExecutionId");
         String contextType = req.getParameter("contextType");
-        String jsonStringResponse = "";
         String url = "";
         String paramString = "jobExecutionContext";
         server = server.replaceAll("\\\\", "");
@@ -42,102 +55,97 @@ public class ContextFormatterServlet extends HttpServlet {
             url = server + "jobs/executions/" + jobExecutionId + "/steps/" + stepExecutionId + "/execution-context.json";
             paramString = "stepExecutionContext";
         }
-        jsonStringResponse = executeHttpGetRequest(url);
-        JSONParser parser = new JSONParser();
-        JSONObject jsonObject = null;
+        // each entry is written as soon as it has been read rather than reading the whole context first
+        HtmlView htmlView = new HtmlView(pr, server, jobExecutionId, stepExecutionId);
         try {
-            jsonObject = (JSONObject) parser.parse(jsonStringResponse);
-            JSONObject jobExecutionContext = (JSONObject) jsonObject.get(paramString);
-            JSONObject contextObject = (JSONObject) jobExecutionContext.get("context");
-            if (contextObject.get("map") != null && (contextObject.get("map") instanceof JSONObject)) {
-                JSONObject mapObject = (JSONObject) contextObject.get("map");
-                if (mapObject.get("entry") instanceof ArrayList) {
-                    pr.println(getHtmlView((JSONArray) mapObject.get("entry"), server, jobExecutionId, stepExecutionId));
-                } else if (mapObject.get("entry") instanceof Map) {
-
-                }
-            }
-
+            readEntries(url, paramString, htmlView);
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.warn("Failed to format execution context of " + url + ": " + e, e);
         }
+        pr.println();
     }
 
-    private String getHtmlView(ArrayList entries, String server, String jobExecutionId, String stepExecutionId) {
-        StringBuffer htmlView = new StringBuffer();
-        String errorMessageKey = "";
-        String ERROR_MESSAGES = "ERROR_MESSAGES";
-        if (entries != null) {
-            int entryIdx = 0;
-            Integer index = 0;
-            for (Object entry : entries) {
-
-                if (entry instanceof Map) {
-                    htmlView.append("<div class=\"accordion\" id=\"accordion" + index + "\">")
-                            .append("            <div class=\"accordion-group\">")
-                            .append("                <div class=\"accordion-heading\">")
-                            .append("                    <a class=\"accordion-toggle\" data-toggle=\"collapse\" data-parent=\"#accordion" + index + "\" href=\"#collapseOne" + index + "\">")
-                            .append("                        Open/Close </a>")
-                            .append("                </div>")
-                            .append("                <div id=\"collapseOne" + index + "\" class=\"accordion-body collapse in\">")
-                            .append("                    <div class=\"accordion-inner\">");
-
-
-                    for (Object o : ((Map) entry).entrySet()) {
-                        if (((Map.Entry) o).getKey().toString().equals("string")) {
-                            errorMessageKey = ((Map.Entry) o).getValue().toString();
-                            htmlView.append(((Map.Entry) o).getValue().toString());
-                            if (isListPresent((JSONObject) entry)) {
-                                htmlView.append("<span class=\"pull-right\">" + getExportLink(server, jobExecutionId, stepExecutionId, entryIdx) + "</span>");
-                            }
-                        } else if (((Map.Entry) o).getKey().toString().equals("int")) {
-                            htmlView.append(((Map.Entry) o).getValue().toString());
-                        } else if (((Map.Entry) o).getKey().toString().equals("list")) {
-                            JSONObject jsonObject = (JSONObject) ((Map.Entry) o).getValue();
-                            LinkedList list = new LinkedList(jsonObject.values());
-                            ArrayList requiredObj = (ArrayList) list.getFirst();
-                            htmlView.append("<table class=\"table\"><thead><tr>");
-                            Map columnsAndRow;
-                            if (errorMessageKey.equals(ERROR_MESSAGES)) {
-                                columnsAndRow = ServletHelpers.populateErrorTableMapForXl(requiredObj);
-                            } else {
-                                columnsAndRow = ServletHelpers.populateTableMapForXl(requiredObj);
-                            }
-                            Set columns = (Set) columnsAndRow.get("columns");
-                            List rows = (List) columnsAndRow.get("rows");
-                            for (Object th : columns) {
-                                htmlView.append("<th>");
-                                if (th.toString().length() > 5) {
-                                    htmlView.append(th.toString().substring(0, 5));
-                                } else {
-                                    htmlView.append(th.toString());
-                                }
-                                htmlView.append("</th>");
-                            }
-                            htmlView.append("</tr>");
-
-                            for (Object obj : rows) {
-                                htmlView.append("<tr>");
-                                for (Object column : columns) {
-                                    htmlView.append("<td>" + ((Map) obj).get(column.toString()).toString() + "</td>");
-                                }
-
-                                htmlView.append("</tr>");
-                            }
-                            htmlView.append("</thead></table>");
-                        } else if (!((Map.Entry) o).getKey().toString().equals("string") || !((Map.Entry) o).getKey().toString().equals("list") || ((Map.Entry) o).getKey().toString().equals("int")) {
-                            htmlView.append(((Map.Entry) o).getValue().toString());
+    /**
+     * Writes the entries of an execution context as HTML
+     */
+    private class HtmlView implements ExecutionContextEntries.EntryHandler {
+        private static final String ERROR_MESSAGES = "ERROR_MESSAGES";
+        private final PrintWriter htmlView;
+        private final String server;
+        private final String jobExecutionId;
+        private final String stepExecutionId;
+        private String errorMessageKey = "";
+        private int index = 0;
+
+        HtmlView(PrintWriter htmlView, String server, String jobExecutionId, String stepExecutionId) {
+            this.htmlView = htmlView;
+            this.server = server;
+            this.jobExecutionId = jobExecutionId;
+            this.stepExecutionId = stepExecutionId;
+        }
+
+        @Override
+        public void entry(int entryIdx, JSONObject entry) {
+            htmlView.append("<div class=\"accordion\" id=\"accordion" + index + "\">")
+                    .append("            <div class=\"accordion-group\">")
+                    .append("                <div class=\"accordion-heading\">")
+                    .append("                    <a class=\"accordion-toggle\" data-toggle=\"collapse\" data-parent=\"#accordion" + index + "\" href=\"#collapseOne" + index + "\">")
+                    .append("                        Open/Close </a>")
+                    .append("                </div>")
+                    .append("                <div id=\"collapseOne" + index + "\" class=\"accordion-body collapse in\">")
+                    .append("                    <div class=\"accordion-inner\">");
+
+
+            for (Object o : entry.entrySet()) {
+                if (((Map.Entry) o).getKey().toString().equals("string")) {
+                    errorMessageKey = ((Map.Entry) o).getValue().toString();
+                    htmlView.print(((Map.Entry) o).getValue().toString());
+                    if (isListPresent(entry)) {
+                        htmlView.print("<span class=\"pull-right\">" + getExportLink(server, jobExecutionId, stepExecutionId, entryIdx) + "</span>");
+                    }
+                } else if (((Map.Entry) o).getKey().toString().equals("int")) {
+                    htmlView.print(((Map.Entry) o).getValue().toString());
+                } else if (((Map.Entry) o).getKey().toString().equals("list")) {
+                    JSONObject jsonObject = (JSONObject) ((Map.Entry) o).getValue();
+                    LinkedList list = new LinkedList(jsonObject.values());
+                    ArrayList requiredObj = (ArrayList) list.getFirst();
+                    htmlView.print("<table class=\"table\"><thead><tr>");
+                    Map columnsAndRow;
+                    if (errorMessageKey.equals(ERROR_MESSAGES)) {
+                        columnsAndRow = ServletHelpers.populateErrorTableMapForXl(requiredObj);
+                    } else {
+                        columnsAndRow = ServletHelpers.populateTableMapForXl(requiredObj);
+                    }
+                    Set columns = (Set) columnsAndRow.get("columns");
+                    List rows = (List) columnsAndRow.get("rows");
+                    for (Object th : columns) {
+                        htmlView.print("<th>");
+                        if (th.toString().length() > 5) {
+                            htmlView.print(th.toString().substring(0, 5));
+                        } else {
+                            htmlView.print(th.toString());
                         }
+                        htmlView.print("</th>");
+                    }
+                    htmlView.print("</tr>");
 
-                        index++;
+                    for (Object obj : rows) {
+                        htmlView.print("<tr>");
+                        for (Object column : columns) {
+                            htmlView.print("<td>" + ((Map) obj).get(column.toString()).toString() + "</td>");
+                        }
+
+                        htmlView.print("</tr>");
                     }
-                    htmlView.append("</div></div></div></div>");
+                    htmlView.print("</thead></table>");
+                } else if (!((Map.Entry) o).getKey().toString().equals("string") || !((Map.Entry) o).getKey().toString().equals("list") || ((Map.Entry) o).getKey().toString().equals("int")) {
+                    htmlView.print(((Map.Entry) o).getValue().toString());
                 }
-                entryIdx++;
+
+                index++;
             }
+            htmlView.print("</div></div></div></div>");
         }
-
-        return htmlView.toString();
     }
 
     private String getExportLink(String springBatchServer, String jobExecutionId, String stepExecutionId, int index) {
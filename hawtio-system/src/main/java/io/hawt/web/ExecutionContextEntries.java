@@ -0,0 +1,163 @@
+package io.hawt.web;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Reads the entries of a Spring Batch execution context, i.e. the <code>context.map.entry</code> of its
+ * <code>jobExecutionContext</code> or <code>stepExecutionContext</code>, from a JSON stream one at a time, so that
+ * only the entry being handled is held in memory rather than the whole document.
+ */
+class ExecutionContextEntries implements ContentHandler {
+
+    /**
+     * Called with each entry of the execution context as soon as it has been read
+     */
+    interface EntryHandler {
+        void entry(int index, JSONObject entry) throws IOException;
+    }
+
+    // the context type object, its context and map are nested in the root object
+    private static final int ENTRIES_DEPTH = 4;
+
+    private final String[] entriesPath;
+    private final EntryHandler handler;
+    private final Deque<String> keys = new ArrayDeque<>();
+    private final Deque<Object> building = new ArrayDeque<>();
+    private int depth;
+    private boolean inEntriesArray;
+    private int index;
+    private IOException failure;
+
+    ExecutionContextEntries(String contextType, EntryHandler handler) {
+        this.entriesPath = new String[]{"map", "context", contextType};
+        this.handler = handler;
+    }
+
+    /**
+     * Reads the execution context passing its entries to the handler
+     */
+    static void read(Reader reader, String contextType, EntryHandler handler) throws IOException, ParseException {
+        ExecutionContextEntries entries = new ExecutionContextEntries(contextType, handler);
+        new JSONParser().parse(reader, entries);
+        if (entries.failure != null) {
+            throw entries.failure;
+        }
+    }
+
+    private boolean atEntries() {
+        if (depth != ENTRIES_DEPTH || keys.size() != ENTRIES_DEPTH || !"entry".equals(keys.peek())) {
+            return false;
+        }
+        int i = -1;
+        for (String key : keys) {
+            if (i >= 0 && !entriesPath[i].equals(key)) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    @Override
+    public void startJSON() {
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        if (!building.isEmpty()) {
+            JSONObject object = new JSONObject();
+            addValue(object);
+            building.push(object);
+        } else if ((inEntriesArray && depth == ENTRIES_DEPTH + 1) || atEntries()) {
+            // an entry of the array of entries or the only entry
+            building.push(new JSONObject());
+        }
+        depth++;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean endObject() {
+        depth--;
+        if (!building.isEmpty()) {
+            Object object = building.pop();
+            if (building.isEmpty()) {
+                try {
+                    handler.entry(index++, (JSONObject) object);
+                } catch (IOException e) {
+                    failure = e;
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        keys.push(key);
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        keys.pop();
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        if (!building.isEmpty()) {
+            JSONArray array = new JSONArray();
+            addValue(array);
+            building.push(array);
+        } else if (atEntries()) {
+            inEntriesArray = true;
+        }
+        depth++;
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        depth--;
+        if (!building.isEmpty()) {
+            building.pop();
+        } else if (inEntriesArray && depth == ENTRIES_DEPTH) {
+            inEntriesArray = false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        if (!building.isEmpty()) {
+            addValue(value);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addValue(Object value) {
+        Object container = building.peek();
+        if (container instanceof JSONObject) {
+            ((JSONObject) container).put(keys.peek(), value);
+        } else {
+            ((JSONArray) container).add(value);
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package io.hawt.web;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.Map;
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -13,12 +19,12 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,42 +32,46 @@ public class ExportContextServlet extends HttpServlet {
     public static final String RENDER_JSON_ERROR_MESSAGES = "ERROR_MESSAGES";
     private static final transient Logger LOG = LoggerFactory.getLogger(ExportContextServlet.class);
 
+    private static final String CONTENT_NOT_AVAILABLE = "Content not available";
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        SharedHttpClient.acquire();
+    }
+
+    @Override
+    public void destroy() {
+        SharedHttpClient.release();
+        super.destroy();
+    }
+
     @Override
     protected void doGet(HttpServletRequest httpServletRequest, HttpServletResponse resp) throws ServletException, IOException {
         String serverUrl = httpServletRequest.getParameter("server");
         String jobExecutionId = httpServletRequest.getParameter("execId");
-        String key = httpServletRequest.getParameter("key");
+        final String key = httpServletRequest.getParameter("key");
 
-        String jsonStringResponse = "";
-        String exportCsvString = "Content not available";
+        resp.setHeader("Content-Disposition", "attachment; filename=\"jsonData.csv\"");
+        final PrintWriter out = resp.getWriter();
+        final boolean[] exported = new boolean[1];
         if ((serverUrl != null && !serverUrl.isEmpty())) {
             if ((jobExecutionId != null && !jobExecutionId.isEmpty())) {
-                jsonStringResponse = executeHttpGetRequest(getServerUrl(serverUrl) + "jobs/executions/" + jobExecutionId + "/execution-context.json");
-                JSONObject jsonObject = parseStringToJSON(jsonStringResponse);
-
-                Object entryObject = getEntryObject(jsonObject);
-                if (entryObject != null && (entryObject instanceof JSONArray)) {
-                    JSONArray entry = (JSONArray) entryObject;
-                    JSONObject exportEntry = null;
-                    for (Object o : entry) {
-                        if (o instanceof JSONObject) {
-                            if (((JSONObject) o).get("string").toString().equalsIgnoreCase(key)) {
-                                exportEntry = (JSONObject) o;
-                                exportCsvString = getCsvData(exportEntry, key);
-                            }
+                String url = getServerUrl(serverUrl) + "jobs/executions/" + jobExecutionId + "/execution-context.json";
+                readEntries(url, "jobExecutionContext", new ExecutionContextEntries.EntryHandler() {
+                    @Override
+                    public void entry(int index, JSONObject entry) throws IOException {
+                        if (!exported[0] && entry.get("string") != null && entry.get("string").toString().equalsIgnoreCase(key)) {
+                            exported[0] = writeCsvData(entry, key, out);
                         }
                     }
-                } else if (entryObject != null && (entryObject instanceof JSONObject)) {
-                    JSONObject entry = (JSONObject) entryObject;
-                    if (entry.get("string").toString().equalsIgnoreCase(key)) {
-                        JSONObject exportEntry = (JSONObject) entry.get("string");
-                        exportCsvString = getCsvData(exportEntry, key);
-                    }
-                }
+                });
             }
         }
-        resp.setHeader("Content-Disposition", "attachment; filename=\"jsonData.csv\"");
-        resp.getWriter().println(exportCsvString);
+        if (!exported[0]) {
+            out.print(CONTENT_NOT_AVAILABLE);
+        }
+        out.println();
     }
 
     @Override
@@ -71,91 +81,109 @@ public class ExportContextServlet extends HttpServlet {
         String stepId = httpServletRequest.getParameter("stepId");
         String entryIndex = httpServletRequest.getParameter("entryIndex");
 
-        String jsonStringResponse;
-        String exportCsvString = "Content not available";
+        resp.setHeader("Content-Disposition", "attachment; filename=\"jsonData.csv\"");
+        final PrintWriter out = resp.getWriter();
+        final boolean[] exported = new boolean[1];
         if ((serverUrl != null && !serverUrl.isEmpty())) {
             if ((jobExecutionId != null && !jobExecutionId.isEmpty())) {
+                String url;
+                String contextType;
                 if (stepId != null && !stepId.isEmpty()) {
-                    jsonStringResponse = executeHttpGetRequest(getServerUrl(serverUrl) + "jobs/executions/" + jobExecutionId + "/steps/" + stepId + "/execution-context.json");
+                    url = getServerUrl(serverUrl) + "jobs/executions/" + jobExecutionId + "/steps/" + stepId + "/execution-context.json";
+                    contextType = "stepExecutionContext";
                 } else {
-                    jsonStringResponse = executeHttpGetRequest(getServerUrl(serverUrl) + "jobs/executions/" + jobExecutionId + "/execution-context.json");
+                    url = getServerUrl(serverUrl) + "jobs/executions/" + jobExecutionId + "/execution-context.json";
+                    contextType = "jobExecutionContext";
                 }
-                JSONObject jsonObject = parseStringToJSON(jsonStringResponse);
-                Object entryObject = (stepId != null && !stepId.isEmpty()) ? getEntryObject(jsonObject, "stepExecutionContext") : getEntryObject(jsonObject);
-                if (entryObject != null && (entryObject instanceof JSONArray)) {
-                    JSONArray entry = (JSONArray) entryObject;
-                    Object exportEntryObject = entry.get(Integer.parseInt(entryIndex));
-
-                    if (exportEntryObject instanceof JSONObject) {
-                        String key = ((JSONObject) exportEntryObject).get("string").toString();
-                        exportCsvString = getCsvData(((JSONObject) exportEntryObject), key);
+                final int exportIndex = Integer.parseInt(entryIndex);
+                readEntries(url, contextType, new ExecutionContextEntries.EntryHandler() {
+                    @Override
+                    public void entry(int index, JSONObject entry) throws IOException {
+                        if (index == exportIndex && entry.get("string") != null) {
+                            exported[0] = writeCsvData(entry, entry.get("string").toString(), out);
+                        }
                     }
-
-                }
+                });
             }
         }
-        resp.setHeader("Content-Disposition", "attachment; filename=\"jsonData.csv\"");
-        resp.getWriter().println(exportCsvString);
+        if (!exported[0]) {
+            out.print(CONTENT_NOT_AVAILABLE);
+        }
+        out.println();
     }
 
-    private String getCsvData(JSONObject exportEntry, String key) {
+    /**
+     * Writes the list of the entry as CSV returning false if the entry has no list
+     */
+    private boolean writeCsvData(JSONObject exportEntry, String key, PrintWriter out) throws IOException {
         if ((exportEntry.get("list") != null) && (exportEntry.get("list") instanceof JSONObject)) {
             JSONObject obj = (JSONObject) exportEntry.get("list");
             JSONArray exportArray = (JSONArray) new LinkedList(obj.values()).getFirst();
             Map xlData = (key.equalsIgnoreCase(RENDER_JSON_ERROR_MESSAGES)) ? ServletHelpers.populateErrorTableMapForXl(exportArray) : ServletHelpers.populateTableMapForXl(exportArray);
-            return ServletHelpers.generateCsvString(xlData);
-        } else return "Content not available";
+            ServletHelpers.writeCsv(xlData, out);
+            return true;
+        }
+        return false;
     }
 
-    static public String executeHttpGetRequest(String url) throws IOException {
-        CloseableHttpClient httpclient = HttpClients.createDefault();
-        try {
-            HttpGet httpget = new HttpGet(url);
-
-            ResponseHandler<String> responseHandler = new ResponseHandler<String>() {
-
-                @Override
-                public String handleResponse(
-                        final HttpResponse response) throws IOException {
-                    int status = response.getStatusLine().getStatusCode();
-                    if (status >= 200 && status < 300) {
-                        HttpEntity entity = response.getEntity();
-                        return entity != null ? EntityUtils.toString(entity) : null;
-                    } else {
-                        throw new ClientProtocolException("Unexpected response status: " + status);
-                    }
+    /**
+     * Streams the execution context at the url passing each of its entries to the handler as it is read
+     */
+    static void readEntries(String url, final String contextType, final ExecutionContextEntries.EntryHandler handler) throws IOException {
+        executeHttpGetRequest(url, new ResponseHandler<Void>() {
+            @Override
+            public Void handleResponse(HttpResponse response) throws IOException {
+                HttpEntity entity = checkStatus(response);
+                if (entity == null) {
+                    return null;
                 }
-            };
-            return httpclient.execute(httpget, responseHandler);
-        } finally {
-            httpclient.close();
-        }
+                try (Reader reader = new InputStreamReader(entity.getContent(), getCharset(entity))) {
+                    ExecutionContextEntries.read(reader, contextType, handler);
+                } catch (ParseException e) {
+                    LOG.error("Failed to parse execution context: " + e);
+                }
+                return null;
+            }
+        });
     }
 
-    private JSONObject parseStringToJSON(String source) {
-        JSONParser parser = new JSONParser();
-        JSONObject jsonObject = null;
-        try {
-            jsonObject = (JSONObject) parser.parse(source);
-        } catch (Exception pe) {
-            LOG.error(pe.getMessage());
-            return jsonObject;
-        }
-        return jsonObject;
+    private static Charset getCharset(HttpEntity entity) {
+        ContentType contentType = ContentType.get(entity);
+        Charset charset = contentType != null ? contentType.getCharset() : null;
+        return charset != null ? charset : StandardCharsets.UTF_8;
     }
 
-    private Object getEntryObject(JSONObject jsonObject, String contextType) {
-        contextType = (contextType != null && !contextType.isEmpty()) ? contextType : "jobExecutionContext";
-        JSONObject jobExecutionContext = (JSONObject) jsonObject.get(contextType);
-        JSONObject contextObject = (JSONObject) jobExecutionContext.get("context");
-        if (contextObject.get("map") != null && (contextObject.get("map") instanceof JSONObject)) {
-            return ((JSONObject) contextObject.get("map")).get("entry");
+    private static HttpEntity checkStatus(HttpResponse response) throws ClientProtocolException {
+        int status = response.getStatusLine().getStatusCode();
+        if (status >= 200 && status < 300) {
+            return response.getEntity();
+        } else {
+            throw new ClientProtocolException("Unexpected response status: " + status);
         }
-        return null;
     }
 
-    private Object getEntryObject(JSONObject jsonObject) {
-        return getEntryObject(jsonObject, null);
+    static public String executeHttpGetRequest(String url) throws IOException {
+        return executeHttpGetRequest(url, new ResponseHandler<String>() {
+
+            @Override
+            public String handleResponse(
+                    final HttpResponse response) throws IOException {
+                HttpEntity entity = checkStatus(response);
+                return entity != null ? EntityUtils.toString(entity) : null;
+            }
+        });
+    }
+
+    /**
+     * Executes a GET with the shared pooled http client handling the response with the handler
+     */
+    static <T> T executeHttpGetRequest(String url, ResponseHandler<T> responseHandler) throws IOException {
+        CloseableHttpClient httpclient = SharedHttpClient.acquire();
+        try {
+            return httpclient.execute(new HttpGet(url), responseHandler);
+        } finally {
+            SharedHttpClient.release();
+        }
     }
 
     private String getServerUrl(String serverUrl) {
@@ -165,4 +193,4 @@ public class ExportContextServlet extends HttpServlet {
         }
         return serverUrl;
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,11 @@ package io.hawt.web;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -153,68 +157,17 @@ public class GlobalFileUploadFilter {
         return 0L;
     }
 
-    public static synchronized boolean accept(byte[] fileContent, List<MagicNumberFileFilter> filters) {
-        // By default all files are allowed unless configured via sys. prop
-        if (filters == null || filters.isEmpty()) {
-            return true;
-        }
-
-        boolean fileAccepted = false;
-        for (MagicNumberFileFilter magicNumberFileFilter : filters) {
-            if (magicNumberFileFilter.getMagicNumbers().length > 0 && fileContent.length >= magicNumberFileFilter.getByteOffset() +
-                magicNumberFileFilter.getMagicNumbers().length) {
-                byte[] fileMagicBytes = Arrays.copyOfRange(fileContent, toIntExact(magicNumberFileFilter.getByteOffset()),
-                    toIntExact(magicNumberFileFilter.getByteOffset()) + magicNumberFileFilter.getMagicNumbers().length);
-                boolean matched = Arrays.equals(magicNumberFileFilter.getMagicNumbers(), fileMagicBytes);
-                if (matched) {
-                    fileAccepted = true;
-                    //Individual file size check to ensure it complies with configs
-                    if (magicNumberFileFilter.getMaxSize() != null) {
-                        String fileSize = FileUtils.byteCountToDisplaySize(fileContent.length);
-                        if (translateFileSize(fileSize) <= translateFileSize(magicNumberFileFilter.getMaxSize())) {
-                            fileAccepted = true;
-                        } else {
-                            fileAccepted = false;
-                        }
-                    }
-
-                    /**
-                     * If this is a zip file inspect the content, at the moment hawtio should only
-                     * allow zip archive file to be uploaded
-                     */
-                    if (Arrays.equals(magicNumberFileFilter.getMagicNumbers(),
-                        hexStringToByteArray(ZIP_SIGNATURE)) && fileAccepted) {
-                        try {
-                            fileAccepted = unzip(fileContent, filters);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            } else if (magicNumberFileFilter.getExceptions() != null) {
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(fileContent.length);
-                outputStream.write(fileContent, 0, fileContent.length);
-                Set<String> excList = new HashSet<>();
-                for (String s: constructDefaultScriptingContent()) {
-                    if (magicNumberFileFilter.getExceptions() != null &&
-                        !magicNumberFileFilter.getExceptions().contains(s)) {
-                        excList.add(s);
-                    }
-                }
-                if (!isAsciiContentDangerous(outputStream, excList)) {
-                    fileAccepted = true;
-                }
-            }
-        }
-
-        return fileAccepted;
+    public static synchronized boolean accept(final byte[] fileContent, List<MagicNumberFileFilter> filters) {
+        ContentInspector inspector = new ContentInspector(filters);
+        inspector.update(fileContent, 0, fileContent.length);
+        return inspector.isAccepted(() -> new ByteArrayInputStream(fileContent));
     }
 
-    private static boolean unzip(byte[] fileContent, List<MagicNumberFileFilter> fileFilter) throws IOException {
+    private static boolean unzip(InputStream content, List<MagicNumberFileFilter> fileFilter) throws IOException {
         long maxSize = 5 * 1048576L; // Default size of the unzipped data, 50MB
         int tooMany = 100; // Max number of files
         int buffer = 512;
-        ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(fileContent));
+        ZipInputStream zipInputStream = new ZipInputStream(content);
         boolean safe = true;
         int entries = 0;
         long total = 0;
@@ -387,6 +340,156 @@ public class GlobalFileUploadFilter {
         return this.filters;
     }
 
+    /**
+     * Checks the content of a file against the filters as it is written, a chunk at a time, so that an upload
+     * never has to be held in memory. Only the bytes the magic numbers are compared with are kept; the ascii
+     * content is searched for the prohibited strings as it goes, and zips, whose entries have to be inspected,
+     * are read again once they have been written.
+     */
+    public static final class ContentInspector {
+        private final List<MagicNumberFileFilter> filters;
+        private final List<Set<String>> prohibitedLists = new ArrayList<>();
+        private final boolean[] dangerous;
+        private final byte[] header;
+        private final int overlap;
+        private int headerLength;
+        private long length;
+        private int scanning;
+        private String tail = "";
+
+        public ContentInspector(List<MagicNumberFileFilter> filters) {
+            this.filters = filters != null ? filters : Collections.<MagicNumberFileFilter>emptyList();
+            this.dangerous = new boolean[this.filters.size()];
+            int headerSize = 0;
+            int longest = 0;
+            for (MagicNumberFileFilter filter : this.filters) {
+                headerSize = Math.max(headerSize, toIntExact(filter.getByteOffset()) + filter.getMagicNumbers().length);
+                Set<String> prohibited = null;
+                if (filter.getExceptions() != null) {
+                    prohibited = new HashSet<>();
+                    for (String s : constructDefaultScriptingContent()) {
+                        if (!filter.getExceptions().contains(s)) {
+                            prohibited.add(s);
+                            longest = Math.max(longest, s.length());
+                        }
+                    }
+                    scanning++;
+                }
+                prohibitedLists.add(prohibited);
+            }
+            this.header = new byte[headerSize];
+            this.overlap = Math.max(0, longest - 1);
+        }
+
+        public void update(byte[] data, int offset, int count) {
+            if (headerLength < header.length) {
+                int n = Math.min(count, header.length - headerLength);
+                System.arraycopy(data, offset, header, headerLength, n);
+                headerLength += n;
+            }
+            length += count;
+            if (scanning > 0) {
+                // the end of the previous chunk is kept to find the strings which span chunks
+                String text = tail + new String(data, offset, count, StandardCharsets.ISO_8859_1);
+                for (int i = 0; i < dangerous.length; i++) {
+                    Set<String> prohibited = prohibitedLists.get(i);
+                    if (prohibited == null || dangerous[i]) {
+                        continue;
+                    }
+                    for (String s : prohibited) {
+                        if (text.contains(s)) {
+                            dangerous[i] = true;
+                            scanning--;
+                            break;
+                        }
+                    }
+                }
+                tail = text.substring(Math.max(0, text.length() - overlap));
+            }
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Returns true if the content inspected so far is allowed to be uploaded
+         *
+         * @param content opens the content again if it turns out to be a zip whose entries need inspecting
+         */
+        public boolean isAccepted(ContentSource content) {
+            // By default all files are allowed unless configured via sys. prop
+            if (filters.isEmpty()) {
+                return true;
+            }
+
+            boolean fileAccepted = false;
+            for (int i = 0; i < dangerous.length; i++) {
+                MagicNumberFileFilter magicNumberFileFilter = filters.get(i);
+                byte[] magicNumbers = magicNumberFileFilter.getMagicNumbers();
+                int offset = toIntExact(magicNumberFileFilter.getByteOffset());
+                if (magicNumbers.length > 0 && length >= offset + magicNumbers.length) {
+                    boolean matched = Arrays.equals(magicNumbers, Arrays.copyOfRange(header, offset, offset + magicNumbers.length));
+                    if (matched) {
+                        fileAccepted = true;
+                        //Individual file size check to ensure it complies with configs
+                        if (magicNumberFileFilter.getMaxSize() != null) {
+                            String fileSize = FileUtils.byteCountToDisplaySize(length);
+                            fileAccepted = translateFileSize(fileSize) <= translateFileSize(magicNumberFileFilter.getMaxSize());
+                        }
+
+                        /**
+                         * If this is a zip file inspect the content, at the moment hawtio should only
+                         * allow zip archive file to be uploaded
+                         */
+                        if (Arrays.equals(magicNumbers, hexStringToByteArray(ZIP_SIGNATURE)) && fileAccepted) {
+                            try {
+                                fileAccepted = unzip(content.open(), filters);
+                            } catch (IOException e) {
+                                LOG.warn("Failed to inspect zip file: " + e, e);
+                            }
+                        }
+                    }
+                } else if (magicNumberFileFilter.getExceptions() != null) {
+                    if (!dangerous[i]) {
+                        fileAccepted = true;
+                    }
+                }
+            }
+
+            return fileAccepted;
+        }
+
+        /**
+         * Returns true if the content, written to the given file, is allowed to be uploaded
+         */
+        public boolean isAccepted(final File file) {
+            return isAccepted(() -> new FileInputStream(file));
+        }
+    }
+
+    /**
+     * Opens the content of an upload again
+     */
+    public interface ContentSource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Returns true if the file is allowed to be uploaded, reading it a chunk at a time
+     */
+    public static boolean accept(File file, List<MagicNumberFileFilter> filters) throws IOException {
+        ContentInspector inspector = new ContentInspector(filters);
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                inspector.update(buffer, 0, count);
+            }
+        }
+        return inspector.isAccepted(file);
+    }
+
     /**
      * Hold a snapshot of values to be passed to an GlobalFileUploadFilter.
      */
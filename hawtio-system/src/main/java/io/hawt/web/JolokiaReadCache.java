@@ -0,0 +1,301 @@
+package io.hawt.web;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A short lived cache of the responses to idempotent Jolokia requests (<code>read</code>, <code>list</code> and
+ * <code>search</code>) made through the proxy, so that many consoles watching the same remote JVM share the
+ * upstream calls. Identical requests which arrive while one is in flight wait for its response rather than
+ * making their own call.
+ * <p/>
+ * Requests are keyed by the target URL, the credentials used and the request body with the keys of its JSON
+ * objects sorted, so users never see responses fetched with someone else's credentials.
+ */
+public class JolokiaReadCache {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(JolokiaReadCache.class);
+
+    private static final String JOLOKIA_AGENT_PATH = "/jolokia/";
+    private static final Set<String> CACHEABLE_TYPES = new HashSet<>(Arrays.asList("read", "list", "search"));
+
+    private final long ttl;
+    private final int maxEntries;
+    private final int maxEntryBytes;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public JolokiaReadCache(long ttl, int maxEntries, int maxEntryBytes) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * Returns the cache key of the request or null if the request may not be cached
+     *
+     * @param method      the HTTP method
+     * @param targetUrl   the full URL of the proxied request
+     * @param credentials the credentials sent upstream or null
+     * @param body        the body of a POST request or null
+     */
+    public static String cacheKey(String method, String targetUrl, String credentials, byte[] body) {
+        String request;
+        if ("GET".equals(method)) {
+            if (!isCacheableGet(targetUrl)) {
+                return null;
+            }
+            request = "";
+        } else if ("POST".equals(method) && body != null) {
+            request = normalizeBody(body);
+            if (request == null) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        return method + " " + targetUrl + "\n" + (credentials != null ? credentials : "") + "\n" + request;
+    }
+
+    /**
+     * Jolokia GET requests carry the type as the first path element after the agent, e.g. /jolokia/read/...;
+     * as the proxy forwards any URL, only requests to an agent at the usual jolokia path are cached
+     */
+    private static boolean isCacheableGet(String targetUrl) {
+        int query = targetUrl.indexOf('?');
+        String path = query < 0 ? targetUrl : targetUrl.substring(0, query);
+        int agent = path.indexOf(JOLOKIA_AGENT_PATH);
+        if (agent < 0) {
+            return false;
+        }
+        int start = agent + JOLOKIA_AGENT_PATH.length();
+        int end = path.indexOf('/', start);
+        return CACHEABLE_TYPES.contains(end < 0 ? path.substring(start) : path.substring(start, end));
+    }
+
+    /**
+     * Returns the body as JSON with sorted object keys if all of its requests are cacheable or null otherwise
+     */
+    private static String normalizeBody(byte[] body) {
+        Object json;
+        try {
+            json = new JSONParser().parse(new String(body, "UTF-8"));
+        } catch (ParseException | UnsupportedEncodingException e) {
+            return null;
+        }
+        Collection<?> requests = json instanceof List ? (List<?>) json : Arrays.asList(json);
+        if (requests.isEmpty()) {
+            return null;
+        }
+        for (Object request : requests) {
+            if (!(request instanceof Map) || !CACHEABLE_TYPES.contains(String.valueOf(((Map<?, ?>) request).get("type")))) {
+                return null;
+            }
+        }
+        return JSONValue.toJSONString(sortKeys(json));
+    }
+
+    private static Object sortKeys(Object json) {
+        if (json instanceof Map) {
+            Map<String, Object> answer = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) json).entrySet()) {
+                answer.put(String.valueOf(entry.getKey()), sortKeys(entry.getValue()));
+            }
+            return answer;
+        } else if (json instanceof List) {
+            List<Object> answer = new ArrayList<>();
+            for (Object element : (List<?>) json) {
+                answer.add(sortKeys(element));
+            }
+            return answer;
+        }
+        return json;
+    }
+
+    /**
+     * Returns the cached response for the key, waiting for an identical request in flight or invoking the
+     * loader if there is none
+     */
+    public CachedResponse get(String key, Callable<CachedResponse> loader) throws Exception {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        boolean owner = false;
+        if (entry == null) {
+            Entry created = new Entry(loader);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+                owner = true;
+                evictIfFull(now);
+            }
+        }
+        if (owner) {
+            entry.task.run();
+        }
+        try {
+            CachedResponse response = entry.task.get();
+            if (owner) {
+                if (response.getStatus() == 200 && response.getBody().length <= maxEntryBytes) {
+                    entry.expires = System.currentTimeMillis() + ttl;
+                } else {
+                    entries.remove(key, entry);
+                }
+            }
+            return response;
+        } catch (ExecutionException e) {
+            entries.remove(key, entry);
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the response cached for the key or null if there is none, without waiting for an identical
+     * request in flight
+     */
+    public CachedResponse getIfPresent(String key) {
+        Entry entry = entries.get(key);
+        // the expiry is only set once the response has been fetched successfully
+        if (entry == null || entry.expires == 0 || entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        try {
+            return entry.task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Caches a response which was fetched without going through {@link #get(String, Callable)}, unless an
+     * identical request is in flight or the response may not be cached
+     */
+    public void put(String key, CachedResponse response) {
+        if (response.getStatus() != 200 || response.getBody().length > maxEntryBytes) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Entry existing = entries.get(key);
+        if (existing != null && existing.isExpired(now)) {
+            entries.remove(key, existing);
+            existing = null;
+        }
+        if (existing == null) {
+            Entry entry = new Entry(response, now + ttl);
+            if (entries.putIfAbsent(key, entry) == null) {
+                evictIfFull(now);
+            }
+        }
+    }
+
+    private void evictIfFull(long now) {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext(); ) {
+            if (iter.next().isExpired(now)) {
+                iter.remove();
+            }
+        }
+        if (entries.size() > maxEntries) {
+            LOG.debug("Jolokia read cache is full so clearing it");
+            for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext(); ) {
+                if (iter.next().task.isDone()) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private static class Entry {
+        final FutureTask<CachedResponse> task;
+        // zero while the request is in flight
+        volatile long expires;
+
+        Entry(Callable<CachedResponse> loader) {
+            this.task = new FutureTask<>(loader);
+        }
+
+        Entry(CachedResponse response, long expires) {
+            this.task = new FutureTask<>(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, response);
+            this.task.run();
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires != 0 && expires <= now;
+        }
+    }
+
+    /**
+     * A buffered upstream response
+     */
+    public static class CachedResponse {
+        private final int status;
+        private final String reason;
+        private final List<String[]> headers;
+        private final byte[] body;
+
+        public CachedResponse(int status, String reason, List<String[]> headers, byte[] body) {
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * Returns the name and value pairs of the end to end headers of the response
+         */
+        public List<String[]> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
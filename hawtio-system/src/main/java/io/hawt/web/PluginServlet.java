@@ -19,6 +19,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import io.hawt.util.metrics.Metrics;
 import org.jolokia.converter.Converters;
 import org.jolokia.converter.json.JsonConvertOptions;
 import org.slf4j.Logger;
@@ -52,7 +53,15 @@ public class PluginServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        long start = Metrics.start();
+        try {
+            writePlugins(response);
+        } finally {
+            Metrics.stop("servlet.PluginServlet", start);
+        }
+    }
 
+    private void writePlugins(HttpServletResponse response) throws IOException {
         response.setContentType("application/json");
         final PrintWriter out = response.getWriter();
 
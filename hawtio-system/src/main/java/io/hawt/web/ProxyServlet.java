@@ -3,22 +3,26 @@ package io.hawt.web;
 import io.hawt.system.Helpers;
 import io.hawt.system.ProxyWhitelist;
 import io.hawt.util.Strings;
+import io.hawt.util.metrics.Metrics;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.http.*;
-import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.AbortableHttpRequest;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIUtils;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLContextBuilder;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.HeaderGroup;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,7 +32,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.ConnectException;
@@ -39,9 +42,13 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An HTTP reverse proxy/gateway servlet. It is designed to be extended for customization
@@ -89,6 +96,19 @@ public class ProxyServlet extends HttpServlet {
     public static final String PROXY_WHITELIST = "proxyWhitelist";
     public static final String HAWTIO_PROXY_WHITELIST = "hawtio." + PROXY_WHITELIST;
 
+    /**
+     * How many milliseconds to cache the responses of Jolokia read, list and search requests for;
+     * caching is disabled unless this is greater than zero
+     */
+    public static final String PROXY_READ_CACHE_TTL = "proxyReadCacheTtl";
+    public static final String HAWTIO_PROXY_READ_CACHE_TTL = "hawtio." + PROXY_READ_CACHE_TTL;
+
+    private static final int READ_CACHE_MAX_ENTRIES = 1000;
+    private static final int READ_CACHE_MAX_ENTRY_BYTES = 1024 * 1024;
+    private static final int READ_CACHE_MAX_REQUEST_BYTES = 64 * 1024;
+
+    private static final long IDLE_CONNECTION_TIMEOUT = 60000;
+
     /* MISC */
 
     protected boolean doLog = false;
@@ -96,9 +116,10 @@ public class ProxyServlet extends HttpServlet {
     protected boolean acceptSelfSignedCerts = false;
 
     protected ProxyWhitelist whitelist;
+    protected JolokiaReadCache readCache;
 
     protected CloseableHttpClient proxyClient;
-    private CookieStore cookieStore;
+    protected SSLConnectionSocketFactory sslSocketFactory;
 
     @Override
     public String getServletInfo() {
@@ -115,6 +136,23 @@ public class ProxyServlet extends HttpServlet {
         }
         whitelist = new ProxyWhitelist(whitelistStr);
 
+        String readCacheTtl = servletConfig.getInitParameter(PROXY_READ_CACHE_TTL);
+        if (System.getProperty(HAWTIO_PROXY_READ_CACHE_TTL) != null) {
+            readCacheTtl = System.getProperty(HAWTIO_PROXY_READ_CACHE_TTL);
+        }
+        long ttl = 0;
+        if (Strings.isNotBlank(readCacheTtl)) {
+            try {
+                ttl = Long.parseLong(readCacheTtl.trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid value {} of {} so not caching proxied Jolokia read requests", readCacheTtl, PROXY_READ_CACHE_TTL);
+            }
+        }
+        if (ttl > 0) {
+            readCache = new JolokiaReadCache(ttl, READ_CACHE_MAX_ENTRIES, READ_CACHE_MAX_ENTRY_BYTES);
+            LOG.info("Caching proxied Jolokia read requests for {} ms", ttl);
+        }
+
         String doForwardIPString = servletConfig.getInitParameter(P_FORWARDEDFOR);
         if (doForwardIPString != null) {
             this.doForwardIP = Boolean.parseBoolean(doForwardIPString);
@@ -125,9 +163,11 @@ public class ProxyServlet extends HttpServlet {
             this.doLog = Boolean.parseBoolean(doLogStr);
         }
 
-        cookieStore = new BasicCookieStore();
+        // the cookies and connections are kept per console session (see ProxySession) so lets close the
+        // connections of sessions which have gone quiet
         HttpClientBuilder httpClientBuilder = HttpClients.custom()
-                .setDefaultCookieStore(cookieStore)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS)
                 .useSystemProperties();
 
         if (System.getProperty(PROXY_ACCEPT_SELF_SIGNED_CERTS) != null) {
@@ -140,9 +180,9 @@ public class ProxyServlet extends HttpServlet {
             try {
                 SSLContextBuilder builder = new SSLContextBuilder();
                 builder.loadTrustMaterial(null, (X509Certificate[] x509Certificates, String s) -> true);
-                SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(
+                sslSocketFactory = new SSLConnectionSocketFactory(
                         builder.build(), SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-                httpClientBuilder.setSSLSocketFactory(sslsf);
+                httpClientBuilder.setSSLSocketFactory(sslSocketFactory);
             } catch (NoSuchAlgorithmException e) {
                 throw new ServletException(e);
             } catch (KeyStoreException e) {
@@ -152,11 +192,21 @@ public class ProxyServlet extends HttpServlet {
             }
         }
 
+        configureHttpClient(httpClientBuilder);
         proxyClient = httpClientBuilder.build();
     }
 
+    /**
+     * Allows sub classes to customize the http client, e.g. its connection pool, before it is built
+     */
+    protected void configureHttpClient(HttpClientBuilder httpClientBuilder) {
+    }
+
     @Override
     public void destroy() {
+        if (whitelist != null) {
+            whitelist.close();
+        }
         try {
             proxyClient.close();
         } catch (IOException e) {
@@ -169,6 +219,16 @@ public class ProxyServlet extends HttpServlet {
     @Override
     protected void service(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
             throws ServletException, IOException {
+        long start = Metrics.start();
+        try {
+            proxy(servletRequest, servletResponse);
+        } finally {
+            Metrics.stop("proxy.request", start);
+        }
+    }
+
+    protected void proxy(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
+            throws ServletException, IOException {
         // Make the Request
         //note: we won't transfer the protocol version because I'm not sure it would truly be compatible
         ProxyDetails proxyDetails = parseProxyDetails(servletRequest);
@@ -178,6 +238,7 @@ public class ProxyServlet extends HttpServlet {
         }
         if (!whitelist.isAllowed(proxyDetails)) {
             LOG.debug("Rejecting {}", proxyDetails);
+            Metrics.increment("proxy.rejected");
             Helpers.doForbidden(servletResponse);
             return;
         }
@@ -195,13 +256,21 @@ public class ProxyServlet extends HttpServlet {
         }
 
         HttpRequest proxyRequest;
+        byte[] cacheableBody = null;
         //spec: RFC 2616, sec 4.3: either of these two headers signal that there is a message body.
         if (servletRequest.getHeader(HttpHeaders.CONTENT_LENGTH) != null ||
                 servletRequest.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
             HttpEntityEnclosingRequest eProxyRequest = new BasicHttpEntityEnclosingRequest(method, proxyRequestUri);
-            // Add the input entity (streamed)
-            //  note: we don't bother ensuring we close the servletInputStream since the container handles it
-            eProxyRequest.setEntity(new InputStreamEntity(servletRequest.getInputStream(), servletRequest.getContentLength()));
+            int contentLength = servletRequest.getContentLength();
+            if (readCache != null && "POST".equals(method) && contentLength >= 0 && contentLength <= READ_CACHE_MAX_REQUEST_BYTES) {
+                // small Jolokia requests are buffered so they can be looked up in the read cache
+                cacheableBody = IOUtils.toByteArray(servletRequest.getInputStream());
+                eProxyRequest.setEntity(new ByteArrayEntity(cacheableBody));
+            } else {
+                // Add the input entity (streamed)
+                //  note: we don't bother ensuring we close the servletInputStream since the container handles it
+                eProxyRequest.setEntity(new InputStreamEntity(servletRequest.getInputStream(), contentLength));
+            }
             proxyRequest = eProxyRequest;
         } else {
             proxyRequest = new BasicHttpRequest(method, proxyRequestUri);
@@ -218,21 +287,26 @@ public class ProxyServlet extends HttpServlet {
         }
 
         Header proxyAuthHeader = proxyRequest.getFirstHeader("Authorization");
-        if (proxyAuthHeader != null) {
-            String proxyAuth = proxyAuthHeader.getValue();
-            // if remote jolokia credentials have changed, we have to clear session cookies in http-client
-            HttpSession session = servletRequest.getSession();
-            if (session != null) {
-                String previousProxyCredentials = (String) session.getAttribute("proxy-credentials");
-                if (previousProxyCredentials != null && !previousProxyCredentials.equals(proxyAuth)) {
-                    cookieStore.clear();
-                }
-                session.setAttribute("proxy-credentials", proxyAuth);
-            }
-        }
+        // if remote jolokia credentials have changed, the cookies of the remote sessions of this user are cleared
+        ProxySession proxySession = ProxySession.get(servletRequest);
+        proxySession.useCredentials(proxyAuthHeader != null ? proxyAuthHeader.getValue() : null);
+        HttpClientContext proxyContext = proxySession.createContext();
 
         setXForwardedForHeader(servletRequest, proxyRequest);
 
+        if (readCache != null) {
+            String credentials = proxyAuthHeader != null ? proxyAuthHeader.getValue() : null;
+            if (credentials == null && proxySession.hasCookies()) {
+                // the remote agent may know the user from a session cookie
+                credentials = "session " + proxySession.getId();
+            }
+            String cacheKey = JolokiaReadCache.cacheKey(method, proxyRequestUri, credentials, cacheableBody);
+            if (cacheKey != null) {
+                proxyCached(servletRequest, servletResponse, proxyRequest, targetUriObj, proxyContext, cacheKey);
+                return;
+            }
+        }
+
         HttpResponse proxyResponse = null;
         try {
 
@@ -241,7 +315,12 @@ public class ProxyServlet extends HttpServlet {
                 log("proxy " + method + " uri: " + servletRequest.getRequestURI() + " -- " + proxyRequest.getRequestLine().getUri());
             }
             LOG.debug("proxy {} uri: {} -- {}", method, servletRequest.getRequestURI(), proxyRequest.getRequestLine().getUri());
-            proxyResponse = proxyClient.execute(URIUtils.extractHost(targetUriObj), proxyRequest);
+            long upstreamStart = Metrics.start();
+            try {
+                proxyResponse = proxyClient.execute(URIUtils.extractHost(targetUriObj), proxyRequest, proxyContext);
+            } finally {
+                Metrics.stop("proxy.upstream", upstreamStart);
+            }
 
             // Process the response
             int statusCode = proxyResponse.getStatusLine().getStatusCode();
@@ -268,22 +347,7 @@ public class ProxyServlet extends HttpServlet {
             copyResponseEntity(proxyResponse, servletResponse);
 
         } catch (Exception e) {
-            //abort request, according to best practice with HttpClient
-            if (proxyRequest instanceof AbortableHttpRequest) {
-                AbortableHttpRequest abortableHttpRequest = (AbortableHttpRequest) proxyRequest;
-                abortableHttpRequest.abort();
-            }
-            // Exception needs to be suppressed for security reason
-            LOG.debug("Proxy to " + proxyRequestUri + " failed", e);
-            if (e instanceof ConnectException || e instanceof UnknownHostException) {
-                // Target host refused connection or doesn't exist
-                servletResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            } else if (e instanceof ServletException) {
-                // Redirect / Not Modified failed
-                servletResponse.sendError(HttpServletResponse.SC_BAD_GATEWAY, e.getMessage());
-            } else {
-                servletResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
-            }
+            handleProxyFailure(proxyRequest, proxyRequestUri, e, servletResponse);
 
         } finally {
             // make sure the entire entity was consumed, so the connection is released
@@ -294,6 +358,93 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
+    protected void handleProxyFailure(HttpRequest proxyRequest, String proxyRequestUri, Exception e,
+                                      HttpServletResponse servletResponse) throws IOException {
+        //abort request, according to best practice with HttpClient
+        if (proxyRequest instanceof AbortableHttpRequest) {
+            AbortableHttpRequest abortableHttpRequest = (AbortableHttpRequest) proxyRequest;
+            abortableHttpRequest.abort();
+        }
+        // Exception needs to be suppressed for security reason
+        Metrics.increment("proxy.failed");
+        LOG.debug("Proxy to " + proxyRequestUri + " failed", e);
+        if (e instanceof ConnectException || e instanceof UnknownHostException) {
+            // Target host refused connection or doesn't exist
+            servletResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        } else if (e instanceof ServletException) {
+            // Redirect / Not Modified failed
+            servletResponse.sendError(HttpServletResponse.SC_BAD_GATEWAY, e.getMessage());
+        } else {
+            servletResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Answers an idempotent Jolokia request from the read cache, sharing the upstream call with any identical
+     * requests which are in flight
+     */
+    protected void proxyCached(HttpServletRequest servletRequest, HttpServletResponse servletResponse,
+                               final HttpRequest proxyRequest, final URI targetUriObj,
+                               final HttpContext proxyContext, String cacheKey)
+            throws ServletException, IOException {
+        String proxyRequestUri = proxyRequest.getRequestLine().getUri();
+        JolokiaReadCache.CachedResponse cached;
+        try {
+            cached = readCache.get(cacheKey, new Callable<JolokiaReadCache.CachedResponse>() {
+                @Override
+                public JolokiaReadCache.CachedResponse call() throws Exception {
+                    return executeAndBuffer(proxyRequest, targetUriObj, proxyContext);
+                }
+            });
+        } catch (Exception e) {
+            handleProxyFailure(proxyRequest, proxyRequestUri, e, servletResponse);
+            return;
+        }
+
+        int statusCode = cached.getStatus();
+        BasicHttpResponse proxyResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, cached.getReason());
+        for (String[] header : cached.getHeaders()) {
+            proxyResponse.addHeader(header[0], header[1]);
+        }
+        if (statusCode == 401 || statusCode == 403) {
+            LOG.debug("Authentication Failed on remote server {}", proxyRequestUri);
+        } else if (doResponseRedirectOrNotModifiedLogic(servletRequest, servletResponse, proxyResponse, statusCode, targetUriObj)) {
+            return;
+        }
+        //noinspection deprecation
+        servletResponse.setStatus(statusCode, cached.getReason());
+        copyResponseHeaders(proxyResponse, servletResponse);
+        servletResponse.getOutputStream().write(cached.getBody());
+    }
+
+    protected JolokiaReadCache.CachedResponse executeAndBuffer(HttpRequest proxyRequest, URI targetUriObj,
+                                                               HttpContext proxyContext) throws IOException {
+        LOG.debug("proxy cacheable {} uri: {}", proxyRequest.getRequestLine().getMethod(), proxyRequest.getRequestLine().getUri());
+        HttpResponse proxyResponse = null;
+        long upstreamStart = Metrics.start();
+        try {
+            proxyResponse = proxyClient.execute(URIUtils.extractHost(targetUriObj), proxyRequest, proxyContext);
+            List<String[]> headers = new ArrayList<>();
+            for (Header header : proxyResponse.getAllHeaders()) {
+                // the body is sent in one piece so its length and encoding are set by the servlet container
+                if (hopByHopHeaders.containsHeader(header.getName())
+                        || header.getName().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                    continue;
+                }
+                headers.add(new String[]{header.getName(), header.getValue()});
+            }
+            HttpEntity entity = proxyResponse.getEntity();
+            byte[] body = entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+            return new JolokiaReadCache.CachedResponse(proxyResponse.getStatusLine().getStatusCode(),
+                    proxyResponse.getStatusLine().getReasonPhrase(), headers, body);
+        } finally {
+            Metrics.stop("proxy.upstream", upstreamStart);
+            if (proxyResponse != null) {
+                EntityUtils.consumeQuietly(proxyResponse.getEntity());
+            }
+        }
+    }
+
     protected ProxyDetails parseProxyDetails(HttpServletRequest servletRequest) {
         return new ProxyDetails(servletRequest);
     }
@@ -383,7 +534,7 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
-    private void setXForwardedForHeader(HttpServletRequest servletRequest,
+    protected void setXForwardedForHeader(HttpServletRequest servletRequest,
                                         HttpRequest proxyRequest) {
         String headerName = "X-Forwarded-For";
         if (doForwardIP) {
@@ -0,0 +1,104 @@
+package io.hawt.web;
+
+import java.io.Serializable;
+import java.util.UUID;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCookieStore;
+
+/**
+ * The state of the {@link ProxyServlet} for a single console session: the cookies the remote agents have set,
+ * so that they can reuse the sessions they authenticated rather than logging in on every call, and the token
+ * which binds the kept alive connections to the remote agents to this session.
+ * <p/>
+ * The http client only reuses a connection for requests with the same user token, so users never share a
+ * connection which a remote agent may have associated with someone else's credentials. Requests without a
+ * console session, such as those of scripts or when authentication is disabled, get a stateless proxy session
+ * for the single request, whose connections are only shared by requests sending the same credentials.
+ */
+public class ProxySession implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String SESSION_ATTRIBUTE = "proxy-session";
+
+    private final String id;
+    private final BasicCookieStore cookieStore = new BasicCookieStore();
+    private String credentials;
+
+    private ProxySession(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the proxy state of the session of the request, creating it if need be; a request without a session
+     * gets a stateless proxy session rather than a new session on every call
+     */
+    public static ProxySession get(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return new ProxySession(null);
+        }
+        ProxySession answer = (ProxySession) session.getAttribute(SESSION_ATTRIBUTE);
+        if (answer == null) {
+            synchronized (session) {
+                answer = (ProxySession) session.getAttribute(SESSION_ATTRIBUTE);
+                if (answer == null) {
+                    answer = new ProxySession(UUID.randomUUID().toString());
+                    session.setAttribute(SESSION_ATTRIBUTE, answer);
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Records the credentials sent to the remote agents, dropping the cookies of this session when they change
+     * as the remote sessions belong to the previous credentials. Only a hash of the credentials is kept, as the
+     * session may be serialized and replicated
+     */
+    public synchronized void useCredentials(String credentials) {
+        if (credentials != null) {
+            credentials = DigestUtils.sha256Hex(credentials);
+        }
+        if (this.credentials != null && credentials != null && !this.credentials.equals(credentials)) {
+            cookieStore.clear();
+        }
+        if (credentials != null) {
+            this.credentials = credentials;
+        }
+    }
+
+    /**
+     * Creates the context to execute a proxied request of this session with
+     */
+    public HttpClientContext createContext() {
+        HttpClientContext context = HttpClientContext.create();
+        context.setCookieStore(cookieStore);
+        context.setUserToken(id != null ? id : getCredentialsToken());
+        return context;
+    }
+
+    private synchronized String getCredentialsToken() {
+        return credentials != null ? "credentials " + credentials : null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public CookieStore getCookieStore() {
+        return cookieStore;
+    }
+
+    /**
+     * Returns true if a remote agent has set a cookie for this session
+     */
+    public boolean hasCookies() {
+        return !cookieStore.getCookies().isEmpty();
+    }
+}
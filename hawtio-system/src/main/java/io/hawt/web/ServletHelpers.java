@@ -1,6 +1,9 @@
 package io.hawt.web;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -105,37 +108,39 @@ public class ServletHelpers {
 
 
     public static String generateCsvString(Map xlData) {
-        int idx1 = 0, idx2 = 0;
-        StringBuffer buffer = new StringBuffer();
-        Set columns = (Set) xlData.get("columns");
-        List rows = (List) xlData.get("rows");
-        for (Object column : columns) {
-            buffer.append(wrapWithDoubleQuotes(column.toString()));
-            buffer = appendComma(buffer, columns.size(), idx1);
-            idx1++;
+        StringWriter writer = new StringWriter();
+        try {
+            writeCsv(xlData, writer);
+        } catch (IOException e) {
+            // cannot happen with a string writer
+            throw new IllegalStateException(e);
         }
-        idx1 = 0;
+        return writer.toString();
+    }
 
-        buffer.append("\n");
+    /**
+     * Writes the columns and rows of the table as CSV a row at a time
+     */
+    public static void writeCsv(Map xlData, Writer out) throws IOException {
+        Set columns = (Set) xlData.get("columns");
+        List rows = (List) xlData.get("rows");
+        writeCsvRow(out, columns, null);
         for (Object row : rows) {
-            Map keyValuePair = (Map) row;
-            for (Object column : columns) {
-                buffer.append(wrapWithDoubleQuotes(keyValuePair.get(column.toString()).toString()));
-                buffer = appendComma(buffer, columns.size(), idx2);
-                idx2++;
-            }
-            idx2 = 0;
-            buffer.append("\n");
+            writeCsvRow(out, columns, (Map) row);
         }
-        return buffer.toString();
-    }
-
-    private static String wrapWithDoubleQuotes(String string) {
-        return "\"" + string + "\"";
     }
 
-    private static StringBuffer appendComma(StringBuffer buffer, int size, int index) {
-        return (size == (index + 1)) ? buffer : buffer.append(",");
+    private static void writeCsvRow(Writer out, Set columns, Map keyValuePair) throws IOException {
+        int idx = 0;
+        for (Object column : columns) {
+            out.write('"');
+            out.write(keyValuePair != null ? keyValuePair.get(column.toString()).toString() : column.toString());
+            out.write('"');
+            if (++idx < columns.size()) {
+                out.write(',');
+            }
+        }
+        out.write('\n');
     }
 
     public static List flatten(List list) {
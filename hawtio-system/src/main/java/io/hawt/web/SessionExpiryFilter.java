@@ -2,9 +2,6 @@ package io.hawt.web;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Arrays;
-import java.util.regex.Pattern;
-import java.util.List;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -19,6 +16,7 @@ import javax.servlet.http.HttpSession;
 import io.hawt.system.Authenticator;
 import io.hawt.system.ConfigManager;
 import io.hawt.system.Helpers;
+import io.hawt.util.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,32 +27,138 @@ public class SessionExpiryFilter implements Filter {
 
     private static final transient Logger LOG = LoggerFactory.getLogger(SessionExpiryFilter.class);
 
-    private static final String ignoredPaths[] = {"jolokia", "proxy"};
-    private List<String> ignoredPathList;
+    public static final String HAWTIO_SESSION_ACCESS_GRANULARITY = "hawtio.sessionAccessGranularity";
+
+    private static final long DEFAULT_SESSION_ACCESS_GRANULARITY = 5000;
+
+    /**
+     * The sub context of a request URI, i.e. the path segment following the context path
+     */
+    enum SubContext {
+        TOP_LEVEL(null, false, false),
+        REFRESH("refresh", false, false),
+        JOLOKIA("jolokia", true, true),
+        PROXY("proxy", true, true),
+        BULK_PROXY("bulk-proxy", true, true),
+        USER("user", true, false),
+        EXPORT_CONTEXT("exportContext", true, false),
+        CONTEXT_FORMATTER("contextFormatter", true, false),
+        UPLOAD("upload", true, false),
+        OTHER(null, false, false);
+
+        private static final SubContext[] NAMED = {REFRESH, JOLOKIA, PROXY, BULK_PROXY, USER, EXPORT_CONTEXT, CONTEXT_FORMATTER, UPLOAD};
+
+        private final String name;
+        private final boolean secured;
+        private final boolean ignored;
+
+        SubContext(String name, boolean secured, boolean ignored) {
+            this.name = name;
+            this.secured = secured;
+            this.ignored = ignored;
+        }
+
+        /**
+         * Whether requests to the sub context are denied without a session when authentication is enabled
+         */
+        boolean isSecured() {
+            return secured;
+        }
+
+        /**
+         * Whether requests to the sub context don't count as user activity once the session has been accessed
+         */
+        boolean isIgnored() {
+            return ignored;
+        }
+
+        /**
+         * Classifies the request URI in place, without splitting it or creating any substrings
+         */
+        static SubContext of(String uri) {
+            int start = uri.startsWith("/") ? 1 : 0;
+            int end = uri.length();
+            if (end > start && uri.charAt(end - 1) == '/') {
+                end--;
+            }
+            int slash = uri.indexOf('/', start);
+            if (slash < 0 || slash >= end) {
+                return TOP_LEVEL;
+            }
+            int segmentStart = slash + 1;
+            int segmentEnd = uri.indexOf('/', segmentStart);
+            if (segmentEnd < 0 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+            int length = segmentEnd - segmentStart;
+            if (length == 0 && isOnlySlashes(uri, segmentEnd, end)) {
+                // nothing but empty segments follow the context path
+                return TOP_LEVEL;
+            }
+            for (SubContext subContext : NAMED) {
+                if (subContext.name.length() == length && uri.regionMatches(segmentStart, subContext.name, 0, length)) {
+                    return subContext;
+                }
+            }
+            return OTHER;
+        }
+
+        private static boolean isOnlySlashes(String uri, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (uri.charAt(i) != '/') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private ServletContext context;
     private boolean noCredentials401;
+    private long sessionAccessGranularity = DEFAULT_SESSION_ACCESS_GRANULARITY;
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
-        ignoredPathList = Arrays.asList(ignoredPaths);
         context = filterConfig.getServletContext();
 
         ConfigManager config = (ConfigManager) context.getAttribute("ConfigManager");
         if (config != null) {
             this.noCredentials401 = Boolean.parseBoolean(config.get("noCredentials401", "false"));
+            this.sessionAccessGranularity = parseGranularity(config.get("sessionAccessGranularity", null));
         }
 
         // Override if defined as JVM system property
         if (System.getProperty(AuthenticationFilter.HAWTIO_NO_CREDENTIALS_401) != null) {
             this.noCredentials401 = Boolean.getBoolean(AuthenticationFilter.HAWTIO_NO_CREDENTIALS_401);
         }
+        if (System.getProperty(HAWTIO_SESSION_ACCESS_GRANULARITY) != null) {
+            this.sessionAccessGranularity = parseGranularity(System.getProperty(HAWTIO_SESSION_ACCESS_GRANULARITY));
+        }
+        LOG.debug("Session LastAccess granularity: {} ms", sessionAccessGranularity);
+    }
+
+    private static long parseGranularity(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_SESSION_ACCESS_GRANULARITY;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid session access granularity: {}, using {} ms", value, DEFAULT_SESSION_ACCESS_GRANULARITY);
+            return DEFAULT_SESSION_ACCESS_GRANULARITY;
+        }
     }
 
     @Override
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
         if (servletRequest instanceof HttpServletRequest
                 && servletResponse instanceof HttpServletResponse) {
-            process((HttpServletRequest) servletRequest, (HttpServletResponse) servletResponse, filterChain);
+            TimedFilterChain timedChain = new TimedFilterChain("filter.SessionExpiryFilter", filterChain);
+            try {
+                process((HttpServletRequest) servletRequest, (HttpServletResponse) servletResponse, timedChain);
+            } finally {
+                timedChain.done();
+            }
         } else {
             filterChain.doFilter(servletRequest, servletResponse);
         }
@@ -71,9 +175,16 @@ public class SessionExpiryFilter implements Filter {
         }
     }
 
-    private void updateLastAccess(HttpSession session, long now) {
+    /**
+     * Updates LastAccess at most once per granularity interval, as every write of a session attribute may cause the
+     * session to be replicated in a clustered container
+     */
+    private void updateLastAccess(HttpSession session, Long lastAccess, long now) {
+        if (lastAccess != null && now - lastAccess < sessionAccessGranularity && now >= lastAccess) {
+            return;
+        }
         session.setAttribute("LastAccess", now);
-        LOG.debug("Reset LastAccess to: {}", session.getAttribute("LastAccess"));
+        LOG.debug("Reset LastAccess to: {}", now);
     }
 
     private void process(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
@@ -85,26 +196,17 @@ public class SessionExpiryFilter implements Filter {
         HttpSession session = request.getSession(false);
         boolean enabled = (boolean) context.getAttribute("authenticationEnabled");
         String uri = request.getRequestURI();
-        if (uri.startsWith("/")) {
-            uri = uri.substring(1);
-        }
-        if (uri.endsWith("/")) {
-            uri = uri.substring(0, uri.length() - 1);
-        }
-        String[] uriParts = Pattern.compile("/").split(uri);
+        SubContext subContext = SubContext.of(uri);
         // pass along if it's the top-level context
-        if (uriParts.length == 1) {
+        if (subContext == SubContext.TOP_LEVEL) {
             if (session != null) {
-                long now = System.currentTimeMillis();
-                updateLastAccess(session, now);
+                updateLastAccess(session, (Long) session.getAttribute("LastAccess"), System.currentTimeMillis());
             }
             chain.doFilter(request, response);
             return;
         }
-        String myContext = uriParts[0];
-        String subContext = uriParts[1];
         if (session == null || session.getMaxInactiveInterval() < 0 ) {
-            if (subContext.equals("refresh") && !enabled) {
+            if (subContext == SubContext.REFRESH && !enabled) {
                 LOG.debug("Authentication disabled, received refresh response, responding with ok");
                 writeOk(response);
             } else {
@@ -116,20 +218,15 @@ public class SessionExpiryFilter implements Filter {
                     // let's pass it further the filter chain - if authentication will fail, user will get 403 anyway
                     chain.doFilter(request, response);
                 } else {
-                    if (noCredentials401 && subContext.equals("jolokia")) {
+                    if (noCredentials401 && subContext == SubContext.JOLOKIA) {
                         LOG.debug("Authentication enabled, noCredentials401 is true, allowing request for {}",
-                                subContext);
+                                uri);
                         chain.doFilter(request, response);
-                    } else if (subContext.equals("jolokia") ||
-                        subContext.equals("proxy") ||
-                        subContext.equals("user") ||
-                        subContext.equals("exportContext") ||
-                        subContext.equals("contextFormatter") ||
-                        subContext.equals("upload")) {
-                        LOG.debug("Authentication enabled, denying request for {}", subContext);
+                    } else if (subContext.isSecured()) {
+                        LOG.debug("Authentication enabled, denying request for {}", uri);
                         Helpers.doForbidden(response); 
                     } else {
-                        LOG.debug("Authentication enabled, but allowing request for {}", subContext);
+                        LOG.debug("Authentication enabled, but allowing request for {}", uri);
                         chain.doFilter(request, response);
                     }
                 }
@@ -138,27 +235,28 @@ public class SessionExpiryFilter implements Filter {
         }
         int maxInactiveInterval = session.getMaxInactiveInterval();
         long now = System.currentTimeMillis();
-        if (session.getAttribute("LastAccess") != null) {
-          long lastAccess = (long) session.getAttribute("LastAccess");
+        Long lastAccess = (Long) session.getAttribute("LastAccess");
+        if (lastAccess != null) {
           long remainder = (now - lastAccess) / 1000;
           LOG.debug("Session expiry: {}, duration since last access: {}", maxInactiveInterval, remainder);
           if (remainder > maxInactiveInterval) {
             LOG.info("Expiring session due to inactivity");
+            Metrics.increment("filter.SessionExpiryFilter.expired");
             session.invalidate();
             Helpers.doForbidden(response);
             return;
           }
         }
-        if (subContext.equals("refresh")) {
-            updateLastAccess(session, now);
+        if (subContext == SubContext.REFRESH) {
+            updateLastAccess(session, lastAccess, now);
             writeOk(response);
             return;
         }
-        LOG.debug("Top level context: {} subContext: {}", myContext, subContext);
-        if (ignoredPathList.contains(subContext) && session.getAttribute("LastAccess") != null) {
+        LOG.debug("Request URI: {} subContext: {}", uri, subContext);
+        if (subContext.isIgnored() && lastAccess != null) {
             LOG.debug("Not updating LastAccess");
         } else {
-            updateLastAccess(session, now);
+            updateLastAccess(session, lastAccess, now);
         }
         chain.doFilter(request, response);
     }
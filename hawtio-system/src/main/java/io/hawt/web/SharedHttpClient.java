@@ -0,0 +1,45 @@
+package io.hawt.web;
+
+import java.io.IOException;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pooled http client shared by the servlets which call the Spring Batch server, so that they reuse connections
+ * rather than creating a client for each request. The client is created by the first servlet which acquires it
+ * and closed when the last one releases it.
+ */
+class SharedHttpClient {
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    private static CloseableHttpClient client;
+    private static int users;
+
+    static synchronized CloseableHttpClient acquire() {
+        if (client == null) {
+            client = HttpClients.custom()
+                    .useSystemProperties()
+                    .build();
+        }
+        users++;
+        return client;
+    }
+
+    static synchronized void release() {
+        if (users == 0) {
+            return;
+        }
+        if (--users == 0) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close http client: " + e, e);
+            }
+            client = null;
+        }
+    }
+}
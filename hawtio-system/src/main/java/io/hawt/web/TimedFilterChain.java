@@ -0,0 +1,43 @@
+package io.hawt.web;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import io.hawt.util.metrics.Metrics;
+
+/**
+ * A {@link FilterChain} wrapper which records the time a filter spends on a request before passing it
+ * along the chain, so that only the filter's own overhead ends up in the {@link Metrics}.
+ * <p/>
+ * Filters must call {@link #done()} once they have finished with the request so that requests which
+ * are rejected by the filter (and so never reach the rest of the chain) are recorded too.
+ */
+public class TimedFilterChain implements FilterChain {
+
+    private final String name;
+    private final FilterChain chain;
+    private final long start;
+    private boolean recorded;
+
+    public TimedFilterChain(String name, FilterChain chain) {
+        this.name = name;
+        this.chain = chain;
+        this.start = Metrics.start();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+        done();
+        chain.doFilter(request, response);
+    }
+
+    public void done() {
+        if (!recorded) {
+            recorded = true;
+            Metrics.stop(name, start);
+        }
+    }
+}
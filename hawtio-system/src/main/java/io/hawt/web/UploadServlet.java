@@ -2,10 +2,14 @@ package io.hawt.web;
 
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -13,23 +17,34 @@ import javax.servlet.http.HttpServletResponse;
 
 import io.hawt.jmx.UploadManager;
 import io.hawt.util.Strings;
-import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.ProgressListener;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.fileupload.util.Streams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Accepts multipart file uploads, streaming each file straight to the upload directory while it is checked
+ * against the {@link GlobalFileUploadFilter}, so that large uploads never have to be held in memory.
+ * <p/>
+ * Large files can be uploaded in chunks, each chunk being a multipart request with a
+ * <code>Content-Range: bytes first-last/total</code> header. The chunks are collected in
+ * {@link UploadManager#getPartialUploadDirectory()} until the file is complete; an interrupted upload is resumed
+ * by asking for the size received so far with a GET of <code>?file=name</code>.
  */
 public class UploadServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
     private static final transient Logger LOG = LoggerFactory.getLogger(UploadServlet.class);
 
+    private static final int BUFFER_SIZE = 8192;
+    private static final long PARTIAL_UPLOAD_EXPIRY = TimeUnit.DAYS.toMillis(1);
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
+
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         String uploadDirectory = UploadManager.UPLOAD_DIRECTORY;
@@ -39,6 +54,21 @@ public class UploadServlet extends HttpServlet {
         uploadFiles(request, response, uploadDir, globalFilter.getFilterConfig());
     }
 
+    /**
+     * Returns how much of a chunked upload has been received so far so that it can be resumed
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String fileName = Strings.sanitize(request.getParameter("file"));
+        if (Strings.isBlank(fileName)) {
+            super.doGet(request, response);
+            return;
+        }
+        File partial = getPartialFile(request, fileName);
+        response.setContentType("application/json");
+        response.getWriter().write("{\"file\":\"" + fileName + "\",\"size\":" + (partial.isFile() ? partial.length() : 0) + "}");
+    }
+
     protected List<File> uploadFiles(HttpServletRequest request, HttpServletResponse response,
                                      File uploadDir, List<GlobalFileUploadFilter.MagicNumberFileFilter> filters) throws IOException, ServletException {
         response.setContentType("text/html");
@@ -47,17 +77,23 @@ public class UploadServlet extends HttpServlet {
         boolean isMultipart = ServletFileUpload.isMultipartContent(request);
 
         if (isMultipart) {
-            ServletContext context = this.getServletConfig().getServletContext();
             if (!uploadDir.exists()) {
-                LOG.info("Creating directory {}" + uploadDir);
+                LOG.info("Creating directory {}", uploadDir);
                 if (!uploadDir.mkdirs()) {
                     LOG.warn("Failed to create upload directory at {}", uploadDir);
                 }
             }
-            DiskFileItemFactory factory = UploadManager.newDiskFileItemFactory(context, uploadDir);
-            ServletFileUpload upload = new ServletFileUpload(factory);
-            // Setting max file size allowed from config
-            upload.setFileSizeMax(GlobalFileUploadFilter.getMaxFileSizeAllowed(filters));
+            // the items are streamed rather than buffered by a file item factory
+            ServletFileUpload upload = new ServletFileUpload();
+            // Setting max file size allowed from config, which is enforced as the files are read
+            long maxFileSize = GlobalFileUploadFilter.getMaxFileSizeAllowed(filters);
+            upload.setFileSizeMax(maxFileSize);
+
+            ContentRange range = ContentRange.parse(request.getHeader("Content-Range"));
+            if (range != null && maxFileSize > 0 && range.total > maxFileSize) {
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "File exceeds its maximum permitted size of bytes.");
+                return uploadedFiles;
+            }
 
             String targetDirectory = null;
             List<File> files = new ArrayList<File>();
@@ -71,7 +107,7 @@ public class UploadServlet extends HttpServlet {
                     long nowMBytesRead = pBytesRead / 1024 / 1024;
                     long lengthMBytes = pContentLength / 1024 / 1024;
                     long anEighth = lengthMBytes / 8;
-                    if (nowMBytesRead > mBytesRead && nowMBytesRead % anEighth == 0) {
+                    if (nowMBytesRead > mBytesRead && anEighth > 0 && nowMBytesRead % anEighth == 0) {
                         mBytesRead = nowMBytesRead;
                         LOG.debug("On item {}, read {}mb, total: {}mb", new Object[]{pItems, mBytesRead, lengthMBytes});
                         out.write("<p>item: " + pItems + " read:" + mBytesRead + "mb total: " + lengthMBytes + "mb</p>");
@@ -81,50 +117,65 @@ public class UploadServlet extends HttpServlet {
 
 
             try {
-                List<FileItem> items = upload.parseRequest(request);
-                if (items.size() > GlobalFileUploadFilter.ALLOWED_NUMBER_OF_UPLOADS) {
-                    response.sendError(HttpServletResponse.SC_FORBIDDEN, "Uploaded files exceed the maximum allowed number of files");
-                }
+                FileItemIterator items = upload.getItemIterator(request);
+                int itemCount = 0;
+                while (items.hasNext()) {
+                    FileItemStream item = items.next();
+                    if (++itemCount > GlobalFileUploadFilter.ALLOWED_NUMBER_OF_UPLOADS) {
+                        deleteAll(files);
+                        response.sendError(HttpServletResponse.SC_FORBIDDEN, "Uploaded files exceed the maximum allowed number of files");
+                        return uploadedFiles;
+                    }
 
-                for (FileItem item : items) {
-                    if (fileAllowed(item, filters)) {
-                        if (item.isFormField()) {
-                            String name = item.getFieldName();
-                            String value = item.getString();
-                            LOG.info("Got form field {} with value {}", name, value);
-                            if (name.equals("parent")) {
-                                targetDirectory = value;
-                            }
-                        } else {
-                            String fieldName = item.getFieldName();
-                            String fileName = item.getName();
-                            String contentType = item.getContentType();
-                            long sizeInBytes = item.getSize();
+                    if (item.isFormField()) {
+                        String name = item.getFieldName();
+                        String value;
+                        try (InputStream in = item.openStream()) {
+                            value = Streams.asString(in);
+                        }
+                        if (!GlobalFileUploadFilter.accept(value.getBytes(), filters)) {
+                            deleteAll(files);
+                            throw new RuntimeException("File is not allowed to be uploaded");
+                        }
+                        LOG.info("Got form field {} with value {}", name, value);
+                        if (name.equals("parent")) {
+                            targetDirectory = value;
+                        }
+                    } else {
+                        String fieldName = item.getFieldName();
+                        String fileName = item.getName();
+                        String contentType = item.getContentType();
 
-                            fileName = Strings.sanitize(fileName);
+                        fileName = Strings.sanitize(fileName);
 
-                            LOG.info("Got file upload, fieldName: {} fileName: {} contentType: {} size: {}", new Object[]{fieldName, fileName, contentType, sizeInBytes});
+                        LOG.info("Got file upload, fieldName: {} fileName: {} contentType: {}", new Object[]{fieldName, fileName, contentType});
 
-                            if (fileName.equals("")) {
-                                LOG.info("Skipping field " + fieldName + " no filename given");
-                                continue;
-                            }
-                            File target = new File(uploadDir, fileName);
-
-                            try {
-                                item.write(target);
-                                files.add(target);
-                                LOG.info("Wrote to file: {}", target.getAbsoluteFile());
-                            } catch (Exception e) {
-                                LOG.warn("Failed to write to {} due to {}", target, e);
-                                //throw new RuntimeException(e);
+                        if (fileName == null || fileName.equals("")) {
+                            LOG.info("Skipping field " + fieldName + " no filename given");
+                            continue;
+                        }
+
+                        File target;
+                        if (range != null) {
+                            target = receiveChunk(request, response, item, uploadDir, fileName, range, filters);
+                            if (response.isCommitted()) {
+                                // the chunk was rejected
+                                return uploadedFiles;
                             }
+                        } else {
+                            target = receiveFile(item, uploadDir, fileName, filters, files);
+                        }
+                        if (target != null) {
+                            files.add(target);
+                            LOG.info("Wrote to file: {}", target.getAbsoluteFile());
                         }
-                    } else {
-                        throw new RuntimeException("File is not allowed to be uploaded");
                     }
                 }
+            } catch (FileUploadBase.FileUploadIOException e) {
+                deleteAll(files);
+                throw new RuntimeException("Failed accepting file uploads: ", e.getCause());
             } catch (FileUploadException e) {
+                deleteAll(files);
                 throw new RuntimeException("Failed accepting file uploads: ", e);
             }
 
@@ -157,11 +208,168 @@ public class UploadServlet extends HttpServlet {
         return uploadedFiles;
     }
 
-    private boolean fileAllowed(FileItem fileItem, List<GlobalFileUploadFilter.MagicNumberFileFilter> filters) throws IOException {
-        InputStream inputStream = fileItem.getInputStream();
-        byte[] fileContent = IOUtils.toByteArray(inputStream, fileItem.getSize());
-        boolean result = GlobalFileUploadFilter.accept(fileContent, filters);
-        inputStream.close();
-        return result;
+    /**
+     * Writes the file to a temporary file in the upload directory, inspecting it as it goes, and then renames it
+     * to its name if it is allowed. Each upload gets its own temporary file so that concurrent uploads of the same
+     * name do not write to the same file.
+     */
+    protected File receiveFile(FileItemStream item, File uploadDir, String fileName,
+                               List<GlobalFileUploadFilter.MagicNumberFileFilter> filters, List<File> files) throws IOException {
+        File temp = File.createTempFile(".upload-", ".tmp", uploadDir);
+        File target = new File(uploadDir, fileName);
+        GlobalFileUploadFilter.ContentInspector inspector = new GlobalFileUploadFilter.ContentInspector(filters);
+        try {
+            try (InputStream in = item.openStream(); OutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    inspector.update(buffer, 0, count);
+                    out.write(buffer, 0, count);
+                }
+            }
+        } catch (FileUploadBase.FileUploadIOException e) {
+            // a limit was exceeded
+            delete(temp);
+            throw e;
+        } catch (IOException e) {
+            delete(temp);
+            LOG.warn("Failed to write to {} due to {}", target, e);
+            return null;
+        }
+
+        LOG.info("Received file: {} size: {}", fileName, inspector.getLength());
+        if (!inspector.isAccepted(temp)) {
+            delete(temp);
+            deleteAll(files);
+            throw new RuntimeException("File is not allowed to be uploaded");
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            delete(temp);
+            LOG.warn("Failed to write to {} due to {}", target, e);
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * Appends a chunk of a file to its partial upload, returning the file once the last chunk has been received
+     * and the whole file is allowed or null if more chunks are to come
+     */
+    protected File receiveChunk(HttpServletRequest request, HttpServletResponse response, FileItemStream item,
+                                File uploadDir, String fileName, ContentRange range,
+                                List<GlobalFileUploadFilter.MagicNumberFileFilter> filters) throws IOException {
+        File partial = getPartialFile(request, fileName);
+        File partialDir = partial.getParentFile();
+        if (!partialDir.exists() && !partialDir.mkdirs()) {
+            LOG.warn("Failed to create partial upload directory at {}", partialDir);
+        }
+        if (range.first == 0) {
+            expirePartialUploads(partialDir);
+            delete(partial);
+        }
+        long received = partial.isFile() ? partial.length() : 0;
+        if (range.first != received) {
+            // the client has to resume from what we have got
+            if (received > 0) {
+                response.setHeader("Range", "bytes=0-" + (received - 1));
+            }
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+                    "Expected the chunk starting at byte " + received);
+            return null;
+        }
+
+        long chunkSize = range.last - range.first + 1;
+        long written = 0;
+        try (InputStream in = item.openStream(); OutputStream out = new FileOutputStream(partial, true)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                written += count;
+                if (written > chunkSize) {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The chunk is larger than its range");
+                    delete(partial);
+                    return null;
+                }
+                out.write(buffer, 0, count);
+            }
+        }
+
+        if (received + written < range.total) {
+            LOG.debug("Received {} of {} bytes of {}", new Object[]{received + written, range.total, fileName});
+            return null;
+        }
+
+        LOG.info("Received all {} bytes of chunked upload {}", range.total, fileName);
+        if (!GlobalFileUploadFilter.accept(partial, filters)) {
+            delete(partial);
+            throw new RuntimeException("File is not allowed to be uploaded");
+        }
+        File target = new File(uploadDir, fileName);
+        Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * The chunks of a file are kept per session so that users uploading files of the same name do not clash
+     */
+    protected File getPartialFile(HttpServletRequest request, String fileName) {
+        String session = Strings.sanitize(request.getSession().getId());
+        return new File(UploadManager.getPartialUploadDirectory(), session + "-" + fileName + ".part");
+    }
+
+    private void expirePartialUploads(File partialDir) {
+        File[] partials = partialDir.listFiles();
+        if (partials == null) {
+            return;
+        }
+        long expired = System.currentTimeMillis() - PARTIAL_UPLOAD_EXPIRY;
+        for (File partial : partials) {
+            if (partial.getName().endsWith(".part") && partial.lastModified() < expired) {
+                LOG.debug("Deleting abandoned partial upload {}", partial);
+                delete(partial);
+            }
+        }
+    }
+
+    private static void deleteAll(List<File> files) {
+        for (File file : files) {
+            delete(file);
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Failed to delete {}", file);
+        }
+    }
+
+    /**
+     * The range of the bytes of a file in a chunk of a chunked upload
+     */
+    protected static class ContentRange {
+        final long first;
+        final long last;
+        final long total;
+
+        ContentRange(long first, long last, long total) {
+            this.first = first;
+            this.last = last;
+            this.total = total;
+        }
+
+        static ContentRange parse(String header) {
+            if (Strings.isBlank(header)) {
+                return null;
+            }
+            Matcher matcher = CONTENT_RANGE.matcher(header.trim());
+            if (!matcher.matches()) {
+                return null;
+            }
+            ContentRange answer = new ContentRange(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+                    Long.parseLong(matcher.group(3)));
+            return answer.first <= answer.last && answer.last < answer.total ? answer : null;
+        }
     }
 }
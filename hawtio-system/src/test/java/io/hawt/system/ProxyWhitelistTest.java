@@ -0,0 +1,62 @@
+package io.hawt.system;
+
+import javax.servlet.http.HttpServletRequest;
+
+import io.hawt.web.ProxyDetails;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProxyWhitelistTest {
+
+    private ProxyWhitelist whitelist;
+
+    @After
+    public void tearDown() {
+        if (whitelist != null) {
+            whitelist.close();
+        }
+    }
+
+    @Test
+    public void testMatchesExactAndCombinedRegex() throws Exception {
+        whitelist = new ProxyWhitelist("www.myhost.com,r:myhost[0-9]+\\.com,r:(a)\\1\\.org");
+
+        assertTrue(whitelist.isAllowed(details("/www.myhost.com/jolokia/")));
+        assertTrue(whitelist.isAllowed(details("/myhost1.com:8181/jolokia/")));
+        assertTrue(whitelist.isAllowed(details("/myhost22.com/jolokia/")));
+        assertTrue(whitelist.isAllowed(details("/aa.org/jolokia/")));
+        assertFalse(whitelist.isAllowed(details("/www.banned.com/jolokia/")));
+        assertFalse(whitelist.isAllowed(details("/ab.org/jolokia/")));
+    }
+
+    @Test
+    public void testRemembersDeniedHosts() throws Exception {
+        whitelist = new ProxyWhitelist("www.myhost.com");
+
+        assertFalse(whitelist.isAllowed(details("/www.banned.com/jolokia/")));
+        // hosts added to the whitelist are allowed straight away even if they were denied before
+        whitelist.whitelist.add("www.banned.com");
+        assertTrue(whitelist.isAllowed(details("/www.banned.com/jolokia/")));
+
+        assertFalse(whitelist.isAllowed(details("/www.other.com/jolokia/")));
+        whitelist.setDeniedTtl(0);
+        assertFalse(whitelist.isAllowed(details("/www.other.com/jolokia/")));
+    }
+
+    @Test
+    public void testAllowAll() throws Exception {
+        whitelist = new ProxyWhitelist("*");
+        assertTrue(whitelist.isAllowed(details("/www.anything.com/jolokia/")));
+    }
+
+    protected ProxyDetails details(String pathInfo) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getPathInfo()).thenReturn(pathInfo);
+        return new ProxyDetails(request);
+    }
+}
@@ -0,0 +1,140 @@
+package io.hawt.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkProxyServletTest {
+
+    private HttpServer server;
+    private BulkProxyServlet servlet;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/jolokia", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+                respond(exchange, 200, "{\"status\":200,\"request\":" + new String(body, "UTF-8") + "}");
+            }
+        });
+        server.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                respond(exchange, 200, "{}");
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getInitParameter(ProxyServlet.PROXY_WHITELIST)).thenReturn("localhost");
+        when(config.getServletContext()).thenReturn(mock(ServletContext.class));
+        servlet = new BulkProxyServlet();
+        servlet.init(config);
+    }
+
+    @After
+    public void tearDown() {
+        servlet.destroy();
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    @Test
+    public void testStreamsResultOfEachTarget() throws Exception {
+        int port = server.getAddress().getPort();
+        String body = "{\"timeout\": 500,"
+                + " \"request\": {\"type\": \"read\", \"mbean\": \"java.lang:type=Memory\"},"
+                + " \"targets\": [\"localhost/" + port + "/jolokia\","
+                + " {\"id\": \"slow\", \"url\": \"localhost/" + port + "/slow\"},"
+                + " {\"id\": \"other\", \"url\": \"otherhost/" + port + "/jolokia\"}]}";
+
+        long start = System.currentTimeMillis();
+        String output = post(body);
+        long duration = System.currentTimeMillis() - start;
+
+        Map<String, JSONObject> results = new HashMap<>();
+        for (String line : output.split("\n")) {
+            JSONObject result = (JSONObject) JSONValue.parse(line);
+            results.put((String) result.get("id"), result);
+        }
+        assertEquals(3, results.size());
+
+        JSONObject ok = results.get("localhost/" + port + "/jolokia");
+        assertEquals(200L, ok.get("status"));
+        JSONObject request = (JSONObject) ((JSONObject) ok.get("response")).get("request");
+        assertEquals("java.lang:type=Memory", request.get("mbean"));
+
+        assertEquals(504L, results.get("slow").get("status"));
+        assertEquals(403L, results.get("other").get("status"));
+        assertTrue("Took " + duration + " ms", duration < 2000);
+    }
+
+    private String post(String body) throws Exception {
+        final InputStream in = new ByteArrayInputStream(body.getBytes("UTF-8"));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentLength()).thenReturn(body.length());
+        when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+        when(request.getHeaderNames()).thenReturn(Collections.enumeration(Collections.<String>emptyList()));
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+        });
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+        });
+        servlet.service(request, response);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,56 @@
+package io.hawt.web;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExecutionContextEntriesTest {
+
+    @Test
+    public void testReadsEntriesOneAtATime() throws Exception {
+        String json = "{\"jobExecutionContext\": {\"id\": 1, \"context\": {\"map\": {\"entry\": ["
+                + "{\"string\": \"count\", \"int\": 3},"
+                + "{\"string\": \"rows\", \"list\": {\"map\": [{\"a\": 1, \"b\": \"x\"}, {\"a\": 2, \"b\": \"y\"}]}}"
+                + "]}}},"
+                + " \"stepExecutionContext\": {\"context\": {\"map\": {\"entry\": {\"string\": \"other\"}}}}}";
+
+        final List<JSONObject> entries = new ArrayList<>();
+        ExecutionContextEntries.read(new StringReader(json), "jobExecutionContext", new ExecutionContextEntries.EntryHandler() {
+            @Override
+            public void entry(int index, JSONObject entry) throws IOException {
+                assertEquals(entries.size(), index);
+                entries.add(entry);
+            }
+        });
+        assertEquals(2, entries.size());
+        assertEquals("count", entries.get(0).get("string"));
+        assertEquals(3L, entries.get(0).get("int"));
+        JSONArray rows = (JSONArray) ((JSONObject) entries.get(1).get("list")).get("map");
+        assertEquals(2, rows.size());
+
+        StringWriter csv = new StringWriter();
+        Map xlData = ServletHelpers.populateTableMapForXl(rows);
+        ServletHelpers.writeCsv(xlData, csv);
+        assertEquals(ServletHelpers.generateCsvString(xlData), csv.toString());
+        assertEquals(3, csv.toString().split("\n").length);
+
+        entries.clear();
+        ExecutionContextEntries.read(new StringReader(json), "stepExecutionContext", new ExecutionContextEntries.EntryHandler() {
+            @Override
+            public void entry(int index, JSONObject entry) throws IOException {
+                entries.add(entry);
+            }
+        });
+        assertEquals(1, entries.size());
+        assertEquals("other", entries.get(0).get("string"));
+    }
+}
@@ -194,6 +194,32 @@ public class GlobalFileUploadFilterTest {
 
     }
 
+    @Test
+    public void testInspectsContentInChunks() throws IOException {
+        List<GlobalFileUploadFilter.MagicNumberFileFilter> filters =
+            GlobalFileUploadFilter.constructFilters("exc=[@ [ ]]", new ArrayList<>());
+        byte[] content = "some harmless text then #!/bin/bash at the end".getBytes();
+
+        // feed the content a few bytes at a time so the prohibited string spans chunks
+        GlobalFileUploadFilter.ContentInspector inspector = new GlobalFileUploadFilter.ContentInspector(filters);
+        for (int i = 0; i < content.length; i += 3) {
+            inspector.update(content, i, Math.min(3, content.length - i));
+        }
+        assertEquals(content.length, inspector.getLength());
+        assertFalse(inspector.isAccepted(() -> new ByteArrayInputStream(content)));
+        assertFalse(GlobalFileUploadFilter.accept(content, filters));
+
+        File file = File.createTempFile("upload", ".zip");
+        try {
+            FileUtils.copyFile(new File("src/test/resources/data/allowedContent.zip"), file);
+            filters = GlobalFileUploadFilter.constructFilters("signature=504B0304,offset=0,maxSize=10mb,exc=[@ [ ] # * / & % ? ; $]", new ArrayList<>());
+            assertEquals(GlobalFileUploadFilter.accept(FileUtils.readFileToByteArray(file), filters),
+                GlobalFileUploadFilter.accept(file, filters));
+        } finally {
+            file.delete();
+        }
+    }
+
 //    @Test
 //    public void testBlocksZipUploadNonConfiguredItemAndAsciiBinaryItem() throws IOException {
 //
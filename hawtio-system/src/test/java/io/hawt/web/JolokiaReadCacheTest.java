@@ -0,0 +1,164 @@
+package io.hawt.web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JolokiaReadCacheTest {
+
+    private static final String URL = "http://localhost:8181/jolokia/";
+
+    @Test
+    public void testCacheKey() throws Exception {
+        String key1 = JolokiaReadCache.cacheKey("POST", URL, "Basic a", "{\"type\":\"read\",\"mbean\":\"java.lang:type=Memory\"}".getBytes());
+        String key2 = JolokiaReadCache.cacheKey("POST", URL, "Basic a", "{ \"mbean\": \"java.lang:type=Memory\", \"type\": \"read\" }".getBytes());
+        assertNotNull(key1);
+        assertEquals("keys should not depend on the order of the JSON keys", key1, key2);
+        assertFalse(key1.equals(JolokiaReadCache.cacheKey("POST", URL, "Basic b", "{\"type\":\"read\",\"mbean\":\"java.lang:type=Memory\"}".getBytes())));
+
+        assertNotNull(JolokiaReadCache.cacheKey("POST", URL, null, "[{\"type\":\"list\"},{\"type\":\"search\",\"mbean\":\"*:*\"}]".getBytes()));
+        assertNull(JolokiaReadCache.cacheKey("POST", URL, null, "[{\"type\":\"read\"},{\"type\":\"exec\"}]".getBytes()));
+        assertNull(JolokiaReadCache.cacheKey("POST", URL, null, "{\"type\":\"write\"}".getBytes()));
+        assertNull(JolokiaReadCache.cacheKey("POST", URL, null, "not json".getBytes()));
+
+        assertNotNull(JolokiaReadCache.cacheKey("GET", URL + "read/java.lang:type=Memory", null, null));
+        assertNull(JolokiaReadCache.cacheKey("GET", URL + "exec/java.lang:type=Memory/gc", null, null));
+        assertNotNull(JolokiaReadCache.cacheKey("GET", URL + "list", null, null));
+        assertNull(JolokiaReadCache.cacheKey("GET", URL + "exec/java.lang:type=Memory/read", null, null));
+        assertNull(JolokiaReadCache.cacheKey("GET", "http://localhost:8080/shop/read/orders", null, null));
+        assertNull(JolokiaReadCache.cacheKey("GET", "http://localhost:8080/search/jolokia", null, null));
+    }
+
+    @Test
+    public void testCoalescesAndCaches() throws Exception {
+        final JolokiaReadCache cache = new JolokiaReadCache(60000, 10, 1024);
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<JolokiaReadCache.CachedResponse> loader = new Callable<JolokiaReadCache.CachedResponse>() {
+            @Override
+            public JolokiaReadCache.CachedResponse call() throws Exception {
+                calls.incrementAndGet();
+                release.await(10, TimeUnit.SECONDS);
+                return new JolokiaReadCache.CachedResponse(200, "OK", Collections.<String[]>emptyList(), "{}".getBytes());
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JolokiaReadCache.CachedResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(new Callable<JolokiaReadCache.CachedResponse>() {
+                    @Override
+                    public JolokiaReadCache.CachedResponse call() throws Exception {
+                        return cache.get("key", loader);
+                    }
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            JolokiaReadCache.CachedResponse first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<JolokiaReadCache.CachedResponse> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertSame(first, cache.get("key", loader));
+            assertEquals("identical requests should share one upstream call", 1, calls.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDoesNotCacheErrors() throws Exception {
+        JolokiaReadCache cache = new JolokiaReadCache(60000, 10, 1024);
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<JolokiaReadCache.CachedResponse> loader = new Callable<JolokiaReadCache.CachedResponse>() {
+            @Override
+            public JolokiaReadCache.CachedResponse call() throws Exception {
+                calls.incrementAndGet();
+                return new JolokiaReadCache.CachedResponse(401, "Unauthorized", Collections.<String[]>emptyList(), new byte[0]);
+            }
+        };
+        cache.get("key", loader);
+        cache.get("key", loader);
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testGetIfPresentDoesNotWaitForRequestsInFlight() throws Exception {
+        final JolokiaReadCache cache = new JolokiaReadCache(60000, 10, 1024);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final JolokiaReadCache.CachedResponse inFlight = new JolokiaReadCache.CachedResponse(200, "OK", Collections.<String[]>emptyList(), "{}".getBytes());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<JolokiaReadCache.CachedResponse> owner = pool.submit(new Callable<JolokiaReadCache.CachedResponse>() {
+                @Override
+                public JolokiaReadCache.CachedResponse call() throws Exception {
+                    return cache.get("key", new Callable<JolokiaReadCache.CachedResponse>() {
+                        @Override
+                        public JolokiaReadCache.CachedResponse call() throws Exception {
+                            started.countDown();
+                            release.await(10, TimeUnit.SECONDS);
+                            return inFlight;
+                        }
+                    });
+                }
+            });
+            started.await(10, TimeUnit.SECONDS);
+            assertNull(cache.getIfPresent("key"));
+
+            // a response fetched separately does not replace the request in flight
+            cache.put("key", new JolokiaReadCache.CachedResponse(200, "OK", Collections.<String[]>emptyList(), "[]".getBytes()));
+            release.countDown();
+            assertSame(inFlight, owner.get(10, TimeUnit.SECONDS));
+            assertSame(inFlight, cache.getIfPresent("key"));
+        } finally {
+            pool.shutdown();
+        }
+
+        JolokiaReadCache.CachedResponse response = new JolokiaReadCache.CachedResponse(200, "OK", Collections.<String[]>emptyList(), "{}".getBytes());
+        cache.put("other", response);
+        assertSame(response, cache.getIfPresent("other"));
+        cache.put("error", new JolokiaReadCache.CachedResponse(500, "Error", Collections.<String[]>emptyList(), new byte[0]));
+        assertNull(cache.getIfPresent("error"));
+    }
+
+    @Test
+    public void testProxyServletDisablesCacheWithInvalidTtl() throws Exception {
+        assertNull(initProxyServlet("soon").readCache);
+        assertNull(initProxyServlet("0").readCache);
+        assertNotNull(initProxyServlet(" 1000 ").readCache);
+    }
+
+    private static ProxyServlet initProxyServlet(String ttl) throws Exception {
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getInitParameter(ProxyServlet.PROXY_READ_CACHE_TTL)).thenReturn(ttl);
+        when(config.getServletContext()).thenReturn(mock(ServletContext.class));
+        ProxyServlet servlet = new ProxyServlet();
+        servlet.init(config);
+        servlet.destroy();
+        return servlet;
+    }
+}
@@ -0,0 +1,103 @@
+package io.hawt.web;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProxySessionTest {
+
+    @Test
+    public void testSessionsAreIsolated() throws Exception {
+        HttpServletRequest alice = mockRequest();
+        HttpServletRequest bob = mockRequest();
+
+        ProxySession aliceSession = ProxySession.get(alice);
+        assertSame(aliceSession, ProxySession.get(alice));
+        ProxySession bobSession = ProxySession.get(bob);
+
+        HttpClientContext aliceContext = aliceSession.createContext();
+        HttpClientContext bobContext = bobSession.createContext();
+        assertNotEquals(aliceContext.getUserToken(), bobContext.getUserToken());
+
+        aliceContext.getCookieStore().addCookie(new BasicClientCookie("JSESSIONID", "alice"));
+        assertTrue(aliceSession.hasCookies());
+        assertFalse(bobSession.hasCookies());
+    }
+
+    @Test
+    public void testChangingCredentialsClearsCookies() throws Exception {
+        ProxySession session = ProxySession.get(mockRequest());
+        session.useCredentials("Basic YWRtaW46YWRtaW4=");
+        session.getCookieStore().addCookie(new BasicClientCookie("JSESSIONID", "admin"));
+
+        session.useCredentials(null);
+        session.useCredentials("Basic YWRtaW46YWRtaW4=");
+        assertEquals(1, session.getCookieStore().getCookies().size());
+
+        session.useCredentials("Basic dXNlcjp1c2Vy");
+        assertFalse(session.hasCookies());
+    }
+
+    @Test
+    public void testRequestsWithoutSessionAreStateless() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        ProxySession session = ProxySession.get(request);
+        assertNotSame(session, ProxySession.get(request));
+        verify(request, never()).getSession();
+        verify(request, never()).getSession(true);
+        assertNull(session.createContext().getUserToken());
+
+        session.useCredentials("Basic YWRtaW46YWRtaW4=");
+        ProxySession other = ProxySession.get(request);
+        other.useCredentials("Basic YWRtaW46YWRtaW4=");
+        Object token = session.createContext().getUserToken();
+        assertEquals(token, other.createContext().getUserToken());
+        assertFalse(token.toString().contains("YWRtaW46YWRtaW4="));
+
+        other.useCredentials("Basic dXNlcjp1c2Vy");
+        assertNotEquals(token, other.createContext().getUserToken());
+    }
+
+    private static HttpServletRequest mockRequest() {
+        final Map<String, Object> attributes = new HashMap<>();
+        HttpSession session = mock(HttpSession.class);
+        when(session.getAttribute(anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            }
+        }).when(session).setAttribute(anyString(), any());
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getSession()).thenReturn(session);
+        when(request.getSession(false)).thenReturn(session);
+        return request;
+    }
+}
@@ -0,0 +1,61 @@
+package io.hawt.web;
+
+import java.util.regex.Pattern;
+
+import io.hawt.web.SessionExpiryFilter.SubContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SessionExpiryFilterTest {
+
+    @Test
+    public void testClassifiesSubContext() throws Exception {
+        assertEquals(SubContext.TOP_LEVEL, SubContext.of("/hawtio"));
+        assertEquals(SubContext.TOP_LEVEL, SubContext.of("/hawtio/"));
+        assertEquals(SubContext.TOP_LEVEL, SubContext.of("/"));
+        assertEquals(SubContext.TOP_LEVEL, SubContext.of(""));
+        assertEquals(SubContext.TOP_LEVEL, SubContext.of("///"));
+        assertEquals(SubContext.JOLOKIA, SubContext.of("/hawtio/jolokia"));
+        assertEquals(SubContext.JOLOKIA, SubContext.of("/hawtio/jolokia/"));
+        assertEquals(SubContext.JOLOKIA, SubContext.of("/hawtio/jolokia/read/java.lang:type=Memory"));
+        assertEquals(SubContext.PROXY, SubContext.of("/hawtio/proxy/localhost/8181/jolokia"));
+        assertEquals(SubContext.BULK_PROXY, SubContext.of("/hawtio/bulk-proxy"));
+        assertEquals(SubContext.REFRESH, SubContext.of("/hawtio/refresh"));
+        assertEquals(SubContext.EXPORT_CONTEXT, SubContext.of("/hawtio/exportContext"));
+        assertEquals(SubContext.OTHER, SubContext.of("/hawtio/jolokiax"));
+        assertEquals(SubContext.OTHER, SubContext.of("/hawtio/index.html"));
+        assertEquals(SubContext.OTHER, SubContext.of("/hawtio//jolokia"));
+    }
+
+    @Test
+    public void testMatchesSplitting() throws Exception {
+        String[] uris = {"/hawtio", "hawtio", "/hawtio/", "/hawtio//", "/hawtio///", "//", "//jolokia",
+                "/hawtio/user/", "/hawtio/upload/files", "/hawtio//upload", "/a/refresh/b/", "/a/contextFormatter"};
+        for (String uri : uris) {
+            assertEquals(uri, splitSubContext(uri), SubContext.of(uri));
+        }
+    }
+
+    /**
+     * Classifies the URI the way the filter used to, by splitting it on slashes
+     */
+    private static SubContext splitSubContext(String uri) {
+        if (uri.startsWith("/")) {
+            uri = uri.substring(1);
+        }
+        if (uri.endsWith("/")) {
+            uri = uri.substring(0, uri.length() - 1);
+        }
+        String[] uriParts = Pattern.compile("/").split(uri);
+        if (uriParts.length == 1) {
+            return SubContext.TOP_LEVEL;
+        }
+        for (SubContext subContext : SubContext.values()) {
+            if (subContext.name().replace("_", "").equalsIgnoreCase(uriParts[1])) {
+                return subContext;
+            }
+        }
+        return SubContext.OTHER;
+    }
+}
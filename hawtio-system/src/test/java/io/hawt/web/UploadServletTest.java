@@ -0,0 +1,165 @@
+package io.hawt.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import io.hawt.jmx.UploadManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UploadServletTest {
+
+    private static final String BOUNDARY = "hawtio-boundary";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String oldUploadDirectory;
+    private File uploadDir;
+    private HttpSession session;
+    private UploadServlet servlet = new UploadServlet();
+    private List<GlobalFileUploadFilter.MagicNumberFileFilter> filters = Collections.emptyList();
+
+    @Before
+    public void init() throws Exception {
+        oldUploadDirectory = UploadManager.UPLOAD_DIRECTORY;
+        UploadManager.UPLOAD_DIRECTORY = folder.getRoot().getAbsolutePath();
+        uploadDir = folder.newFolder("uploads");
+        session = mock(HttpSession.class);
+        when(session.getId()).thenReturn("session1");
+    }
+
+    @After
+    public void destroy() {
+        UploadManager.UPLOAD_DIRECTORY = oldUploadDirectory;
+    }
+
+    @Test
+    public void testUploadsFileWithoutLeavingTemporaryFiles() throws Exception {
+        List<File> files = servlet.uploadFiles(request("hello.txt", "Hello world", null), response(), uploadDir, filters);
+
+        assertEquals(Collections.singletonList(new File(uploadDir, "hello.txt")), files);
+        assertContent("Hello world", files.get(0));
+        assertEquals(1, uploadDir.list().length);
+    }
+
+    @Test
+    public void testResumesChunkedUpload() throws Exception {
+        assertTrue(servlet.uploadFiles(request("hello.txt", "Hello ", "bytes 0-5/11"), response(), uploadDir, filters).isEmpty());
+        assertEquals("{\"file\":\"hello.txt\",\"size\":6}", resumeSize("hello.txt"));
+
+        // a chunk which does not continue from what has been received is rejected
+        HttpServletResponse rejected = response();
+        assertTrue(servlet.uploadFiles(request("hello.txt", "lo ", "bytes 3-5/11"), rejected, uploadDir, filters).isEmpty());
+        verify(rejected).setHeader("Range", "bytes=0-5");
+        verify(rejected).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "Expected the chunk starting at byte 6");
+        assertEquals("{\"file\":\"hello.txt\",\"size\":6}", resumeSize("hello.txt"));
+
+        List<File> files = servlet.uploadFiles(request("hello.txt", "world", "bytes 6-10/11"), response(), uploadDir, filters);
+        assertEquals(Collections.singletonList(new File(uploadDir, "hello.txt")), files);
+        assertContent("Hello world", files.get(0));
+        assertEquals("{\"file\":\"hello.txt\",\"size\":0}", resumeSize("hello.txt"));
+    }
+
+    @Test
+    public void testRejectsChunkLargerThanItsRange() throws Exception {
+        HttpServletResponse response = response();
+        assertTrue(servlet.uploadFiles(request("hello.txt", "Hello ", "bytes 0-2/11"), response, uploadDir, filters).isEmpty());
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "The chunk is larger than its range");
+        assertEquals("{\"file\":\"hello.txt\",\"size\":0}", resumeSize("hello.txt"));
+        assertEquals(0, uploadDir.list().length);
+    }
+
+    @Test
+    public void testInspectsChunkedUploadOnceComplete() throws Exception {
+        filters = GlobalFileUploadFilter.constructFilters("signature=48656C6C6F,offset=0,maxSize=1kb", new ArrayList<GlobalFileUploadFilter.MagicNumberFileFilter>());
+
+        servlet.uploadFiles(request("bye.txt", "Bye ", "bytes 0-3/9"), response(), uploadDir, filters);
+        try {
+            servlet.uploadFiles(request("bye.txt", "world", "bytes 4-8/9"), response(), uploadDir, filters);
+            fail("The file should not be allowed");
+        } catch (RuntimeException e) {
+            assertEquals("File is not allowed to be uploaded", e.getMessage());
+        }
+        assertFalse(new File(uploadDir, "bye.txt").exists());
+        assertEquals("{\"file\":\"bye.txt\",\"size\":0}", resumeSize("bye.txt"));
+
+        servlet.uploadFiles(request("hello.txt", "Hello ", "bytes 0-5/11"), response(), uploadDir, filters);
+        List<File> files = servlet.uploadFiles(request("hello.txt", "world", "bytes 6-10/11"), response(), uploadDir, filters);
+        assertEquals(Collections.singletonList(new File(uploadDir, "hello.txt")), files);
+    }
+
+    private String resumeSize(String fileName) throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("file")).thenReturn(fileName);
+        when(request.getSession()).thenReturn(session);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        StringWriter writer = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(writer));
+        servlet.doGet(request, response);
+        return writer.toString();
+    }
+
+    private HttpServletRequest request(String fileName, String content, String contentRange) throws IOException {
+        byte[] body = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "\r\n"
+                + content + "\r\n"
+                + "--" + BOUNDARY + "--\r\n").getBytes("UTF-8");
+        final ByteArrayInputStream in = new ByteArrayInputStream(body);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentType()).thenReturn("multipart/form-data; boundary=" + BOUNDARY);
+        when(request.getContentLength()).thenReturn(body.length);
+        when(request.getHeader("Content-Range")).thenReturn(contentRange);
+        when(request.getSession()).thenReturn(session);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+        });
+        return request;
+    }
+
+    private HttpServletResponse response() throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        final AtomicInteger errors = new AtomicInteger();
+        doAnswer(invocation -> errors.incrementAndGet()).when(response).sendError(anyInt(), anyString());
+        when(response.isCommitted()).thenAnswer(invocation -> errors.get() > 0);
+        return response;
+    }
+
+    private static void assertContent(String expected, File file) throws IOException {
+        assertArrayEquals(expected.getBytes("UTF-8"), Files.readAllBytes(file.toPath()));
+    }
+}
@@ -0,0 +1,218 @@
+package io.hawt.util.introspect.support;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The annotation details of a class read straight from its class file, so that annotations can be searched for
+ * without loading the class, which would pull in its dependencies and run its static initializers.
+ * <p/>
+ * Only the constant pool, the super class and the <code>RuntimeVisibleAnnotations</code> attributes of the class
+ * and its methods are read; everything else is skipped. Like reflection only annotations retained at runtime are seen.
+ */
+public class ClassFileInfo {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private final String className;
+    private final String superClassName;
+    private final Set<String> annotations;
+    private final Set<String> methodAnnotations;
+
+    public ClassFileInfo(String className, String superClassName, Set<String> annotations, Set<String> methodAnnotations) {
+        this.className = className;
+        this.superClassName = superClassName;
+        this.annotations = annotations;
+        this.methodAnnotations = methodAnnotations;
+    }
+
+    /**
+     * Parses the given class file stream; the stream is not closed
+     */
+    public static ClassFileInfo parse(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        // minor and major version
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        int constantCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantCount];
+        int[] classNameIndex = new int[constantCount];
+        for (int i = 1; i < constantCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+            case 1: // Utf8
+                utf8[i] = in.readUTF();
+                break;
+            case 7: // Class
+                classNameIndex[i] = in.readUnsignedShort();
+                break;
+            case 8: // String
+            case 16: // MethodType
+            case 19: // Module
+            case 20: // Package
+                skipFully(in, 2);
+                break;
+            case 15: // MethodHandle
+                skipFully(in, 3);
+                break;
+            case 3: // Integer
+            case 4: // Float
+            case 9: // Fieldref
+            case 10: // Methodref
+            case 11: // InterfaceMethodref
+            case 12: // NameAndType
+            case 17: // Dynamic
+            case 18: // InvokeDynamic
+                skipFully(in, 4);
+                break;
+            case 5: // Long
+            case 6: // Double
+                skipFully(in, 8);
+                // 8 byte constants take up two slots
+                i++;
+                break;
+            default:
+                throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+            }
+        }
+
+        // access flags
+        in.readUnsignedShort();
+        String className = toClassName(utf8[classNameIndex[in.readUnsignedShort()]]);
+        int superIndex = in.readUnsignedShort();
+        String superClassName = superIndex != 0 ? toClassName(utf8[classNameIndex[superIndex]]) : null;
+        int interfaceCount = in.readUnsignedShort();
+        skipFully(in, interfaceCount * 2);
+
+        // fields
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            skipFully(in, 6);
+            readAttributes(in, utf8, null);
+        }
+
+        Set<String> methodAnnotations = new HashSet<String>();
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            skipFully(in, 6);
+            readAttributes(in, utf8, methodAnnotations);
+        }
+
+        Set<String> annotations = new HashSet<String>();
+        readAttributes(in, utf8, annotations);
+
+        return new ClassFileInfo(className, superClassName,
+                annotations.isEmpty() ? Collections.<String>emptySet() : annotations,
+                methodAnnotations.isEmpty() ? Collections.<String>emptySet() : methodAnnotations);
+    }
+
+    /**
+     * Reads the attributes adding the runtime visible annotation class names to the given set if it is not null
+     */
+    protected static void readAttributes(DataInputStream in, String[] utf8, Set<String> annotations) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (annotations != null && RUNTIME_VISIBLE_ANNOTATIONS.equals(name)) {
+                int count = in.readUnsignedShort();
+                for (int j = 0; j < count; j++) {
+                    readAnnotation(in, utf8, annotations);
+                }
+            } else {
+                skipFully(in, length);
+            }
+        }
+    }
+
+    protected static void readAnnotation(DataInputStream in, String[] utf8, Set<String> annotations) throws IOException {
+        String descriptor = utf8[in.readUnsignedShort()];
+        if (annotations != null && descriptor != null && descriptor.startsWith("L") && descriptor.endsWith(";")) {
+            annotations.add(toClassName(descriptor.substring(1, descriptor.length() - 1)));
+        }
+        int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            skipFully(in, 2);
+            skipElementValue(in, utf8);
+        }
+    }
+
+    protected static void skipElementValue(DataInputStream in, String[] utf8) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+        case 'e':
+            skipFully(in, 4);
+            break;
+        case '@':
+            readAnnotation(in, utf8, null);
+            break;
+        case '[':
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                skipElementValue(in, utf8);
+            }
+            break;
+        default:
+            // a constant or class value
+            skipFully(in, 2);
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                // some streams cannot skip so lets read a byte instead
+                if (in.read() < 0) {
+                    throw new IOException("Unexpected end of class file");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static String toClassName(String internalName) {
+        return internalName.replace('/', '.');
+    }
+
+    @Override
+    public String toString() {
+        return "ClassFileInfo(" + className + " extends " + superClassName + ")";
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns the name of the super class or null for java.lang.Object
+     */
+    public String getSuperClassName() {
+        return superClassName;
+    }
+
+    /**
+     * Returns the class names of the runtime visible annotations on the class itself
+     */
+    public Set<String> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Returns the class names of the runtime visible annotations on any of the methods declared by the class
+     */
+    public Set<String> getMethodAnnotations() {
+        return methodAnnotations;
+    }
+}
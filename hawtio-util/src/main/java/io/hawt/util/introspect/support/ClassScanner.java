@@ -17,6 +17,7 @@
  */
 package io.hawt.util.introspect.support;
 
+import io.hawt.util.Closeables;
 import io.hawt.util.introspect.ClassLoaderProvider;
 import io.hawt.util.Predicate;
 import io.hawt.util.ReflectionHelper;
@@ -25,16 +26,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.lang.annotation.Annotation;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,11 +47,23 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A helper class to scan classes on the classpath
+ * A helper class to scan classes on the classpath.
+ * <p/>
+ * A scanner may be queried by many threads at once. Packages which have not been scanned yet are scanned in parallel
+ * on a small pool of threads and each jar is read once into a {@link JarIndex} which is shared by all of its packages.
  */
 public class ClassScanner {
     private static final transient Logger LOG = LoggerFactory.getLogger(ClassScanner.class);
@@ -55,13 +71,36 @@ public class ClassScanner {
     // lets skip some classes which can cause ugly WARN logging when doing package scanning
     private static final String[] SKIP_CLASSES = new String[]{"org.apache.log4j.net.ZeroConfSupport"};
 
+    private static final int MAX_CLASS_HIERARCHY_DEPTH = 64;
+    private static final int MAX_CACHE_SIZE = 4096;
+    private static final int MAX_JAR_INDEXES = 256;
+    private static final int MAX_CLASS_FILE_INFOS = 8192;
+    private static final ClassFileInfo MISSING_CLASS_FILE = new ClassFileInfo(null, null, Collections.<String>emptySet(), Collections.<String>emptySet());
+
     private final ClassLoader[] classLoaders;
 
-    private WeakHashMap<String, CacheValue> cache = new WeakHashMap<String, CacheValue>();
-    private WeakHashMap<Package, CacheValue> packageCache = new WeakHashMap<Package, CacheValue>();
-    private Map<String,ClassLoaderProvider> classLoaderProviderMap = new HashMap<String, ClassLoaderProvider>();
+    // the caches are shared by all the console users so must be safe to query concurrently
+    // bounded as there is an entry per class path entry and package ever scanned
+    private final Map<String, CacheValue> cache = lruMap(MAX_CACHE_SIZE);
+    // lets not keep packages (and so their class loaders) alive
+    private final Map<Package, CacheValue> packageCache = Collections.synchronizedMap(new WeakHashMap<Package, CacheValue>());
+    private final Map<String, ClassLoaderProvider> classLoaderProviderMap = new ConcurrentHashMap<String, ClassLoaderProvider>();
+    // bounded too as there is an entry, if only a missing one, per class whose hierarchy is ever checked
+    private final Map<String, ClassFileInfo> classFileInfoCache = lruMap(MAX_CLASS_FILE_INFOS);
+    private final Map<String, FutureTask<JarIndex>> jarIndexes = lruMap(MAX_JAR_INDEXES);
+    private int scanThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private ThreadPoolExecutor executor;
     private Set<String> ignorePackages = new HashSet<String>(Arrays.asList("sun.reflect.misc"));
 
+    private static <K, V> Map<K, V> lruMap(final int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
     public static ClassScanner newInstance() {
         return new ClassScanner(Thread.currentThread().getContextClassLoader(), ClassScanner.class.getClassLoader());
     }
@@ -73,6 +112,8 @@ public class ClassScanner {
     public void clearCache() {
         cache.clear();
         packageCache.clear();
+        classFileInfoCache.clear();
+        jarIndexes.clear();
         classLoaderProviderMap.clear();
     }
 
@@ -104,26 +145,25 @@ public class ClassScanner {
 
     public SortedSet<String> findClassNamesInDirectoryWithMethodAnnotatedWith(File dir, String annotationClassName) {
         SortedSet<String> answer = new TreeSet<String>();
-        final Class<? extends Annotation> annotationClass = optionallyFindAnnotationClass(annotationClassName);
-        if (annotationClass != null && dir.exists()) {
-            addClassNamesInDirectoryWithMethodsAnnotatedWith(answer, dir, annotationClass, "");
+        if (getClassFileInfo(annotationClassName, null) != null && dir.exists()) {
+            addClassNamesInDirectoryWithMethodsAnnotatedWith(answer, dir, dir, annotationClassName, "");
         }
         return answer;
     }
 
-    protected void addClassNamesInDirectoryWithMethodsAnnotatedWith(SortedSet<String> answer, File dir,
-                                                                    Class<? extends Annotation> annotationClass, String packageName) {
+    protected void addClassNamesInDirectoryWithMethodsAnnotatedWith(SortedSet<String> answer, File rootDir, File dir,
+                                                                    String annotationClassName, String packageName) {
         File[] files = dir.listFiles();
         if (files != null) {
             for (File file : files) {
                 if (file.isDirectory()) {
-                    addClassNamesInDirectoryWithMethodsAnnotatedWith(answer, file, annotationClass, packageName + file.getName() + ".");
+                    addClassNamesInDirectoryWithMethodsAnnotatedWith(answer, rootDir, file, annotationClassName, packageName + file.getName() + ".");
                 } else if (file.isFile()) {
                     String name = file.getName();
                     if (name.endsWith(".class")) {
                         String className = packageName + (name.substring(0, name.length() - 6).replace('$', '.'));
-                        Class<?> aClass = optionallyFindClass(className);
-                        if (aClass != null && ReflectionHelper.hasMethodWithAnnotation(aClass, annotationClass, true)) {
+                        ClassFileInfo info = parseClassFile(file);
+                        if (info != null && hasMethodAnnotatedWith(info, annotationClassName, rootDir)) {
                             answer.add(className);
                         }
                     }
@@ -132,26 +172,13 @@ public class ClassScanner {
         }
     }
 
-
-    protected Class<? extends Annotation> optionallyFindAnnotationClass(String annotationClassName) {
-        final Class<? extends Annotation> annotationClass = optionallyFindClass(annotationClassName).asSubclass(Annotation.class);
-        if (annotationClass != null && Annotation.class.isAssignableFrom(annotationClass)) {
-            return annotationClass;
-        }
-        return null;
-    }
-
-    public SortedSet<String> findClassNamesMethodsAnnotatedWith(String annotationClassName, Integer limit, Map<Package, ClassLoader[]> packages) {
-        final Class<? extends Annotation> annotationClass = optionallyFindAnnotationClass(annotationClassName);
-        if (annotationClass != null) {
+    public SortedSet<String> findClassNamesMethodsAnnotatedWith(final String annotationClassName, Integer limit, Map<Package, ClassLoader[]> packages) {
+        if (getClassFileInfo(annotationClassName, null) != null) {
             Predicate<String> filter = new Predicate<String>() {
                 @Override
                 public boolean evaluate(String className) {
-                    Class<?> aClass = optionallyFindClass(className);
-                    if (aClass != null) {
-                        return ReflectionHelper.hasMethodWithAnnotation(aClass, annotationClass, true);
-                    }
-                    return false;
+                    ClassFileInfo info = getClassFileInfo(className, null);
+                    return info != null && hasMethodAnnotatedWith(info, annotationClassName, null);
                 }
             };
             return findClassNames(packages, filter, limit);
@@ -159,6 +186,85 @@ public class ClassScanner {
         return new TreeSet<String>();
     }
 
+    /**
+     * Returns true if the class or any of its super classes has a method annotated with the given annotation,
+     * either directly or through a meta annotation; the same check as
+     * {@link ReflectionHelper#hasMethodWithAnnotation(Class, Class, boolean)} but on the class files so no classes get loaded
+     */
+    protected boolean hasMethodAnnotatedWith(ClassFileInfo info, String annotationClassName, File rootDir) {
+        for (int depth = 0; info != null && depth < MAX_CLASS_HIERARCHY_DEPTH; depth++) {
+            for (String annotation : info.getMethodAnnotations()) {
+                if (annotation.equals(annotationClassName)) {
+                    return true;
+                }
+                ClassFileInfo annotationInfo = getClassFileInfo(annotation, null);
+                if (annotationInfo != null && annotationInfo.getAnnotations().contains(annotationClassName)) {
+                    return true;
+                }
+            }
+            String superClassName = info.getSuperClassName();
+            if (superClassName == null || superClassName.equals(Object.class.getName())) {
+                return false;
+            }
+            info = getClassFileInfo(superClassName, rootDir);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the details of the class file for the given class name, looking in the given directory first if not null
+     * and then on the class loaders, or null if the class file cannot be found
+     */
+    protected ClassFileInfo getClassFileInfo(String className, File rootDir) {
+        String resourceName = className.replace('.', '/') + ".class";
+        if (rootDir != null) {
+            File file = new File(rootDir, resourceName);
+            if (file.isFile()) {
+                // the classes in a directory are typically being recompiled so lets not cache them
+                return parseClassFile(file);
+            }
+        }
+        ClassFileInfo answer = classFileInfoCache.get(className);
+        if (answer == null) {
+            answer = loadClassFileInfo(className, resourceName);
+            classFileInfoCache.put(className, answer);
+        }
+        return answer != MISSING_CLASS_FILE ? answer : null;
+    }
+
+    protected ClassFileInfo loadClassFileInfo(String className, String resourceName) {
+        List<ClassLoader> loaders = getClassLoaders();
+        loaders.add(ClassLoader.getSystemClassLoader());
+        for (ClassLoader classLoader : loaders) {
+            if (classLoader == null) {
+                continue;
+            }
+            InputStream in = classLoader.getResourceAsStream(resourceName);
+            if (in != null) {
+                try {
+                    return ClassFileInfo.parse(in);
+                } catch (IOException e) {
+                    LOG.debug("Could not parse class file of " + className + ". " + e, e);
+                } finally {
+                    Closeables.closeQuietly(in);
+                }
+            }
+        }
+        return MISSING_CLASS_FILE;
+    }
+
+    protected ClassFileInfo parseClassFile(File file) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            return ClassFileInfo.parse(in);
+        } catch (IOException e) {
+            LOG.debug("Could not parse class file " + file + ". " + e, e);
+            return null;
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
 
     public SortedSet<String> findClassNamesInPackages(final String search, Integer limit, Map<Package, ClassLoader[]> packages) {
         Predicate<String> filter = new Predicate<String>() {
@@ -174,16 +280,30 @@ public class ClassScanner {
         SortedSet<String> answer = new TreeSet<String>();
         SortedSet<String> classes = new TreeSet<String>();
 
+        // lets scan the packages we've not seen before in parallel
+        Map<Package, Future<CacheValue>> scans = new HashMap<Package, Future<CacheValue>>();
         Set<Map.Entry<Package, ClassLoader[]>> entries = packages.entrySet();
         for (Map.Entry<Package, ClassLoader[]> entry : entries) {
-            Package aPackage = entry.getKey();
-            ClassLoader[] classLoaders = entry.getValue();
+            final Package aPackage = entry.getKey();
+            final ClassLoader[] classLoaders = entry.getValue();
             CacheValue cacheValue = packageCache.get(aPackage);
-            if (cacheValue == null) {
-                cacheValue = createPackageCacheValue(aPackage, classLoaders);
-                packageCache.put(aPackage, cacheValue);
+            if (cacheValue != null) {
+                classes.addAll(cacheValue.getClassNames());
+            } else {
+                scans.put(aPackage, getExecutor().submit(new Callable<CacheValue>() {
+                    @Override
+                    public CacheValue call() throws Exception {
+                        return createPackageCacheValue(aPackage, classLoaders);
+                    }
+                }));
+            }
+        }
+        for (Map.Entry<Package, Future<CacheValue>> entry : scans.entrySet()) {
+            CacheValue cacheValue = waitFor(entry.getValue(), "package " + entry.getKey().getName());
+            if (cacheValue != null) {
+                packageCache.put(entry.getKey(), cacheValue);
+                classes.addAll(cacheValue.getClassNames());
             }
-            classes.addAll(cacheValue.getClassNames());
         }
 
 /*
@@ -322,8 +442,9 @@ public class ClassScanner {
         SortedSet<String> classNames = answer.getClassNames();
         Set<Map.Entry<String, ClassResource>> entries = urlSet.entrySet();
         for (Map.Entry<String, ClassResource> entry : entries) {
-            String key = entry.getKey();
             ClassResource classResource = entry.getValue();
+            // a jar holds many packages so its entries are cached per package
+            String key = entry.getKey() + "!" + classResource.getPackageName();
             CacheValue cacheValue = cache.get(key);
             if (cacheValue == null) {
                 cacheValue = createCacheValue(key, classResource);
@@ -369,35 +490,88 @@ public class ClassScanner {
     }
 
     protected void processJarClassNames(ClassResource classResource, Set<String> classes) {
-        URL resource = classResource.getResource();
-        String packageName = classResource.getPackageName();
-        String relativePath = getPackageRelativePath(packageName);
-        String jarPath = getJarPath(resource);
-        JarFile jarFile;
-        try {
-            jarFile = new JarFile(jarPath);
-        } catch (IOException e) {
-            LOG.debug("IOException reading JAR '" + jarPath + ". Reason: " + e, e);
-            return;
-        }
-        Enumeration<JarEntry> entries = jarFile.entries();
-        while (entries.hasMoreElements()) {
-            JarEntry entry = entries.nextElement();
-            String entryName = entry.getName();
-            if (entryName.endsWith(".class") && entryName.startsWith(relativePath) && entryName.length() > (relativePath.length() + 1)) {
-                String className = entryName.replace('/', '.').replace('\\', '.').replace(".class", "");
-                classes.add(className);
+        String relativePath = getPackageRelativePath(classResource.getPackageName());
+        JarIndex jarIndex = getJarIndex(getJarPath(classResource.getResource()));
+        if (jarIndex != null) {
+            classes.addAll(jarIndex.getClassNames(relativePath));
+        }
+    }
+
+    /**
+     * Returns the index of the class entries of the given jar, reading the jar only once however many packages
+     * or threads ask for it at the same time
+     */
+    protected JarIndex getJarIndex(final String jarPath) {
+        FutureTask<JarIndex> future = jarIndexes.get(jarPath);
+        if (future == null) {
+            FutureTask<JarIndex> task = new FutureTask<JarIndex>(new Callable<JarIndex>() {
+                @Override
+                public JarIndex call() throws Exception {
+                    return JarIndex.load(jarPath);
+                }
+            });
+            future = jarIndexes.putIfAbsent(jarPath, task);
+            if (future == null) {
+                future = task;
+                task.run();
             }
         }
+        JarIndex answer = waitFor(future, "JAR '" + jarPath + "'");
+        if (answer == null) {
+            jarIndexes.remove(jarPath, future);
+        } else if (answer.isStale()) {
+            jarIndexes.remove(jarPath, future);
+            return getJarIndex(jarPath);
+        }
+        return answer;
+    }
 
-        // let's not leak resources
+    protected <T> T waitFor(Future<T> future, String description) {
         try {
-            jarFile.close();
-        } catch (IOException e) {
-            LOG.debug("IOException closing JAR '" + jarPath + "'. Reason: " + e, e);
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            LOG.debug("Interrupted while scanning " + description);
+        } catch (ExecutionException e) {
+            LOG.debug("Failed to scan " + description + ". Reason: " + e.getCause(), e.getCause());
         }
+        return null;
     }
 
+    protected synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(scanThreads, scanThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "hawtio-class-scanner-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // lets not keep idle threads around as scans only happen when the caches are cold
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    /**
+     * Sets the number of threads used to scan the class path entries in parallel
+     */
+    public synchronized void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
 
     protected void addClassesForPackage(ClassResource classResource, String filter, Integer limit, Set<Class<?>> classes) {
         String packageName = classResource.getPackageName();
@@ -438,37 +612,19 @@ public class ClassScanner {
     }
 
     protected void processJar(ClassResource classResource, Set<Class<?>> classes, String filter, Integer limit) {
-        URL resource = classResource.getResource();
-        String packageName = classResource.getPackageName();
-        String relativePath = getPackageRelativePath(packageName);
-        String jarPath = getJarPath(resource);
-        JarFile jarFile;
-        try {
-            jarFile = new JarFile(jarPath);
-        } catch (IOException e) {
-            LOG.debug("IOException reading JAR '" + jarPath + ". Reason: " + e, e);
-            return;
-        }
-        Enumeration<JarEntry> entries = jarFile.entries();
-        while (entries.hasMoreElements() && withinLimit(limit, classes)) {
-            JarEntry entry = entries.nextElement();
-            String entryName = entry.getName();
-            String className = null;
-            if (entryName.endsWith(".class") && entryName.startsWith(relativePath) && entryName.length() > (relativePath.length() + 1)) {
-                className = entryName.replace('/', '.').replace('\\', '.').replace(".class", "");
-            }
-            Class<?> aClass = tryFindClass(className, filter);
-            if (aClass != null) {
-                classes.add(aClass);
+        String relativePath = getPackageRelativePath(classResource.getPackageName());
+        JarIndex jarIndex = getJarIndex(getJarPath(classResource.getResource()));
+        if (jarIndex != null) {
+            for (String className : jarIndex.getClassNames(relativePath)) {
+                if (!withinLimit(limit, classes)) {
+                    break;
+                }
+                Class<?> aClass = tryFindClass(className, filter);
+                if (aClass != null) {
+                    classes.add(aClass);
+                }
             }
         }
-        
-        // let's not leak resources
-        try {
-            jarFile.close();
-        } catch (IOException e) {
-            LOG.debug("IOException closing JAR '" + jarPath + "'. Reason: " + e, e);
-        }
     }
 
     protected String getJavaResourceKey(URL resource) {
@@ -0,0 +1,73 @@
+package io.hawt.util.introspect.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The class file entries of a jar, read in a single pass so that every package of the jar can be
+ * listed without opening the jar again.
+ */
+public class JarIndex {
+    private final String jarPath;
+    private final long lastModified;
+    private final NavigableSet<String> classEntryNames;
+
+    public JarIndex(String jarPath, long lastModified, NavigableSet<String> classEntryNames) {
+        this.jarPath = jarPath;
+        this.lastModified = lastModified;
+        this.classEntryNames = classEntryNames;
+    }
+
+    public static JarIndex load(String jarPath) throws IOException {
+        long lastModified = new File(jarPath).lastModified();
+        NavigableSet<String> names = new TreeSet<String>();
+        JarFile jarFile = new JarFile(jarPath);
+        try {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String entryName = entries.nextElement().getName();
+                if (entryName.endsWith(".class")) {
+                    names.add(entryName);
+                }
+            }
+        } finally {
+            jarFile.close();
+        }
+        return new JarIndex(jarPath, lastModified, names);
+    }
+
+    /**
+     * Returns true if the jar has changed since it was indexed
+     */
+    public boolean isStale() {
+        return new File(jarPath).lastModified() != lastModified;
+    }
+
+    /**
+     * Returns the names of the classes whose entry name starts with the given package relative path
+     */
+    public List<String> getClassNames(String relativePath) {
+        List<String> answer = new ArrayList<String>();
+        for (String entryName : classEntryNames.subSet(relativePath, true, relativePath + Character.MAX_VALUE, false)) {
+            if (entryName.length() > (relativePath.length() + 1)) {
+                answer.add(entryName.replace('/', '.').replace('\\', '.').replace(".class", ""));
+            }
+        }
+        return answer;
+    }
+
+    public String getJarPath() {
+        return jarPath;
+    }
+
+    public int size() {
+        return classEntryNames.size();
+    }
+}
@@ -0,0 +1,129 @@
+package io.hawt.util.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free latency histogram with microsecond resolution.
+ * <p/>
+ * Values are recorded into log-linear buckets in the same way as HdrHistogram: each power of two range is
+ * split into a fixed number of linear sub buckets, which keeps the relative error of any reported
+ * percentile below 1% while the whole histogram (covering one hour) fits into a couple of thousand counters.
+ * Larger values are clamped to the highest trackable value.
+ */
+public class LatencyHistogram {
+
+    // 128 sub buckets per power of two range
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF_COUNT_BITS = SUB_BUCKET_BITS - 1;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_BITS;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(countsIndex(HIGHEST_TRACKABLE_MICROS) + 1);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency given in nanoseconds
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        } else if (micros > HIGHEST_TRACKABLE_MICROS) {
+            micros = HIGHEST_TRACKABLE_MICROS;
+        }
+        counts.incrementAndGet(countsIndex(micros));
+        totalCount.increment();
+        totalMicros.add(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public double getMeanMicros() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalMicros.sum() / count;
+    }
+
+    /**
+     * Returns the value in microseconds below which the given percentage of the recorded values fall
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    /**
+     * Returns a summary of the histogram suitable for exposing over JMX
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> answer = new LinkedHashMap<String, Object>();
+        answer.put("count", getCount());
+        answer.put("meanMicros", getMeanMicros());
+        answer.put("p50Micros", getPercentileMicros(50));
+        answer.put("p90Micros", getPercentileMicros(90));
+        answer.put("p99Micros", getPercentileMicros(99));
+        answer.put("p999Micros", getPercentileMicros(99.9));
+        answer.put("maxMicros", getMaxMicros());
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram" + toMap();
+    }
+
+    static int countsIndex(long value) {
+        int bucketIndex = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_COUNT_BITS);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_BITS) + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+    }
+
+    static long highestEquivalentValue(int index) {
+        int bucketIndex = (index >> SUB_BUCKET_HALF_COUNT_BITS) - 1;
+        int subBucketIndex = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucketIndex < 0) {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex << bucketIndex) + (1L << bucketIndex) - 1;
+    }
+}
@@ -0,0 +1,120 @@
+package io.hawt.util.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lightweight registry of the latencies and counters of hawtio's own server side code, so that the time
+ * spent in hawtio can be told apart from the time spent in the application or remote agents it talks to.
+ * <p/>
+ * Typical usage is
+ * <pre>
+ *     long start = Metrics.start();
+ *     try {
+ *         ...
+ *     } finally {
+ *         Metrics.stop("proxy.request", start);
+ *     }
+ * </pre>
+ * Recording can be switched off with the <code>hawtio.metrics.enabled</code> system property or at
+ * runtime through the {@link MetricsFacade} MBean.
+ */
+public final class Metrics {
+
+    public static final String HAWTIO_METRICS_ENABLED = "hawtio.metrics.enabled";
+
+    private static final ConcurrentMap<String, LatencyHistogram> LATENCIES = new ConcurrentHashMap<String, LatencyHistogram>();
+    private static final ConcurrentMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<String, AtomicLong>();
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty(HAWTIO_METRICS_ENABLED, "true"));
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Returns the start time to pass to {@link #stop(String, long)}
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since the given start time under the given name
+     */
+    public static void stop(String name, long start) {
+        if (enabled && start != 0) {
+            latency(name).recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    public static void increment(String name) {
+        if (enabled) {
+            counter(name).incrementAndGet();
+        }
+    }
+
+    public static LatencyHistogram latency(String name) {
+        LatencyHistogram answer = LATENCIES.get(name);
+        if (answer == null) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            answer = LATENCIES.putIfAbsent(name, histogram);
+            if (answer == null) {
+                answer = histogram;
+            }
+        }
+        return answer;
+    }
+
+    public static AtomicLong counter(String name) {
+        AtomicLong answer = COUNTERS.get(name);
+        if (answer == null) {
+            AtomicLong counter = new AtomicLong();
+            answer = COUNTERS.putIfAbsent(name, counter);
+            if (answer == null) {
+                answer = counter;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns a summary of every latency histogram sorted by name
+     */
+    public static Map<String, Map<String, Object>> latencies() {
+        Map<String, Map<String, Object>> answer = new TreeMap<String, Map<String, Object>>();
+        for (Map.Entry<String, LatencyHistogram> entry : LATENCIES.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the current value of every counter sorted by name
+     */
+    public static Map<String, Long> counters() {
+        Map<String, Long> answer = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().get());
+        }
+        return answer;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : LATENCIES.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : COUNTERS.values()) {
+            counter.set(0);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.hawt.util.metrics;
+
+import java.util.Map;
+
+import io.hawt.util.MBeanSupport;
+
+/**
+ * Exposes the {@link Metrics} registry over JMX
+ * <p/>
+ * hawtio-util is embedded inline in several OSGi bundles, each of which then records into its own copy of the
+ * registry. Such a bundle creates a facade with a registry name, which is always registered as
+ * <code>hawtio:type=Metrics,registry=name</code>; when everything runs in a single web application the named
+ * facades and the default one simply expose the same copy of the registry.
+ */
+public class MetricsFacade extends MBeanSupport implements MetricsFacadeMBean {
+
+    private final String registry;
+
+    public MetricsFacade() {
+        this(null);
+    }
+
+    public MetricsFacade(String registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected String getDefaultObjectName() {
+        return registry != null ? "hawtio:type=Metrics,registry=" + registry : "hawtio:type=Metrics";
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getLatencies() {
+        return Metrics.latencies();
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return Metrics.counters();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return Metrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        Metrics.setEnabled(enabled);
+    }
+
+    @Override
+    public void reset() {
+        Metrics.reset();
+    }
+}
@@ -0,0 +1,31 @@
+package io.hawt.util.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX MBean interface for the latencies and counters recorded by hawtio's own server side code
+ */
+public interface MetricsFacadeMBean {
+
+    /**
+     * Returns a summary (count, mean, percentiles and max in microseconds) of each latency histogram keyed by name
+     */
+    Map<String, Map<String, Object>> getLatencies();
+
+    /**
+     * Returns the value of each counter keyed by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Whether metrics are being recorded
+     */
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Clears all the recorded latencies and counters
+     */
+    void reset();
+}
@@ -0,0 +1,131 @@
+package io.hawt.util.introspect.support;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests finding annotated methods from the class files without loading the classes
+ */
+public class ClassScannerTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Ignore
+    public @interface MetaAnnotated {
+        String value() default "";
+        int[] numbers() default {};
+    }
+
+    public static class Base {
+        @MetaAnnotated(value = "base", numbers = {1, 2})
+        public void annotated() {
+        }
+    }
+
+    public static class Derived extends Base {
+        public static final long BIG = 1234567890123L;
+        public static final double PI = 3.14;
+
+        public void plain() {
+        }
+    }
+
+    public static class NotAnnotated {
+        @Deprecated
+        public void plain() {
+        }
+    }
+
+    @Test
+    public void parsesClassFile() throws Exception {
+        ClassFileInfo info = parse(Base.class);
+        assertEquals(Base.class.getName(), info.getClassName());
+        assertEquals(Object.class.getName(), info.getSuperClassName());
+        assertTrue(info.getMethodAnnotations().contains(MetaAnnotated.class.getName()));
+
+        info = parse(Derived.class);
+        assertEquals(Base.class.getName(), info.getSuperClassName());
+        assertTrue(info.getMethodAnnotations().isEmpty());
+
+        info = parse(MetaAnnotated.class);
+        assertTrue(info.getAnnotations().contains(Ignore.class.getName()));
+
+        info = parse(Object.class);
+        assertNull(info.getSuperClassName());
+    }
+
+    @Test
+    public void findsMethodsAnnotatedInClassHierarchy() throws Exception {
+        ClassScanner scanner = new ClassScanner(getClass().getClassLoader());
+        String testAnnotation = Test.class.getName();
+        String ignoreAnnotation = Ignore.class.getName();
+
+        assertTrue(scanner.hasMethodAnnotatedWith(scanner.getClassFileInfo(getClass().getName(), null), testAnnotation, null));
+        assertTrue(scanner.hasMethodAnnotatedWith(scanner.getClassFileInfo(Derived.class.getName(), null), ignoreAnnotation, null));
+        assertFalse(scanner.hasMethodAnnotatedWith(scanner.getClassFileInfo(NotAnnotated.class.getName(), null), ignoreAnnotation, null));
+
+        File testClasses = new File(getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
+        SortedSet<String> names = scanner.findClassNamesInDirectoryWithMethodAnnotatedWith(testClasses, ignoreAnnotation);
+        assertTrue("should find derived class in " + names, names.contains(Derived.class.getName().replace('$', '.')));
+        assertFalse("should not find " + NotAnnotated.class.getName() + " in " + names, names.contains(NotAnnotated.class.getName().replace('$', '.')));
+    }
+
+    @Test
+    public void findsClassNamesConcurrently() throws Exception {
+        // lets scan the junit jar through its own class loader
+        URL junitJar = Test.class.getProtectionDomain().getCodeSource().getLocation();
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{junitJar}, null);
+        classLoader.loadClass("org.junit.Assert");
+        final ClassScanner scanner = new ClassScanner(classLoader);
+        scanner.setScanThreads(2);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<SortedSet<String>>> results = new ArrayList<Future<SortedSet<String>>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(new Callable<SortedSet<String>>() {
+                    @Override
+                    public SortedSet<String> call() throws Exception {
+                        return scanner.findClassNames("org.junit.Assert", null);
+                    }
+                }));
+            }
+            for (Future<SortedSet<String>> result : results) {
+                SortedSet<String> names = result.get(30, TimeUnit.SECONDS);
+                assertTrue("should find org.junit.Assert in " + names, names.contains("org.junit.Assert"));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    protected ClassFileInfo parse(Class<?> type) throws Exception {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(type.getName().replace('.', '/') + ".class");
+        if (in == null) {
+            in = ClassLoader.getSystemResourceAsStream(type.getName().replace('.', '/') + ".class");
+        }
+        try {
+            return ClassFileInfo.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.hawt.util.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void indexesRoundTrip() {
+        for (long value : new long[]{0, 1, 63, 64, 127, 128, 129, 1000, 65535, 1234567, 3600000000L}) {
+            long highest = LatencyHistogram.highestEquivalentValue(LatencyHistogram.countsIndex(value));
+            assertTrue("value " + value + " highest " + highest, highest >= value);
+            assertTrue("value " + value + " highest " + highest, highest - value <= Math.max(1, value / 64));
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordMicros(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMaxMicros());
+        assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+        assertWithin(500, histogram.getPercentileMicros(50));
+        assertWithin(990, histogram.getPercentileMicros(99));
+        assertEquals(1000, histogram.getPercentileMicros(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+    }
+
+    @Test
+    public void clampsLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(Long.MAX_VALUE);
+        histogram.recordNanos(-1);
+        assertEquals(2, histogram.getCount());
+        assertEquals(histogram.getMaxMicros(), histogram.getPercentileMicros(100));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 50);
+    }
+}
@@ -0,0 +1,58 @@
+package io.hawt.util.metrics;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsFacadeTest {
+
+    private static final String DEFAULT_NAME = "hawtio:type=Metrics";
+    private static final String GIT_NAME = "hawtio:type=Metrics,registry=git";
+
+    private MBeanServer mbeanServer;
+
+    @Before
+    public void init() {
+        mbeanServer = MBeanServerFactory.newMBeanServer();
+    }
+
+    @Test
+    public void namedFacadeIsRegistered() throws Exception {
+        MetricsFacade git = createFacade("git");
+        git.init();
+        assertTrue(mbeanServer.isRegistered(new ObjectName(GIT_NAME)));
+
+        git.destroy();
+        assertFalse(mbeanServer.isRegistered(new ObjectName(GIT_NAME)));
+    }
+
+    @Test
+    public void facadesAreRegisteredWhicheverInitializesFirst() throws Exception {
+        assertBothRegistered(createFacade(null), createFacade("git"));
+        assertBothRegistered(createFacade("git"), createFacade(null));
+    }
+
+    private void assertBothRegistered(MetricsFacade first, MetricsFacade second) throws Exception {
+        first.init();
+        second.init();
+        assertTrue(mbeanServer.isRegistered(new ObjectName(DEFAULT_NAME)));
+        assertTrue(mbeanServer.isRegistered(new ObjectName(GIT_NAME)));
+
+        first.destroy();
+        second.destroy();
+        assertFalse(mbeanServer.isRegistered(new ObjectName(DEFAULT_NAME)));
+        assertFalse(mbeanServer.isRegistered(new ObjectName(GIT_NAME)));
+    }
+
+    private MetricsFacade createFacade(String registry) {
+        MetricsFacade answer = registry != null ? new MetricsFacade(registry) : new MetricsFacade();
+        answer.setMBeanServer(mbeanServer);
+        return answer;
+    }
+}
@@ -0,0 +1,42 @@
+package io.hawt.spring;
+
+import java.beans.ConstructorProperties;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes to the bean definitions of the watched application contexts since a given version
+ */
+public class BeanDefinitionChanges {
+    private final long version;
+    private final Map<String, String[]> changed;
+    private final List<String> removed;
+
+    @ConstructorProperties({"version", "changed", "removed"})
+    public BeanDefinitionChanges(long version, Map<String, String[]> changed, List<String> removed) {
+        this.version = version;
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    /**
+     * Returns the current version which should be passed in to ask for the next changes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the bean definition names of the application contexts which were added or changed
+     */
+    public Map<String, String[]> getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns the paths of the application contexts which were closed or removed
+     */
+    public List<String> getRemoved() {
+        return removed;
+    }
+}
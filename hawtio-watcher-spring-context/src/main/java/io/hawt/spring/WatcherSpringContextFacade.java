@@ -3,12 +3,22 @@ package io.hawt.spring;
 import io.fabric8.common.util.Objects;
 import io.hawt.util.MBeanSupport;
 import io.fabric8.watcher.spring.context.WatcherSpringContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A facade bean to provide a little JMX API to the {@link WatcherSpringContext} as well as natural hawtio configuration for it
@@ -18,6 +28,9 @@ public class WatcherSpringContextFacade extends MBeanSupport implements WatcherS
     private File rootPath;
     private WatcherSpringContext watcher;
     private boolean manuallyCreatedWatcher;
+    private final Map<String, ContextSnapshot> snapshots = new ConcurrentHashMap<String, ContextSnapshot>();
+    private final Map<String, Long> removedVersions = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong version = new AtomicLong();
 
     @Override
     public void init() throws Exception {
@@ -38,6 +51,8 @@ public class WatcherSpringContextFacade extends MBeanSupport implements WatcherS
         if (manuallyCreatedWatcher && watcher != null) {
             watcher.destroy();
         }
+        snapshots.clear();
+        removedVersions.clear();
         super.destroy();
     }
 
@@ -57,15 +72,8 @@ public class WatcherSpringContextFacade extends MBeanSupport implements WatcherS
     @Override
     public Map<String, String[]> beanDefinitionNameMap() {
         Map<String, String[]> answer = new TreeMap<String, String[]>();
-        SortedSet<String> paths = watcher.getApplicationContextPaths();
-        for (String path : paths) {
-            FileSystemXmlApplicationContext applicationContext = watcher.getApplicationContext(path);
-            if (applicationContext != null) {
-                String[] beanNames = applicationContext.getBeanDefinitionNames();
-                if (beanNames != null) {
-                    answer.put(path, beanNames);
-                }
-            }
+        for (Map.Entry<String, ContextSnapshot> entry : updateSnapshots().entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().beanNames);
         }
         return answer;
     }
@@ -73,17 +81,124 @@ public class WatcherSpringContextFacade extends MBeanSupport implements WatcherS
     @Override
     public Integer getBeanDefinitionCount() {
         int answer = 0;
+        for (ContextSnapshot snapshot : updateSnapshots().values()) {
+            answer += snapshot.beanNames.length;
+        }
+        return answer;
+    }
+
+    @Override
+    public synchronized long getBeanDefinitionVersion() {
+        updateSnapshots();
+        return version.get();
+    }
+
+    /**
+     * Synchronized with updating the snapshots, so that the returned version is that of the returned changes; a
+     * version bumped by a concurrent update would otherwise hide its change from the next call
+     */
+    @Override
+    public synchronized BeanDefinitionChanges beanDefinitionChanges(long sinceVersion) {
+        Map<String, ContextSnapshot> current = updateSnapshots();
+        long currentVersion = version.get();
+        Map<String, String[]> changed = new TreeMap<String, String[]>();
+        for (Map.Entry<String, ContextSnapshot> entry : current.entrySet()) {
+            if (entry.getValue().version > sinceVersion) {
+                changed.put(entry.getKey(), entry.getValue().beanNames);
+            }
+        }
+        List<String> removed = new ArrayList<String>();
+        for (Map.Entry<String, Long> entry : removedVersions.entrySet()) {
+            if (entry.getValue() > sinceVersion && !current.containsKey(entry.getKey())) {
+                removed.add(entry.getKey());
+            }
+        }
+        Collections.sort(removed);
+        return new BeanDefinitionChanges(currentVersion, changed, removed);
+    }
+
+    /**
+     * Brings the snapshots up to date with the application contexts of the watcher, only reading the bean
+     * definition names of the contexts which are new, have been replaced or have been refreshed since
+     */
+    protected synchronized Map<String, ContextSnapshot> updateSnapshots() {
         SortedSet<String> paths = watcher.getApplicationContextPaths();
         for (String path : paths) {
             FileSystemXmlApplicationContext applicationContext = watcher.getApplicationContext(path);
-            if (applicationContext != null) {
+            ContextSnapshot snapshot = snapshots.get(path);
+            if (applicationContext == null || !applicationContext.isActive()) {
+                removeSnapshot(path);
+            } else if (snapshot == null || snapshot.applicationContext != applicationContext || snapshot.isStale()) {
+                if (snapshot == null || snapshot.applicationContext != applicationContext) {
+                    applicationContext.addApplicationListener(new ContextListener(path, applicationContext));
+                }
                 String[] beanNames = applicationContext.getBeanDefinitionNames();
-                if (beanNames != null) {
-                    answer += beanNames.length;
+                snapshots.put(path, new ContextSnapshot(applicationContext,
+                        beanNames != null ? beanNames : new String[0], version.incrementAndGet()));
+                removedVersions.remove(path);
+            }
+        }
+        for (String path : new ArrayList<String>(snapshots.keySet())) {
+            if (!paths.contains(path)) {
+                removeSnapshot(path);
+            }
+        }
+        return new TreeMap<String, ContextSnapshot>(snapshots);
+    }
+
+    private void removeSnapshot(String path) {
+        if (snapshots.remove(path) != null) {
+            removedVersions.put(path, version.incrementAndGet());
+        }
+    }
+
+    /**
+     * The bean definition names of an application context as of the given version
+     */
+    protected static class ContextSnapshot {
+        private final ApplicationContext applicationContext;
+        private final String[] beanNames;
+        private final long version;
+        private final long startupDate;
+        private volatile boolean stale;
+
+        public ContextSnapshot(ApplicationContext applicationContext, String[] beanNames, long version) {
+            this.applicationContext = applicationContext;
+            this.beanNames = beanNames;
+            this.version = version;
+            this.startupDate = applicationContext.getStartupDate();
+        }
+
+        /**
+         * Returns true if the context has been refreshed or closed since; a refresh replaces the event multicaster
+         * of the context, dropping the listener, so a refresh is also detected by the changed startup date
+         */
+        public boolean isStale() {
+            return stale || startupDate != applicationContext.getStartupDate();
+        }
+    }
+
+    /**
+     * Marks the snapshot of a context as stale when the context is refreshed or closed
+     */
+    protected class ContextListener implements ApplicationListener<ApplicationContextEvent> {
+        private final String path;
+        private final ApplicationContext applicationContext;
+
+        public ContextListener(String path, ApplicationContext applicationContext) {
+            this.path = path;
+            this.applicationContext = applicationContext;
+        }
+
+        @Override
+        public void onApplicationEvent(ApplicationContextEvent event) {
+            if (event instanceof ContextRefreshedEvent || event instanceof ContextClosedEvent) {
+                ContextSnapshot snapshot = snapshots.get(path);
+                if (snapshot != null && snapshot.applicationContext == applicationContext) {
+                    snapshot.stale = true;
                 }
             }
         }
-        return answer;
     }
 
     // Properties
@@ -14,4 +14,16 @@ public interface WatcherSpringContextFacadeMXBean {
     Map<String, String[]> beanDefinitionNameMap();
 
     Integer getBeanDefinitionCount();
+
+    /**
+     * Returns the version of the bean definitions which increases whenever an application context is added,
+     * refreshed or removed
+     */
+    long getBeanDefinitionVersion();
+
+    /**
+     * Returns the bean definition names of the application contexts which changed after the given version
+     * along with the current version to pass in next time
+     */
+    BeanDefinitionChanges beanDefinitionChanges(long sinceVersion);
 }
@@ -0,0 +1,155 @@
+package io.hawt.spring;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.fabric8.watcher.spring.context.WatcherSpringContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.FileSystemXmlApplicationContext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WatcherSpringContextFacadeTest {
+
+    private File dir;
+    private StubWatcher watcher;
+    private WatcherSpringContextFacade facade;
+
+    @Before
+    public void init() throws Exception {
+        dir = Files.createTempDirectory("watcher-spring-context-test").toFile();
+        watcher = new StubWatcher();
+        facade = new WatcherSpringContextFacade();
+        facade.setWatcher(watcher);
+    }
+
+    @After
+    public void destroy() throws Exception {
+        for (FileSystemXmlApplicationContext context : watcher.contexts.values()) {
+            context.close();
+        }
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testReturnsChangesSinceVersion() throws Exception {
+        watcher.add("a.xml", "foo");
+        watcher.add("b.xml", "bar");
+
+        BeanDefinitionChanges changes = facade.beanDefinitionChanges(0);
+        assertEquals(2, changes.getChanged().size());
+        assertArrayEquals(new String[]{"foo"}, changes.getChanged().get("a.xml"));
+        assertTrue(changes.getRemoved().isEmpty());
+        long version = changes.getVersion();
+        assertEquals(version, facade.getBeanDefinitionVersion());
+
+        changes = facade.beanDefinitionChanges(version);
+        assertTrue(changes.getChanged().isEmpty());
+        assertEquals(version, changes.getVersion());
+
+        // refreshing a context marks it as changed, as detected by its startup date changing
+        Thread.sleep(10);
+        watcher.contexts.get("a.xml").refresh();
+        changes = facade.beanDefinitionChanges(version);
+        assertEquals(Collections.singleton("a.xml"), changes.getChanged().keySet());
+        version = changes.getVersion();
+
+        watcher.contexts.remove("b.xml").close();
+        changes = facade.beanDefinitionChanges(version);
+        assertTrue(changes.getChanged().isEmpty());
+        assertEquals(Collections.singletonList("b.xml"), changes.getRemoved());
+        assertNull(facade.beanDefinitionNameMap().get("b.xml"));
+        assertEquals(Integer.valueOf(1), facade.getBeanDefinitionCount());
+    }
+
+    @Test
+    public void testConcurrentReadersSeeEveryChange() throws Exception {
+        final int contexts = 100;
+        final int readers = 4;
+        final CountDownLatch added = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Set<String>[] seen = new Set[readers];
+        Thread[] threads = new Thread[readers];
+        for (int i = 0; i < readers; i++) {
+            final Set<String> paths = new HashSet<String>();
+            seen[i] = paths;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long version = 0;
+                        boolean done = false;
+                        while (!done) {
+                            // one more round once all contexts have been added
+                            done = added.getCount() == 0;
+                            BeanDefinitionChanges changes = facade.beanDefinitionChanges(version);
+                            paths.addAll(changes.getChanged().keySet());
+                            version = changes.getVersion();
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < contexts; i++) {
+            watcher.add("context" + i + ".xml", "bean" + i);
+        }
+        added.countDown();
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+        assertNull(failure.get());
+        for (Set<String> paths : seen) {
+            assertEquals(contexts, paths.size());
+        }
+    }
+
+    /**
+     * A watcher whose application contexts are added by the test rather than loaded from a directory
+     */
+    private class StubWatcher extends WatcherSpringContext {
+        private final Map<String, FileSystemXmlApplicationContext> contexts = new ConcurrentSkipListMap<String, FileSystemXmlApplicationContext>();
+
+        void add(String path, String beanName) throws IOException {
+            File file = new File(dir, path);
+            String xml = "<beans xmlns=\"http://www.springframework.org/schema/beans\""
+                    + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                    + " xsi:schemaLocation=\"http://www.springframework.org/schema/beans"
+                    + " http://www.springframework.org/schema/beans/spring-beans.xsd\">"
+                    + "<bean id=\"" + beanName + "\" class=\"java.util.ArrayList\"/></beans>";
+            Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+            contexts.put(path, new FileSystemXmlApplicationContext("file:" + file.getAbsolutePath()));
+        }
+
+        @Override
+        public SortedSet<String> getApplicationContextPaths() {
+            return new TreeSet<String>(contexts.keySet());
+        }
+
+        @Override
+        public FileSystemXmlApplicationContext getApplicationContext(String path) {
+            return contexts.get(path);
+        }
+    }
+}